@@ -0,0 +1,160 @@
+package com.example.android.popularmovies;
+
+import android.content.Context;
+import android.os.Debug;
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v4.text.PrecomputedTextCompat;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import com.example.android.popularmovies.adapters.ReviewAdapter;
+import com.example.android.popularmovies.adapters.TrailerAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Objects allocated on the main thread while the adapters bind 10,000 items to the cells they
+ * have already created, as they do in a long scroll. A review or trailer bind allocates
+ * nothing: the ViewHolders own their click listeners, the Uris are only built on a click, and
+ * the review previews are laid out beforehand.
+ * <p>
+ * The movie grid is only measured for rebinds, where every cell is bound again to the movie it
+ * shows, as after a change of the list that keeps the posters. Such a cell keeps its poster
+ * without a new request to Picasso. A cell bound to another movie during a scroll still
+ * allocates the Uri of the poster and its Picasso request, so those binds are not counted here.
+ * <p>
+ * The count includes whatever the framework allocates on its own, so it only has to stay far
+ * below one allocation per bind.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BindAllocationTest {
+
+    private static final String TAG = BindAllocationTest.class.getSimpleName();
+
+    private static final int BIND_COUNT = 10000;
+    private static final int ITEM_COUNT = 100;
+    private static final int HOLDER_COUNT = 8;
+    private static final int MAX_ALLOCATIONS = BIND_COUNT / 100;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    private Context context;
+    private RecyclerView recyclerView;
+
+    @Before
+    public void setUp() {
+        context = new ContextThemeWrapper(InstrumentationRegistry.getTargetContext(),
+                R.style.AppTheme);
+        recyclerView = new RecyclerView(context);
+    }
+
+    @Test
+    @UiThreadTest
+    public void reviewBindsDoNotAllocate() {
+        List<Review> reviews = new ArrayList<>();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            reviews.add(new Review("Author " + i, "Review " + i,
+                    "https://www.themoviedb.org/review/" + i));
+        }
+        /* The previews are laid out as they are when the reviews are parsed */
+        PrecomputedTextCompat.Params textParams = ReviewAdapter.getTextParams(recyclerView);
+        ReviewAdapter adapter = new ReviewAdapter(reviews, textParams, DIRECT, DIRECT);
+        adapter.precomputePreviews(reviews);
+        recyclerView.setLayoutManager(new LinearLayoutManager(context));
+        assertFewAllocations("reviews", adapter);
+    }
+
+    @Test
+    @UiThreadTest
+    public void trailerBindsDoNotAllocate() {
+        List<Trailer> trailers = new ArrayList<>();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            trailers.add(new Trailer("key" + i, "Trailer " + i));
+        }
+        recyclerView.setLayoutManager(new LinearLayoutManager(context));
+        assertFewAllocations("trailers", new TrailerAdapter(trailers));
+    }
+
+    @Test
+    @UiThreadTest
+    public void movieRebindsToTheSamePosterDoNotAllocate() {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < HOLDER_COUNT; i++) {
+            movies.add(new Movie(i + 1, "Movie " + i, null, "/" + i + ".jpg", null, null));
+        }
+        MovieAdapter adapter = new MovieAdapter();
+        adapter.setMovieList(movies);
+        recyclerView.setLayoutManager(new GridLayoutManager(context, 2));
+        recyclerView.setAdapter(adapter);
+        /* Lay the grid out so every cell is created, bound and has its poster requested */
+        recyclerView.measure(View.MeasureSpec.makeMeasureSpec(400, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1800, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, 400, 1800);
+
+        List<MovieAdapter.ViewHolder> holders = new ArrayList<>();
+        for (int i = 0; i < HOLDER_COUNT; i++) {
+            holders.add((MovieAdapter.ViewHolder)
+                    recyclerView.findViewHolderForAdapterPosition(i));
+        }
+        /* Every cell is bound again to its own movie only, never to another one */
+        long allocations = countAllocations(adapter, holders, HOLDER_COUNT);
+        Log.i(TAG, "movie rebinds: " + allocations + " allocations for " + BIND_COUNT + " binds");
+        assertTrue(allocations < MAX_ALLOCATIONS);
+    }
+
+    /**
+     * Create the cells, bind every item once so the TextViews and the classes are warmed up,
+     * and then count the allocations of 10,000 binds
+     */
+    private <VH extends RecyclerView.ViewHolder> void assertFewAllocations(
+            String name, RecyclerView.Adapter<VH> adapter) {
+        recyclerView.setAdapter(adapter);
+        List<VH> holders = new ArrayList<>();
+        for (int i = 0; i < HOLDER_COUNT; i++) {
+            holders.add(adapter.createViewHolder(recyclerView, adapter.getItemViewType(i)));
+        }
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            adapter.bindViewHolder(holders.get(i % HOLDER_COUNT), i);
+        }
+        long allocations = countAllocations(adapter, holders, ITEM_COUNT);
+        Log.i(TAG, name + ": " + allocations + " allocations for " + BIND_COUNT + " binds");
+        assertTrue(allocations < MAX_ALLOCATIONS);
+    }
+
+    /**
+     * Returns the number of objects allocated by the main thread while the items are bound in
+     * turn to the ViewHolders
+     */
+    @SuppressWarnings("deprecation")
+    private static <VH extends RecyclerView.ViewHolder> long countAllocations(
+            RecyclerView.Adapter<VH> adapter, List<? extends VH> holders, int itemCount) {
+        int holderCount = holders.size();
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < BIND_COUNT; i++) {
+            adapter.bindViewHolder(holders.get(i % holderCount), i % itemCount);
+        }
+        Debug.stopAllocCounting();
+        return Debug.getThreadAllocCount();
+    }
+}
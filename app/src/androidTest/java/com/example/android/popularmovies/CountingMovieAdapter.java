@@ -0,0 +1,35 @@
+package com.example.android.popularmovies;
+
+import android.support.annotation.NonNull;
+import android.view.ViewGroup;
+
+import java.util.concurrent.Executor;
+
+/**
+ * The MovieAdapter of the app, counting the cells it inflates and binds
+ */
+class CountingMovieAdapter extends MovieAdapter {
+
+    int createCount;
+    int bindCount;
+
+    CountingMovieAdapter() {
+    }
+
+    CountingMovieAdapter(Executor backgroundExecutor, Executor mainExecutor) {
+        super(backgroundExecutor, mainExecutor);
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        createCount++;
+        return super.onCreateViewHolder(parent, viewType);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder viewHolder, int position) {
+        bindCount++;
+        super.onBindViewHolder(viewHolder, position);
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.android.popularmovies;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v4.widget.NestedScrollView;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Number of cells inflated and bound by the movie grid for a list of 1000 movies: in the
+ * layout of the main screen, where the grid scrolls by itself, against the grid measured at
+ * its full height inside a NestedScrollView, as it was laid out before. Both grids are laid
+ * out at the size of the screen and then scrolled to the end.
+ * <p>
+ * Every run writes a TSV of the cells inflated and bound after the first layout and after the
+ * scroll, with the time of the first layout, to benchmarks/ in the external files directory
+ * of the app, like the PipelineBenchmarkTest.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GridBindingBenchmarkTest {
+
+    private static final String TAG = GridBindingBenchmarkTest.class.getSimpleName();
+
+    private static final int MOVIE_COUNT = 1000;
+    private static final int SPAN_COUNT = 2;
+
+    @Test
+    public void countInflatedAndBoundCells() throws IOException {
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        String label = arguments.getString("benchmarkLabel", "local");
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        final Context context = new ContextThemeWrapper(
+                InstrumentationRegistry.getTargetContext(), R.style.AppTheme);
+        final Result[] results = new Result[2];
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                results[0] = measureVirtualized(context);
+                results[1] = measureNested(context);
+            }
+        });
+
+        StringBuilder report = new StringBuilder("label\tlayout\tmovies\tinflated\tbound"
+                + "\tinflated_after_scroll\tbound_after_scroll\tfirst_layout_ms\n");
+        appendRow(report, label, "recycler_view", results[0]);
+        appendRow(report, label, "nested_scroll_view", results[1]);
+        File directory = getBenchmarkDirectory();
+        File file = new File(directory, label + "-grid-" + System.currentTimeMillis() + ".tsv");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(report.toString());
+        } finally {
+            writer.close();
+        }
+        Log.i(TAG, "Benchmark results in " + file + "\n" + report);
+
+        /* Only a few screens of cells exist at a time */
+        assertTrue(results[0].inflatedAfterScroll < MOVIE_COUNT / 10);
+        assertTrue(results[0].bound < MOVIE_COUNT / 10);
+    }
+
+    /**
+     * The grid in the layout of the main screen
+     */
+    private static Result measureVirtualized(Context context) {
+        View root = LayoutInflater.from(context).inflate(R.layout.activity_main, null);
+        RecyclerView recyclerView = root.findViewById(R.id.movies_recycler_view);
+        CountingMovieAdapter adapter = setUpGrid(context, recyclerView);
+
+        long start = System.nanoTime();
+        layOut(context, root);
+        long layoutNanos = System.nanoTime() - start;
+        int inflated = adapter.createCount;
+        int bound = adapter.bindCount;
+
+        /* Scroll to the end a screen at a time, laying out the cells that come into view */
+        int screenHeight = recyclerView.getHeight();
+        for (int i = 0; i < MOVIE_COUNT && recyclerView.canScrollVertically(1); i++) {
+            recyclerView.scrollBy(0, screenHeight);
+        }
+        return new Result(inflated, bound, adapter.createCount, adapter.bindCount,
+                layoutNanos);
+    }
+
+    /**
+     * The grid measured at the height of all of its cells inside a NestedScrollView
+     */
+    private static Result measureNested(Context context) {
+        NestedScrollView scrollView = new NestedScrollView(context);
+        RecyclerView recyclerView = new RecyclerView(context);
+        scrollView.addView(recyclerView, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        CountingMovieAdapter adapter = setUpGrid(context, recyclerView);
+
+        long start = System.nanoTime();
+        layOut(context, scrollView);
+        long layoutNanos = System.nanoTime() - start;
+        int inflated = adapter.createCount;
+        int bound = adapter.bindCount;
+
+        scrollView.fullScroll(View.FOCUS_DOWN);
+        layOut(context, scrollView);
+        return new Result(inflated, bound, adapter.createCount, adapter.bindCount,
+                layoutNanos);
+    }
+
+    private static CountingMovieAdapter setUpGrid(Context context, RecyclerView recyclerView) {
+        CountingMovieAdapter adapter = new CountingMovieAdapter();
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < MOVIE_COUNT; i++) {
+            movies.add(new Movie(i + 1, "Movie " + i, null, "/" + i + ".jpg", null, null));
+        }
+        adapter.setMovieList(movies);
+        recyclerView.setLayoutManager(new GridLayoutManager(context, SPAN_COUNT));
+        recyclerView.setAdapter(adapter);
+        return adapter;
+    }
+
+    /**
+     * Measure and lay out the view at the size of the screen
+     */
+    private static void layOut(Context context, View view) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        view.measure(View.MeasureSpec.makeMeasureSpec(metrics.widthPixels,
+                View.MeasureSpec.EXACTLY), View.MeasureSpec.makeMeasureSpec(metrics.heightPixels,
+                View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, metrics.widthPixels, metrics.heightPixels);
+    }
+
+    private static void appendRow(StringBuilder report, String label, String layout,
+                                  Result result) {
+        report.append(String.format(Locale.US, "%s\t%s\t%d\t%d\t%d\t%d\t%d\t%.2f\n", label,
+                layout, MOVIE_COUNT, result.inflated, result.bound, result.inflatedAfterScroll,
+                result.boundAfterScroll, result.layoutNanos / 1000000.0));
+    }
+
+    private static File getBenchmarkDirectory() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        File filesDir = context.getExternalFilesDir(null);
+        if (filesDir == null) {
+            filesDir = context.getFilesDir();
+        }
+        File directory = new File(filesDir, "benchmarks");
+        assertTrue(directory.isDirectory() || directory.mkdirs());
+        return directory;
+    }
+
+    private static final class Result {
+
+        final int inflated;
+        final int bound;
+        final int inflatedAfterScroll;
+        final int boundAfterScroll;
+        final long layoutNanos;
+
+        Result(int inflated, int bound, int inflatedAfterScroll, int boundAfterScroll,
+               long layoutNanos) {
+            this.inflated = inflated;
+            this.bound = bound;
+            this.inflatedAfterScroll = inflatedAfterScroll;
+            this.boundAfterScroll = boundAfterScroll;
+            this.layoutNanos = layoutNanos;
+        }
+    }
+}
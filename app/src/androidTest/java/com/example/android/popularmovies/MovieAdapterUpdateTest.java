@@ -0,0 +1,191 @@
+package com.example.android.popularmovies;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Number of cells the movie grid binds for an update of the movie list. The grid is laid out
+ * at a size where all of its cells fit, so only the cells of the movies that changed are bound
+ * again. The diffs run on the calling thread, or when the test runs the queued tasks.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieAdapterUpdateTest {
+
+    private static final int MOVIE_COUNT = 8;
+    private static final int SPAN_COUNT = 2;
+
+    /**
+     * Six rows of 200 by 300 pixel cells
+     */
+    private static final int GRID_WIDTH = 400;
+    private static final int GRID_HEIGHT = 1800;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    private final Queue<Runnable> backgroundTasks = new ArrayDeque<>();
+
+    private RecyclerView recyclerView;
+
+    @Before
+    public void setUp() {
+        Context context = new ContextThemeWrapper(InstrumentationRegistry.getTargetContext(),
+                R.style.AppTheme);
+        recyclerView = new RecyclerView(context);
+        recyclerView.setLayoutManager(new GridLayoutManager(context, SPAN_COUNT));
+        /* Without animations a change binds the cell it is in, and nothing else */
+        recyclerView.setItemAnimator(null);
+    }
+
+    @Test
+    @UiThreadTest
+    public void firstListBindsEveryCell() {
+        CountingMovieAdapter adapter = showMovies(DIRECT);
+        assertEquals(MOVIE_COUNT, adapter.bindCount);
+    }
+
+    @Test
+    @UiThreadTest
+    public void addedFavoriteBindsOnlyItsCell() {
+        CountingMovieAdapter adapter = showMovies(DIRECT);
+        List<Movie> movies = createMovies();
+        movies.add(3, createMovie(100, "/added.jpg"));
+
+        assertEquals(1, update(adapter, movies));
+        assertEquals(MOVIE_COUNT + 1, adapter.getItemCount());
+    }
+
+    @Test
+    @UiThreadTest
+    public void removedFavoriteBindsNoCell() {
+        CountingMovieAdapter adapter = showMovies(DIRECT);
+        List<Movie> movies = createMovies();
+        movies.remove(2);
+
+        assertEquals(0, update(adapter, movies));
+        assertEquals(MOVIE_COUNT - 1, adapter.getItemCount());
+    }
+
+    @Test
+    @UiThreadTest
+    public void sameMoviesBindNoCell() {
+        CountingMovieAdapter adapter = showMovies(DIRECT);
+        assertEquals(0, update(adapter, createMovies()));
+    }
+
+    @Test
+    @UiThreadTest
+    public void changedPosterBindsOnlyItsCell() {
+        CountingMovieAdapter adapter = showMovies(DIRECT);
+        List<Movie> movies = createMovies();
+        movies.set(5, createMovie(6, "/changed.jpg"));
+
+        assertEquals(1, update(adapter, movies));
+    }
+
+    @Test
+    @UiThreadTest
+    public void appendedPageBindsOnlyItsNewMovies() {
+        CountingMovieAdapter adapter = showMovies(DIRECT);
+        adapter.bindCount = 0;
+        List<Movie> page = new ArrayList<>();
+        page.add(createMovie(MOVIE_COUNT, "/" + MOVIE_COUNT + ".jpg"));
+        page.add(createMovie(100, "/added.jpg"));
+        adapter.addMovies(page);
+        layOut();
+
+        /* The first movie of the page is already in the grid */
+        assertEquals(1, adapter.bindCount);
+        assertEquals(MOVIE_COUNT + 1, adapter.getItemCount());
+    }
+
+    @Test
+    @UiThreadTest
+    public void replacedListIsNotApplied() {
+        CountingMovieAdapter adapter = showMovies(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                backgroundTasks.add(command);
+            }
+        });
+        List<Movie> replaced = createMovies();
+        replaced.remove(0);
+        adapter.setMovieList(replaced);
+        List<Movie> latest = createMovies();
+        latest.add(createMovie(100, "/added.jpg"));
+        adapter.setMovieList(latest);
+        while (!backgroundTasks.isEmpty()) {
+            backgroundTasks.remove().run();
+        }
+        layOut();
+
+        assertEquals(MOVIE_COUNT + 1, adapter.getItemCount());
+        assertEquals(1, adapter.getMovies().get(0).getMovieId());
+    }
+
+    /**
+     * Show the movies in a new adapter with the given executor for the diffs
+     */
+    private CountingMovieAdapter showMovies(Executor backgroundExecutor) {
+        CountingMovieAdapter adapter = new CountingMovieAdapter(backgroundExecutor, DIRECT);
+        adapter.setMovieList(createMovies());
+        recyclerView.setAdapter(adapter);
+        layOut();
+        return adapter;
+    }
+
+    /**
+     * Returns the number of cells bound for the update to the given movies
+     */
+    private int update(CountingMovieAdapter adapter, List<Movie> movies) {
+        adapter.bindCount = 0;
+        adapter.setMovieList(movies);
+        layOut();
+        return adapter.bindCount;
+    }
+
+    private void layOut() {
+        recyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(GRID_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(GRID_HEIGHT, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, GRID_WIDTH, GRID_HEIGHT);
+    }
+
+    /**
+     * Returns new instances of the same movies every time, as Room does
+     */
+    private static List<Movie> createMovies() {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < MOVIE_COUNT; i++) {
+            movies.add(createMovie(i + 1, "/" + i + ".jpg"));
+        }
+        return movies;
+    }
+
+    private static Movie createMovie(int movieId, String posterPath) {
+        return new Movie(movieId, "Movie " + movieId, null, posterPath, null, null);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.android.popularmovies;
+
+import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.Observer;
+import android.arch.persistence.room.Room;
+import android.support.annotation.Nullable;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cached snapshots of the lists in an in-memory database: a missing or expired list is stale,
+ * a stored first page is fresh until its time to live, following pages are appended, and a
+ * refresh of the first page replaces the list and drops the pages of the list it replaced.
+ * The pages are downloaded from a local FakeTmdbServer.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieRepositoryTest {
+
+    private static final String POPULAR = "popular";
+    private static final long TTL = TimeUnit.MINUTES.toMillis(60);
+
+    /**
+     * Number of movies and pages of the popular fixture
+     */
+    private static final int PAGE_SIZE = 20;
+    private static final int TOTAL_PAGES = 500;
+
+    private FakeTmdbServer server;
+    private AppDatabase database;
+    private MovieRepository repository;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeTmdbServer();
+        server.start();
+        QueryUtils.setBaseUrl(server.getBaseUrl());
+        database = Room.inMemoryDatabaseBuilder(InstrumentationRegistry.getTargetContext(),
+                AppDatabase.class).build();
+        repository = new MovieRepository(database,
+                Collections.singletonMap(POPULAR, TTL));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        database.close();
+        server.shutdown();
+        QueryUtils.setBaseUrl("https://api.themoviedb.org/3/movie/");
+    }
+
+    @Test
+    public void missingListIsStale() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        assertTrue(repository.isStale(POPULAR, now));
+
+        MovieRepository.Snapshot snapshot = awaitSnapshot(0);
+        assertTrue(snapshot.movies.isEmpty());
+        assertTrue(repository.isStale(snapshot, now));
+    }
+
+    @Test
+    public void loadedListIsFreshUntilItsTimeToLive() throws Exception {
+        assertNotNull(repository.loadPage(POPULAR, 1, new RequestHandle()));
+
+        MovieRepository.Snapshot snapshot = awaitSnapshot(PAGE_SIZE);
+        assertEquals(1, snapshot.loadedPage);
+        assertEquals(TOTAL_PAGES, snapshot.totalPages);
+        assertFalse(repository.isStale(snapshot, snapshot.fetchedAt + TTL - 1));
+        assertFalse(repository.isStale(POPULAR, snapshot.fetchedAt + TTL - 1));
+        assertTrue(repository.isStale(snapshot, snapshot.fetchedAt + TTL));
+        assertTrue(repository.isStale(POPULAR, snapshot.fetchedAt + TTL));
+    }
+
+    @Test
+    public void refreshReplacesTheStaleList() throws Exception {
+        repository.savePage(POPULAR, createPage(1, 0), 1000);
+        repository.savePage(POPULAR, createPage(2, PAGE_SIZE), 1000);
+        MovieRepository.Snapshot stale = awaitSnapshot(2 * PAGE_SIZE);
+        assertEquals(2, stale.loadedPage);
+        assertTrue(repository.isStale(stale, 1000 + TTL));
+
+        /* The refresh downloads the first page again, which replaces both stored pages */
+        assertNotNull(repository.loadPage(POPULAR, 1, new RequestHandle()));
+        MovieRepository.Snapshot refreshed = awaitSnapshot(PAGE_SIZE);
+        assertEquals(1, refreshed.loadedPage);
+        assertTrue(refreshed.fetchedAt > 1000);
+        assertFalse(repository.isStale(refreshed, refreshed.fetchedAt));
+
+        /* A page of the replaced list that arrives late is dropped */
+        repository.savePage(POPULAR, createPage(3, 2 * PAGE_SIZE), 1000);
+        assertEquals(PAGE_SIZE, database.catalogDao().getMovieCount(POPULAR));
+        assertEquals(PAGE_SIZE, repository.getMovies(POPULAR, 1).size());
+    }
+
+    /**
+     * Returns the first snapshot of the popular list with the given number of movies
+     */
+    private MovieRepository.Snapshot awaitSnapshot(final int movieCount)
+            throws InterruptedException {
+        final LiveData<MovieRepository.Snapshot> catalog = repository.getCatalog(POPULAR);
+        final MovieRepository.Snapshot[] result = new MovieRepository.Snapshot[1];
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Observer<MovieRepository.Snapshot> observer =
+                new Observer<MovieRepository.Snapshot>() {
+                    @Override
+                    public void onChanged(@Nullable MovieRepository.Snapshot snapshot) {
+                        if (snapshot != null && snapshot.movies.size() == movieCount
+                                && result[0] == null) {
+                            result[0] = snapshot;
+                            latch.countDown();
+                        }
+                    }
+                };
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                catalog.observeForever(observer);
+            }
+        });
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } finally {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    catalog.removeObserver(observer);
+                }
+            });
+        }
+        return result[0];
+    }
+
+    private static MoviePage createPage(int page, int firstId) {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            int movieId = firstId + i + 1;
+            movies.add(new Movie(movieId, "Movie " + movieId, null, "/" + movieId + ".jpg",
+                    null, null));
+        }
+        return new MoviePage(page, TOTAL_PAGES, movies);
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.android.popularmovies;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * End to end benchmark of the data pipeline: list and detail loads go through QueryUtils, the
+ * transport and the JsonParsers against a local FakeTmdbServer, under network profiles that
+ * set its latency, bandwidth and error rate. It runs on a device, as the parsers need the
+ * JsonReader of the platform.
+ * <p>
+ * Every run writes a TSV of the latencies per profile and scenario, and the RequestMetrics
+ * report, to benchmarks/ in the external files directory of the app. The instrumentation
+ * arguments benchmarkLabel, such as the commit being measured, benchmarkIterations and
+ * benchmarkWarmupIterations configure the run, see the README.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PipelineBenchmarkTest {
+
+    private static final String TAG = PipelineBenchmarkTest.class.getSimpleName();
+
+    private static final int DEFAULT_WARMUP_ITERATIONS = 5;
+    private static final int DEFAULT_ITERATIONS = 30;
+
+    /**
+     * Movie ID of the details fixture
+     */
+    private static final String MOVIE_ID = "299534";
+
+    /**
+     * Network profiles: a local network, a slow mobile network and a lossy network whose
+     * 503 responses are retried by the scheduler
+     */
+    private static final Profile[] PROFILES = {
+            new Profile("lan", 0, 0, 0),
+            new Profile("3g", 150, 100 * 1024, 0),
+            new Profile("lossy", 50, 1024 * 1024, 0.1),
+    };
+
+    private FakeTmdbServer server;
+    private String label;
+    private int warmupIterations;
+    private int iterations;
+
+    @Before
+    public void setUp() throws IOException {
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        label = arguments.getString("benchmarkLabel", "local");
+        warmupIterations = Integer.parseInt(arguments.getString("benchmarkWarmupIterations",
+                String.valueOf(DEFAULT_WARMUP_ITERATIONS)));
+        iterations = Integer.parseInt(arguments.getString("benchmarkIterations",
+                String.valueOf(DEFAULT_ITERATIONS)));
+
+        server = new FakeTmdbServer();
+        server.start();
+        QueryUtils.setBaseUrl(server.getBaseUrl());
+        /* No throttling, and short backoffs so the lossy profile measures the retries rather
+        than the default delays */
+        QueryUtils.setRequestScheduler(new RequestScheduler(Integer.MAX_VALUE, 1000000, 3, 20,
+                200, new Random(0)));
+        QueryUtils.getRequestMetrics().reset();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        QueryUtils.setBaseUrl("https://api.themoviedb.org/3/movie/");
+        QueryUtils.setRequestScheduler(new RequestScheduler());
+    }
+
+    @Test
+    public void measureListAndDetailLoads() throws IOException {
+        StringBuilder report = new StringBuilder(
+                "label\tprofile\tscenario\tn\tfailures\tmean_ms\tp50_ms\tp90_ms\tp99_ms"
+                        + "\tmin_ms\tmax_ms\trequests\tbytes\n");
+        StringBuilder metrics = new StringBuilder();
+        for (Profile profile : PROFILES) {
+            server.reset();
+            server.setLatencyMillis(profile.latencyMillis);
+            server.setBytesPerSecond(profile.bytesPerSecond);
+            server.setErrorRate(profile.errorRate, 503);
+            QueryUtils.getRequestMetrics().reset();
+
+            Result lists = run(new Scenario() {
+                @Override
+                public boolean load(int iteration) throws IOException {
+                    /* Every load is a different page, so nothing is served from memory */
+                    String option = iteration % 2 == 0 ? "popular" : "top_rated";
+                    URL url = QueryUtils.createMovieUrl(option, iteration + 1);
+                    MoviePage moviePage = QueryUtils.fetch(url, JsonParsers.MOVIE_PAGE);
+                    return moviePage != null && !moviePage.movies.isEmpty();
+                }
+            });
+            appendRow(report, profile, "list", lists);
+
+            Result details = run(new Scenario() {
+                @Override
+                public boolean load(int iteration) throws IOException {
+                    URL url = QueryUtils.createMovieDetailsUrl(MOVIE_ID);
+                    MovieDetails movieDetails = QueryUtils.fetch(url,
+                            JsonParsers.MOVIE_DETAILS);
+                    return movieDetails != null && !movieDetails.reviews.isEmpty();
+                }
+            });
+            appendRow(report, profile, "details", details);
+
+            metrics.append("# ").append(profile.name).append('\n')
+                    .append(QueryUtils.getRequestMetrics().dump());
+        }
+
+        File directory = getBenchmarkDirectory();
+        String name = label + "-" + System.currentTimeMillis();
+        write(new File(directory, name + ".tsv"), report.toString());
+        write(new File(directory, name + "-metrics.txt"), "device=" + Build.MODEL + " sdk="
+                + Build.VERSION.SDK_INT + "\n" + metrics);
+        Log.i(TAG, "Benchmark results in " + directory + "\n" + report);
+    }
+
+    /**
+     * Run the warmup and the measured iterations of a scenario
+     */
+    private Result run(Scenario scenario) throws IOException {
+        for (int i = 0; i < warmupIterations; i++) {
+            load(scenario, i);
+        }
+        int requestsBefore = server.getRequestCount();
+        long bytesBefore = server.getBytesSent();
+        long[] latencies = new long[iterations];
+        int failures = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            boolean loaded = load(scenario, warmupIterations + i);
+            latencies[i] = System.nanoTime() - start;
+            if (!loaded) {
+                failures++;
+            }
+        }
+        return new Result(latencies, failures, server.getRequestCount() - requestsBefore,
+                server.getBytesSent() - bytesBefore);
+    }
+
+    /**
+     * Load an iteration of the scenario. A request the scheduler gave up on is a failure.
+     */
+    private static boolean load(Scenario scenario, int iteration) throws IOException {
+        try {
+            return scenario.load(iteration);
+        } catch (RequestScheduler.UnavailableException e) {
+            return false;
+        }
+    }
+
+    private void appendRow(StringBuilder report, Profile profile, String scenario,
+                           Result result) {
+        long[] sorted = result.latencies.clone();
+        Arrays.sort(sorted);
+        long sum = 0;
+        for (long latency : sorted) {
+            sum += latency;
+        }
+        report.append(String.format(Locale.US,
+                "%s\t%s\t%s\t%d\t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f\t%d\t%d\n",
+                label, profile.name, scenario, sorted.length, result.failures,
+                millis(sum / sorted.length), millis(percentile(sorted, 0.5)),
+                millis(percentile(sorted, 0.9)), millis(percentile(sorted, 0.99)),
+                millis(sorted[0]), millis(sorted[sorted.length - 1]), result.requestCount,
+                result.byteCount));
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(rank - 1, 0)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    private static File getBenchmarkDirectory() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        File filesDir = context.getExternalFilesDir(null);
+        if (filesDir == null) {
+            filesDir = context.getFilesDir();
+        }
+        File directory = new File(filesDir, "benchmarks");
+        assertTrue(directory.isDirectory() || directory.mkdirs());
+        return directory;
+    }
+
+    private static void write(File file, String text) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * A load that is measured, returns false if it failed
+     */
+    private interface Scenario {
+        boolean load(int iteration) throws IOException;
+    }
+
+    private static final class Profile {
+
+        final String name;
+        final long latencyMillis;
+        final long bytesPerSecond;
+        final double errorRate;
+
+        Profile(String name, long latencyMillis, long bytesPerSecond, double errorRate) {
+            this.name = name;
+            this.latencyMillis = latencyMillis;
+            this.bytesPerSecond = bytesPerSecond;
+            this.errorRate = errorRate;
+        }
+    }
+
+    private static final class Result {
+
+        final long[] latencies;
+        final int failures;
+        final int requestCount;
+        final long byteCount;
+
+        Result(long[] latencies, int failures, int requestCount, long byteCount) {
+            this.latencies = latencies;
+            this.failures = failures;
+            this.requestCount = requestCount;
+            this.byteCount = byteCount;
+        }
+    }
+}
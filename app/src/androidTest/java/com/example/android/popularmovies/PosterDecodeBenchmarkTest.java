@@ -0,0 +1,280 @@
+package com.example.android.popularmovies;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.util.LruCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Heap usage of the grid thumbnails over a scroll of 500 posters: the ARGB_8888 decode that
+ * Picasso did for every cell, scaled to the cell in a second bitmap, against the RGB_565
+ * decode of the ThumbnailDecoder into the bitmaps of the BitmapPool. Both scrolls keep the
+ * posters in a memory cache of the same budget, and a screen of cells that shows the latest
+ * posters.
+ * <p>
+ * Every run writes a TSV of the peak Java and native heap, the bytes of the new bitmaps, the
+ * garbage collections and the time per mode to benchmarks/ in the external files directory
+ * of the app, like the PipelineBenchmarkTest.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PosterDecodeBenchmarkTest {
+
+    private static final String TAG = PosterDecodeBenchmarkTest.class.getSimpleName();
+
+    private static final int POSTER_COUNT = 500;
+
+    /**
+     * Distinct poster files, the w500 size of The MovieDB
+     */
+    private static final int FILE_COUNT = 20;
+    private static final int FILE_WIDTH = 500;
+    private static final int FILE_HEIGHT = 750;
+
+    /**
+     * Cells on screen: 2 columns of 3 rows, and the width of a cell
+     */
+    private static final int SCREEN_CELLS = 6;
+    private static final int CELL_WIDTH = 360;
+
+    private static final int MEMORY_CACHE_BYTES = 4 * 1024 * 1024;
+    private static final int POOL_BYTES = 1024 * 1024;
+
+    private File[] files;
+    private String label;
+
+    @Before
+    public void setUp() throws IOException {
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        label = arguments.getString("benchmarkLabel", "local");
+        File directory = new File(InstrumentationRegistry.getTargetContext().getCacheDir(),
+                "decode-benchmark");
+        assertTrue(directory.isDirectory() || directory.mkdirs());
+        files = new File[FILE_COUNT];
+        for (int i = 0; i < FILE_COUNT; i++) {
+            files[i] = new File(directory, i + ".jpg");
+            writePoster(files[i], i);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : files) {
+            if (file != null && !file.delete()) {
+                Log.e(TAG, "Problem deleting " + file);
+            }
+        }
+    }
+
+    @Test
+    public void compareHeapOverAScroll() throws IOException {
+        StringBuilder report = new StringBuilder("label\tmode\tposters\tpeak_java_kb"
+                + "\tpeak_native_kb\tnew_bitmap_kb\tgc_count\ttime_ms\tpool\n");
+        Result argb = scroll(new Decoder() {
+            @Override
+            public Bitmap decode(File file) {
+                return decodeArgb(file);
+            }
+        }, null);
+        appendRow(report, "argb_8888", argb);
+
+        final BitmapPool pool = new BitmapPool(POOL_BYTES);
+        Result rgb565 = scroll(new Decoder() {
+            @Override
+            public Bitmap decode(File file) throws IOException {
+                return ThumbnailDecoder.decode(file, CELL_WIDTH, pool);
+            }
+        }, pool);
+        appendRow(report, "rgb_565_pool", rgb565);
+
+        File directory = getBenchmarkDirectory();
+        File file = new File(directory, label + "-decode-" + System.currentTimeMillis()
+                + ".tsv");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(report.toString());
+        } finally {
+            writer.close();
+        }
+        Log.i(TAG, "Benchmark results in " + file + "\n" + report);
+        assertTrue(rgb565.newBitmapBytes < argb.newBitmapBytes);
+    }
+
+    /**
+     * Decode the posters of the scroll one after the other, as the cells are bound
+     */
+    private Result scroll(Decoder decoder, BitmapPool pool) throws IOException {
+        Runtime.getRuntime().gc();
+        PosterMemoryCache memoryCache = pool == null ? null
+                : new PosterMemoryCache(MEMORY_CACHE_BYTES, pool);
+        LruCache<String, Bitmap> plainCache = new LruCache<String, Bitmap>(MEMORY_CACHE_BYTES) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return BitmapPool.byteCountOf(value);
+            }
+        };
+        ArrayDeque<Bitmap> screen = new ArrayDeque<>();
+        long gcBefore = gcCount();
+        long peakJava = 0;
+        long peakNative = 0;
+        long newBitmapBytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < POSTER_COUNT; i++) {
+            long hitsBefore = pool == null ? 0 : pool.getStats().hitCount;
+            Bitmap bitmap = decoder.decode(files[i % FILE_COUNT]);
+            if (pool == null || pool.getStats().hitCount == hitsBefore) {
+                newBitmapBytes += BitmapPool.byteCountOf(bitmap);
+            }
+
+            /* The cell that scrolls out of the screen lets go of its poster */
+            String key = String.valueOf(i);
+            screen.addLast(bitmap);
+            if (memoryCache != null) {
+                memoryCache.set(key, bitmap);
+                memoryCache.show(bitmap);
+                if (screen.size() > SCREEN_CELLS) {
+                    memoryCache.hide(screen.removeFirst());
+                }
+            } else {
+                plainCache.put(key, bitmap);
+                if (screen.size() > SCREEN_CELLS) {
+                    screen.removeFirst();
+                }
+            }
+
+            Runtime runtime = Runtime.getRuntime();
+            peakJava = Math.max(peakJava, runtime.totalMemory() - runtime.freeMemory());
+            peakNative = Math.max(peakNative, Debug.getNativeHeapAllocatedSize());
+        }
+        long time = System.nanoTime() - start;
+        return new Result(peakJava, peakNative, newBitmapBytes, gcCount() - gcBefore, time,
+                pool == null ? "" : pool.getStats().toString());
+    }
+
+    /**
+     * The decode of a cell before the thumbnails: ARGB_8888, subsampled, then scaled down to
+     * the cell in a new bitmap
+     */
+    private static Bitmap decodeArgb(File file) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= CELL_WIDTH) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap decoded = BitmapFactory.decodeFile(file.getPath(), options);
+        if (decoded.getWidth() <= CELL_WIDTH) {
+            return decoded;
+        }
+        int height = decoded.getHeight() * CELL_WIDTH / decoded.getWidth();
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, CELL_WIDTH, height, true);
+        decoded.recycle();
+        return scaled;
+    }
+
+    /**
+     * Returns the number of garbage collections so far, or -1 before Marshmallow
+     */
+    private static long gcCount() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return -1;
+        }
+        String count = Debug.getRuntimeStat("art.gc.gc-count");
+        return count == null ? -1 : Long.parseLong(count);
+    }
+
+    private void appendRow(StringBuilder report, String mode, Result result) {
+        report.append(String.format(Locale.US, "%s\t%s\t%d\t%d\t%d\t%d\t%d\t%.2f\t%s\n", label,
+                mode, POSTER_COUNT, result.peakJava / 1024, result.peakNative / 1024,
+                result.newBitmapBytes / 1024, result.gcCount, result.nanos / 1000000.0,
+                result.poolStats));
+    }
+
+    /**
+     * Write a JPEG poster of a color of its own, with some shapes so it compresses like one
+     */
+    private static void writePoster(File file, int index) throws IOException {
+        Bitmap bitmap = Bitmap.createBitmap(FILE_WIDTH, FILE_HEIGHT, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(Color.HSVToColor(new float[]{index * 360f / FILE_COUNT, 0.6f, 0.8f}));
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        for (int i = 0; i < 12; i++) {
+            paint.setColor(Color.HSVToColor(new float[]{(index * 37 + i * 29) % 360, 0.8f,
+                    0.5f + i / 24f}));
+            canvas.drawCircle(FILE_WIDTH * ((i * 7) % 12) / 12f,
+                    FILE_HEIGHT * ((i * 5) % 12) / 12f, 40 + i * 6, paint);
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 85, out);
+        } finally {
+            out.close();
+            bitmap.recycle();
+        }
+    }
+
+    private static File getBenchmarkDirectory() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        File filesDir = context.getExternalFilesDir(null);
+        if (filesDir == null) {
+            filesDir = context.getFilesDir();
+        }
+        File directory = new File(filesDir, "benchmarks");
+        assertTrue(directory.isDirectory() || directory.mkdirs());
+        return directory;
+    }
+
+    /**
+     * Decodes a poster for a cell of the grid
+     */
+    private interface Decoder {
+        Bitmap decode(File file) throws IOException;
+    }
+
+    private static final class Result {
+
+        final long peakJava;
+        final long peakNative;
+        final long newBitmapBytes;
+        final long gcCount;
+        final long nanos;
+        final String poolStats;
+
+        Result(long peakJava, long peakNative, long newBitmapBytes, long gcCount, long nanos,
+               String poolStats) {
+            this.peakJava = peakJava;
+            this.peakNative = peakNative;
+            this.newBitmapBytes = newBitmapBytes;
+            this.gcCount = gcCount;
+            this.nanos = nanos;
+            this.poolStats = poolStats;
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package com.example.android.popularmovies;
 
+import android.arch.persistence.db.SupportSQLiteDatabase;
 import android.arch.persistence.room.Database;
 import android.arch.persistence.room.Room;
 import android.arch.persistence.room.RoomDatabase;
+import android.arch.persistence.room.migration.Migration;
+import android.support.annotation.NonNull;
 import android.content.Context;
 import android.util.Log;
 
-@Database(entities = {Movie.class}, version = 1, exportSchema = false)
+@Database(entities = {Movie.class, CatalogMovie.class, CatalogList.class}, version = 2,
+        exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
 
     private static final String LOG_TAG = AppDatabase.class.getSimpleName();
@@ -14,6 +18,22 @@ public abstract class AppDatabase extends RoomDatabase {
     private static final String DATABASE_NAME = "favoriteMovies";
     private static AppDatabase databaseInstance;
 
+    /* Version 2 adds the tables of the cached most popular and top rated lists, keeping the
+    * favorite movies */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `catalog_movie` ("
+                    + "`listName` TEXT NOT NULL, `position` INTEGER NOT NULL, "
+                    + "`page` INTEGER NOT NULL, `movieId` INTEGER NOT NULL, `movieTitle` TEXT, "
+                    + "`movieReleaseDate` TEXT, `movieUrlPoster` TEXT, `movieUserRating` TEXT, "
+                    + "`moviePlotSynopsis` TEXT, PRIMARY KEY(`listName`, `position`))");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `catalog_list` ("
+                    + "`listName` TEXT NOT NULL, `totalPages` INTEGER NOT NULL, "
+                    + "`fetchedAt` INTEGER NOT NULL, PRIMARY KEY(`listName`))");
+        }
+    };
+
     /* Gets the instance of the AppDatabase and builds the database using the
     * Room.databaseBuilder method */
      static AppDatabase getInstance(Context context) {
@@ -22,6 +42,7 @@ public abstract class AppDatabase extends RoomDatabase {
                 Log.d(LOG_TAG, "Creating a new database instance");
                 databaseInstance = Room.databaseBuilder(context.getApplicationContext(),
                         AppDatabase.class, AppDatabase.DATABASE_NAME)
+                        .addMigrations(MIGRATION_1_2)
                         .build();
             }
         }
@@ -30,4 +51,6 @@ public abstract class AppDatabase extends RoomDatabase {
     }
 
     public abstract MovieDao movieDao();
+
+    public abstract CatalogDao catalogDao();
 }
\ No newline at end of file
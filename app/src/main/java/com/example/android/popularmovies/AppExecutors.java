@@ -1,10 +1,12 @@
 package com.example.android.popularmovies;
 
 import android.os.Looper;
+import android.os.Process;
 import android.support.annotation.NonNull;
 
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import android.os.Handler;
 
@@ -19,19 +21,26 @@ class AppExecutors {
     private final Executor diskIO;
     private final Executor mainThread;
     private final Executor networkIO;
+    private final Executor prefetchIO;
+    private final Executor computation;
 
-    private AppExecutors(Executor diskIO, Executor mainThread, Executor networkIO) {
+    private AppExecutors(Executor diskIO, Executor mainThread, Executor networkIO,
+                         Executor prefetchIO, Executor computation) {
         this.diskIO = diskIO;
         this.mainThread = mainThread;
         this.networkIO = networkIO;
+        this.prefetchIO = prefetchIO;
+        this.computation = computation;
     }
 
     static AppExecutors getExecutors() {
         if (executors == null) {
             synchronized (LOCK) {
                 executors = new AppExecutors(Executors.newSingleThreadExecutor(),
+                        new MainThreadExecutor(),
                         Executors.newFixedThreadPool(3),
-                        new MainThreadExecutor());
+                        Executors.newSingleThreadExecutor(new BackgroundThreadFactory()),
+                        Executors.newSingleThreadExecutor());
             }
         }
         return executors;
@@ -41,16 +50,43 @@ class AppExecutors {
         return diskIO;
     }
 
-    @SuppressWarnings("unused")
     Executor mainThread() {
         return mainThread;
     }
 
-    @SuppressWarnings("unused")
     public Executor networkIO() {
         return networkIO;
     }
 
+    /**
+     * Single background priority thread for speculative work, so it never competes with the
+     * requests the user is waiting for
+     */
+    Executor prefetchIO() {
+        return prefetchIO;
+    }
+
+    /**
+     * Single thread for work off the main thread whose result is shown next, such as the
+     * differences between two lists of the grid
+     */
+    Executor computation() {
+        return computation;
+    }
+
+    private static class BackgroundThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "prefetch");
+        }
+    }
+
     private static class MainThreadExecutor implements Executor {
         private final Handler mainThreadHandler = new Handler(Looper.getMainLooper());
 
@@ -0,0 +1,153 @@
+package com.example.android.popularmovies;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Byte-bounded pool of the RGB_565 grid thumbnails that left the memory cache and the screen,
+ * whose memory the ThumbnailDecoder decodes the next posters into. Reusing a bitmap of another
+ * size needs KitKat, so the pool stays empty on older releases.
+ */
+final class BitmapPool {
+
+    /**
+     * True if a decode can reuse a bitmap of a different size
+     */
+    private static final boolean REUSE_SUPPORTED =
+            Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+
+    /**
+     * A pooled bitmap is only reused for a poster that needs at least half of its bytes
+     */
+    private static final int MAX_SIZE_RATIO = 2;
+
+    private final long maxBytes;
+
+    /**
+     * Pooled bitmaps by allocation size, smallest first
+     */
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> bitmaps = new TreeMap<>();
+
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private long putCount;
+    private long evictionCount;
+
+    BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the size of the memory of a bitmap in bytes
+     */
+    static int byteCountOf(Bitmap bitmap) {
+        if (REUSE_SUPPORTED) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    /**
+     * Returns a pooled bitmap of at least the given number of bytes, removed from the pool, or
+     * null if none fits
+     */
+    synchronized Bitmap get(int byteCount) {
+        Map.Entry<Integer, ArrayDeque<Bitmap>> entry = bitmaps.ceilingEntry(byteCount);
+        if (entry == null || entry.getKey() > (long) byteCount * MAX_SIZE_RATIO) {
+            missCount++;
+            return null;
+        }
+        Bitmap bitmap = remove(entry);
+        hitCount++;
+        return bitmap;
+    }
+
+    /**
+     * Add a bitmap that is no longer used to the pool. Bitmaps that cannot be decoded into
+     * are left to the garbage collector. The largest bitmaps are dropped first when the pool
+     * is full.
+     */
+    synchronized void put(Bitmap bitmap) {
+        if (!REUSE_SUPPORTED || bitmap.isRecycled() || !bitmap.isMutable()
+                || bitmap.getConfig() != Bitmap.Config.RGB_565) {
+            return;
+        }
+        int byteCount = byteCountOf(bitmap);
+        if (byteCount > maxBytes) {
+            return;
+        }
+        ArrayDeque<Bitmap> sameSize = bitmaps.get(byteCount);
+        if (sameSize == null) {
+            sameSize = new ArrayDeque<>();
+            bitmaps.put(byteCount, sameSize);
+        }
+        sameSize.push(bitmap);
+        size += byteCount;
+        putCount++;
+        while (size > maxBytes) {
+            remove(bitmaps.lastEntry());
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Drop every pooled bitmap
+     */
+    synchronized void clear() {
+        bitmaps.clear();
+        size = 0;
+    }
+
+    private Bitmap remove(Map.Entry<Integer, ArrayDeque<Bitmap>> entry) {
+        Bitmap bitmap = entry.getValue().pop();
+        if (entry.getValue().isEmpty()) {
+            bitmaps.remove(entry.getKey());
+        }
+        size -= entry.getKey();
+        return bitmap;
+    }
+
+    /**
+     * Returns a snapshot of the pool counters
+     */
+    synchronized Stats getStats() {
+        return new Stats(hitCount, missCount, putCount, evictionCount, size, maxBytes);
+    }
+
+    /**
+     * Pool counters: decodes into a pooled bitmap and into a new one, bitmaps added and
+     * dropped, and the size of the pool
+     */
+    static final class Stats {
+
+        final long hitCount;
+        final long missCount;
+        final long putCount;
+        final long evictionCount;
+        final long size;
+        final long maxSize;
+
+        Stats(long hitCount, long missCount, long putCount, long evictionCount, long size,
+              long maxSize) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.putCount = putCount;
+            this.evictionCount = evictionCount;
+            this.size = size;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "poolHits=%d poolMisses=%d poolPuts=%d"
+                            + " poolEvictions=%d poolKb=%d/%d", hitCount, missCount, putCount,
+                    evictionCount, size / 1024, maxSize / 1024);
+        }
+    }
+}
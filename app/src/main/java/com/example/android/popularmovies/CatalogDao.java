@@ -0,0 +1,45 @@
+package com.example.android.popularmovies;
+
+import android.arch.lifecycle.LiveData;
+import android.arch.persistence.room.Dao;
+import android.arch.persistence.room.Insert;
+import android.arch.persistence.room.OnConflictStrategy;
+import android.arch.persistence.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface CatalogDao {
+
+    @Query("SELECT catalog_movie.movieId AS movieId, movieTitle, movieReleaseDate, movieUrlPoster, "
+            + "movieUserRating, moviePlotSynopsis, page, totalPages, fetchedAt "
+            + "FROM catalog_movie INNER JOIN catalog_list "
+            + "ON catalog_movie.listName = catalog_list.listName "
+            + "WHERE catalog_movie.listName = :listName ORDER BY position")
+    LiveData<List<CatalogRow>> loadCatalog(String listName);
+
+    @Query("SELECT * FROM catalog_list WHERE listName = :listName")
+    CatalogList getList(String listName);
+
+    @Query("SELECT * FROM catalog_movie WHERE listName = :listName AND page = :page "
+            + "ORDER BY position")
+    List<CatalogMovie> getMovies(String listName, int page);
+
+    @Query("SELECT MAX(page) FROM catalog_movie WHERE listName = :listName")
+    int getLoadedPage(String listName);
+
+    @Query("SELECT COUNT (*) FROM catalog_movie WHERE listName = :listName")
+    int getMovieCount(String listName);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertList(CatalogList catalogList);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertMovies(List<CatalogMovie> catalogMovies);
+
+    @Query("UPDATE catalog_list SET totalPages = :totalPages WHERE listName = :listName")
+    void updateTotalPages(String listName, int totalPages);
+
+    @Query("DELETE FROM catalog_movie WHERE listName = :listName")
+    void deleteMovies(String listName);
+}
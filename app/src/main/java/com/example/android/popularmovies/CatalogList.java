@@ -0,0 +1,48 @@
+package com.example.android.popularmovies;
+
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.PrimaryKey;
+import android.support.annotation.NonNull;
+
+/**
+ * A CatalogList holds the paging state and the age of a cached most popular or top rated list
+ */
+@Entity(tableName = "catalog_list")
+class CatalogList {
+
+    /**
+     * Name of the list (popular or top_rated)
+     */
+    @PrimaryKey
+    @NonNull
+    private final String listName;
+
+    /**
+     * Total number of pages reported by the server
+     */
+    private final int totalPages;
+
+    /**
+     * Time the first page of the list was downloaded, in milliseconds
+     */
+    private final long fetchedAt;
+
+    CatalogList(@NonNull String listName, int totalPages, long fetchedAt) {
+        this.listName = listName;
+        this.totalPages = totalPages;
+        this.fetchedAt = fetchedAt;
+    }
+
+    @NonNull
+    String getListName() {
+        return listName;
+    }
+
+    int getTotalPages() {
+        return totalPages;
+    }
+
+    long getFetchedAt() {
+        return fetchedAt;
+    }
+}
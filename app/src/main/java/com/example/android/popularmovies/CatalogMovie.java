@@ -0,0 +1,106 @@
+package com.example.android.popularmovies;
+
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Ignore;
+import android.support.annotation.NonNull;
+
+/**
+ * A CatalogMovie is a movie at a given position of a cached most popular or top rated list.
+ * The columns of the movie are declared here rather than embedded from the Movie entity, whose
+ * primary key does not apply to a list where the same movie may come back on another page.
+ */
+@Entity(tableName = "catalog_movie", primaryKeys = {"listName", "position"})
+class CatalogMovie {
+
+    /**
+     * Name of the list (popular or top_rated)
+     */
+    @NonNull
+    private final String listName;
+
+    /**
+     * Position of the movie in the list, starting at 0
+     */
+    private final int position;
+
+    /**
+     * Page of the list the movie was loaded with
+     */
+    private final int page;
+
+    /**
+     * Columns of the movie itself
+     */
+    private final int movieId;
+    private final String movieTitle;
+    private final String movieReleaseDate;
+    private final String movieUrlPoster;
+    private final String movieUserRating;
+    private final String moviePlotSynopsis;
+
+    CatalogMovie(@NonNull String listName, int position, int page, int movieId,
+                 String movieTitle, String movieReleaseDate, String movieUrlPoster,
+                 String movieUserRating, String moviePlotSynopsis) {
+        this.listName = listName;
+        this.position = position;
+        this.page = page;
+        this.movieId = movieId;
+        this.movieTitle = movieTitle;
+        this.movieReleaseDate = movieReleaseDate;
+        this.movieUrlPoster = movieUrlPoster;
+        this.movieUserRating = movieUserRating;
+        this.moviePlotSynopsis = moviePlotSynopsis;
+    }
+
+    @Ignore
+    CatalogMovie(@NonNull String listName, int position, int page, Movie movie) {
+        this(listName, position, page, movie.getMovieId(), movie.getMovieTitle(),
+                movie.getMovieReleaseDate(), movie.getMovieUrlPoster(),
+                movie.getMovieUserRating(), movie.getMoviePlotSynopsis());
+    }
+
+    @NonNull
+    String getListName() {
+        return listName;
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    int getPage() {
+        return page;
+    }
+
+    int getMovieId() {
+        return movieId;
+    }
+
+    String getMovieTitle() {
+        return movieTitle;
+    }
+
+    String getMovieReleaseDate() {
+        return movieReleaseDate;
+    }
+
+    String getMovieUrlPoster() {
+        return movieUrlPoster;
+    }
+
+    String getMovieUserRating() {
+        return movieUserRating;
+    }
+
+    String getMoviePlotSynopsis() {
+        return moviePlotSynopsis;
+    }
+
+    /**
+     * Returns a new Movie of the columns of the row
+     */
+    Movie getMovie() {
+        return new Movie(movieId, movieTitle, movieReleaseDate, movieUrlPoster, movieUserRating,
+                moviePlotSynopsis);
+    }
+}
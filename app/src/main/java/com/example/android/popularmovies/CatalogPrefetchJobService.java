@@ -0,0 +1,135 @@
+package com.example.android.popularmovies;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.res.Resources;
+import android.os.Build;
+import android.util.Log;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic job that runs the CatalogPrefetcher while the device is charging and on an
+ * unmetered network, so the next session starts from warm lists and posters.
+ * JobScheduler is only available from Lollipop, older devices go without the prefetch.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class CatalogPrefetchJobService extends JobService {
+
+    private static final String LOG_TAG = CatalogPrefetchJobService.class.getSimpleName();
+
+    private static final int JOB_ID = 1001;
+
+    /**
+     * Handle of the running prefetch, cancelled when the job has to stop
+     */
+    private RequestHandle handle;
+
+    /**
+     * Schedule the periodic prefetch, unless it is already scheduled
+     */
+    static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        JobScheduler jobScheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (jobScheduler == null) {
+            return;
+        }
+        for (JobInfo pendingJob : jobScheduler.getAllPendingJobs()) {
+            if (pendingJob.getId() == JOB_ID) {
+                return;
+            }
+        }
+        long period = TimeUnit.HOURS.toMillis(
+                context.getResources().getInteger(R.integer.prefetch_period_hours));
+        JobInfo jobInfo = new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, CatalogPrefetchJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setRequiresCharging(true)
+                .setPeriodic(period)
+                .build();
+        if (jobScheduler.schedule(jobInfo) != JobScheduler.RESULT_SUCCESS) {
+            Log.e(LOG_TAG, "Problem scheduling the catalog prefetch");
+        }
+    }
+
+    /**
+     * Create the prefetcher of the most popular and top rated lists, with the budget from the
+     * resources
+     */
+    static CatalogPrefetcher createPrefetcher(final Context context) {
+        Resources resources = context.getResources();
+        CatalogPrefetcher.Budget budget = new CatalogPrefetcher.Budget(
+                resources.getInteger(R.integer.prefetch_max_requests),
+                resources.getInteger(R.integer.prefetch_max_kilobytes) * 1024L);
+        CatalogPrefetcher.Endpoints endpoints = new CatalogPrefetcher.Endpoints() {
+            @Override
+            public URL listUrl(String listName) {
+                return QueryUtils.createMovieUrl(listName, 1);
+            }
+
+            @Override
+            public URL posterUrl(Movie movie) {
+                if (movie.getMovieUrlPoster() == null) {
+                    return null;
+                }
+                try {
+                    /* The posters are prefetched at the size the grid last asked for */
+                    int width = ImageConfiguration.getInstance(context).getGridCellWidth();
+                    return new URL(MovieAdapter.formatPosterPath(context, movie, width)
+                            .toString());
+                } catch (MalformedURLException e) {
+                    Log.e(LOG_TAG, "Problem building the poster URL", e);
+                    return null;
+                }
+            }
+        };
+        return new CatalogPrefetcher(
+                Arrays.asList(context.getString(R.string.settings_sort_by_most_popular_value),
+                        context.getString(R.string.settings_sort_by_top_rated_value)),
+                JsonParsers.MOVIE_PAGE, endpoints, MovieRepository.getInstance(context),
+                PosterCache.getInstance(), budget);
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        /* The process may have been started for the job alone */
+        Context context = getApplicationContext();
+        JsonResponseCache.install(context.getCacheDir());
+        PosterCache.install(context);
+
+        final CatalogPrefetcher prefetcher = createPrefetcher(context);
+        final RequestHandle jobHandle = new RequestHandle();
+        handle = jobHandle;
+        AppExecutors.getExecutors().networkIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                CatalogPrefetcher.Result result = prefetcher.run(jobHandle);
+                Log.d(LOG_TAG, "Catalog prefetch: " + result);
+                if (!result.cancelled) {
+                    jobFinished(params, false);
+                }
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        /* The conditions are gone, stop now and run again later */
+        if (handle != null) {
+            handle.cancel();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.android.popularmovies;
+
+import android.util.Log;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Warms the most popular and top rated lists and their posters ahead of the next session:
+ * the first page of every stale list is downloaded again and stored, and the posters of the
+ * first page of every list are downloaded into the PosterCache. The number of requests and
+ * the number of bytes a run may use are capped by a Budget.
+ */
+final class CatalogPrefetcher {
+
+    private static final String TAG = CatalogPrefetcher.class.getSimpleName();
+
+    /**
+     * Where the lists and the posters are downloaded from
+     */
+    interface Endpoints {
+        URL listUrl(String listName);
+
+        URL posterUrl(Movie movie);
+    }
+
+    /**
+     * Where the lists are stored
+     */
+    interface CatalogStore {
+        boolean isStale(String listName, long now);
+
+        List<Movie> getMovies(String listName, int page);
+
+        void savePage(String listName, MoviePage moviePage, long now);
+    }
+
+    /**
+     * Limits of a single run
+     */
+    static final class Budget {
+
+        final int maxRequests;
+        final long maxBytes;
+
+        Budget(int maxRequests, long maxBytes) {
+            this.maxRequests = maxRequests;
+            this.maxBytes = maxBytes;
+        }
+    }
+
+    private final List<String> listNames;
+    private final ResponseParser<MoviePage> pageParser;
+    private final Endpoints endpoints;
+    private final CatalogStore catalogStore;
+    private final PosterCache posterCache;
+    private final Budget budget;
+
+    CatalogPrefetcher(List<String> listNames, ResponseParser<MoviePage> pageParser,
+                      Endpoints endpoints, CatalogStore catalogStore, PosterCache posterCache,
+                      Budget budget) {
+        this.listNames = listNames;
+        this.pageParser = pageParser;
+        this.endpoints = endpoints;
+        this.catalogStore = catalogStore;
+        this.posterCache = posterCache;
+        this.budget = budget;
+    }
+
+    /**
+     * Run the prefetch on the calling thread, until it is done, the budget is spent or the
+     * handle is cancelled
+     */
+    Result run(RequestHandle handle) {
+        Result result = new Result();
+        long now = System.currentTimeMillis();
+        try {
+            List<Movie> movies = new ArrayList<>();
+            for (String listName : listNames) {
+                movies.addAll(refreshList(listName, now, handle, result));
+            }
+            if (posterCache != null) {
+                for (Movie movie : movies) {
+                    if (!prefetchPoster(movie, handle, result)) {
+                        break;
+                    }
+                }
+            }
+        } catch (InterruptedIOException e) {
+            result.cancelled = true;
+        }
+        return result;
+    }
+
+    /**
+     * Download the first page of the list again if it is stale. Returns the movies of the
+     * first page, from the network or from the store.
+     */
+    private List<Movie> refreshList(String listName, long now, RequestHandle handle,
+                                    Result result) throws InterruptedIOException {
+        if (!catalogStore.isStale(listName, now)) {
+            return catalogStore.getMovies(listName, 1);
+        }
+        if (!result.spend(budget)) {
+            return catalogStore.getMovies(listName, 1);
+        }
+        CountingParser countingParser = new CountingParser();
+        try {
+            MoviePage moviePage = QueryUtils.fetch(endpoints.listUrl(listName), countingParser,
+                    handle);
+            result.byteCount += countingParser.count;
+            if (moviePage != null) {
+                catalogStore.savePage(listName, moviePage, now);
+                result.refreshedLists++;
+                return moviePage.movies;
+            }
+            result.failedRequests++;
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            result.byteCount += countingParser.count;
+            result.failedRequests++;
+            Log.e(TAG, "Problem prefetching the " + listName + " list", e);
+        }
+        return catalogStore.getMovies(listName, 1);
+    }
+
+    /**
+     * Download the poster of the movie unless it is already cached. Returns false once the
+     * budget is spent.
+     */
+    private boolean prefetchPoster(Movie movie, RequestHandle handle, Result result)
+            throws InterruptedIOException {
+        URL url = endpoints.posterUrl(movie);
+        if (url == null) {
+            return true;
+        }
+        if (posterCache.get(url.toString()) != null) {
+            result.cachedPosters++;
+            return true;
+        }
+        if (!result.spend(budget)) {
+            return false;
+        }
+        try {
+            long remainingBytes = budget.maxBytes - result.byteCount;
+            long downloaded = posterCache.download(url, handle, remainingBytes);
+            if (downloaded < 0) {
+                /* The poster does not fit in what is left of the budget */
+                result.budgetExhausted = true;
+                return false;
+            }
+            result.byteCount += downloaded;
+            result.downloadedPosters++;
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            result.failedRequests++;
+            Log.e(TAG, "Problem prefetching the poster " + url, e);
+        }
+        return true;
+    }
+
+    /**
+     * Parser that counts the bytes read by the page parser
+     */
+    private final class CountingParser implements ResponseParser<MoviePage> {
+
+        long count;
+
+        @Override
+        public MoviePage parse(InputStream inputStream) throws IOException {
+            return pageParser.parse(new FilterInputStream(inputStream) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b != -1) {
+                        count++;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        count += read;
+                    }
+                    return read;
+                }
+            });
+        }
+    }
+
+    /**
+     * Outcome of a run: lists downloaded again, posters downloaded and already cached, failed
+     * requests, requests sent and bytes read, and whether the run stopped early
+     */
+    static final class Result {
+
+        int refreshedLists;
+        int downloadedPosters;
+        int cachedPosters;
+        int failedRequests;
+        int requestCount;
+        long byteCount;
+        boolean budgetExhausted;
+        boolean cancelled;
+
+        /**
+         * Take one request from the budget. Returns false if the budget is spent.
+         */
+        private boolean spend(Budget budget) {
+            if (requestCount >= budget.maxRequests || byteCount >= budget.maxBytes) {
+                budgetExhausted = true;
+                return false;
+            }
+            requestCount++;
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "lists=" + refreshedLists + " posters=" + downloadedPosters
+                    + " cachedPosters=" + cachedPosters + " failed=" + failedRequests
+                    + " requests=" + requestCount + " bytes=" + byteCount
+                    + " budgetExhausted=" + budgetExhausted + " cancelled=" + cancelled;
+        }
+    }
+}
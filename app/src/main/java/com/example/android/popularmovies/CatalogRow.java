@@ -0,0 +1,42 @@
+package com.example.android.popularmovies;
+
+import android.arch.persistence.room.Embedded;
+
+/**
+ * A row of a cached list as read back from the database: the movie, the page it was loaded
+ * with and the paging state of its list
+ */
+class CatalogRow {
+
+    @Embedded
+    private final Movie movie;
+
+    private final int page;
+
+    private final int totalPages;
+
+    private final long fetchedAt;
+
+    CatalogRow(Movie movie, int page, int totalPages, long fetchedAt) {
+        this.movie = movie;
+        this.page = page;
+        this.totalPages = totalPages;
+        this.fetchedAt = fetchedAt;
+    }
+
+    Movie getMovie() {
+        return movie;
+    }
+
+    int getPage() {
+        return page;
+    }
+
+    int getTotalPages() {
+        return totalPages;
+    }
+
+    long getFetchedAt() {
+        return fetchedAt;
+    }
+}
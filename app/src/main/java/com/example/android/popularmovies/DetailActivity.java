@@ -4,10 +4,12 @@ import android.arch.lifecycle.Observer;
 import android.arch.lifecycle.ViewModelProviders;
 import android.content.Context;
 import android.content.Intent;
+import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Parcelable;
 import android.support.annotation.Nullable;
+import android.support.v4.text.PrecomputedTextCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.support.v7.widget.LinearLayoutManager;
@@ -15,6 +17,8 @@ import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.ScrollView;
@@ -23,10 +27,7 @@ import android.widget.Toast;
 
 import com.example.android.popularmovies.adapters.ReviewAdapter;
 import com.example.android.popularmovies.adapters.TrailerAdapter;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.squareup.picasso.RequestCreator;
 
 import java.io.IOException;
 import java.net.URL;
@@ -68,9 +69,9 @@ public class DetailActivity extends AppCompatActivity {
     private TextView emptyReviewTextView;
 
     /**
-     * Review list
+     * Pages of reviews kept in memory, which are loaded as the reviews are scrolled
      */
-    private List<Review> reviews;
+    private ReviewWindow reviewWindow;
 
     /**
      * Trailer list
@@ -118,9 +119,11 @@ public class DetailActivity extends AppCompatActivity {
     private static final String TRAILERS = "trailers";
 
     /**
-     * Key of the list of reviews
+     * Keys of the pages of reviews in memory, which are loaded again rather than saved
      */
-    private static final String REVIEWS = "reviews";
+    private static final String REVIEW_FIRST_PAGE = "reviewFirstPage";
+    private static final String REVIEW_LAST_PAGE = "reviewLastPage";
+    private static final String REVIEW_TOTAL_PAGES = "reviewTotalPages";
 
     /**
      * Key of the boolean isFavorite
@@ -142,16 +145,52 @@ public class DetailActivity extends AppCompatActivity {
      */
     private ReviewAdapter reviewAdapter;
 
+    /**
+     * Text metrics of the review TextView, which the reviews are laid out for off the main
+     * thread
+     */
+    private PrecomputedTextCompat.Params reviewTextParams;
+
     /**
      * Adapter for trailers
      */
     private TrailerAdapter trailerAdapter;
 
+    /**
+     * Requests of the Activity, cancelled when the Activity is destroyed
+     */
+    private RequestGroup detailRequests;
+
+    /**
+     * Loads the poster, over the grid thumbnail or the smallest size of the poster
+     */
+    private ProgressivePoster poster;
+
+    /**
+     * Positions of the first and last reviews on screen, or -1 if none is
+     */
+    private int firstVisibleReview;
+    private int lastVisibleReview;
+
+    /**
+     * Loads the pages of reviews next to the ones on screen as the ScrollView scrolls
+     */
+    private final ViewTreeObserver.OnScrollChangedListener reviewScrollListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+                @Override
+                public void onScrollChanged() {
+                    loadReviewsIfNeeded();
+                }
+            };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_detail);
 
+        /* The Activity may be the first one restored after the process was killed */
+        ImageCache.install(this);
+
         /* Find references to all the UI components */
         addToFavoritesButton = findViewById(R.id.favorites_button);
         reviewRecyclerView = findViewById(R.id.reviews_recycler_view);
@@ -160,21 +199,31 @@ public class DetailActivity extends AppCompatActivity {
         emptyReviewTextView = findViewById(R.id.empty_review_view);
         emptyTrailerTextView = findViewById(R.id.empty_trailer_view);
 
-        /* Create a new TrailerAdapter and ReviewAdapter */
+        /* Create a new TrailerAdapter, and a ReviewAdapter of the pages of reviews in memory */
         trailerAdapter = new TrailerAdapter(trailers);
-        reviewAdapter = new ReviewAdapter(reviews);
+        reviewWindow = new ReviewWindow(getResources().getInteger(R.integer.review_window_pages),
+                getResources().getInteger(R.integer.review_prefetch_items));
+        reviewTextParams = ReviewAdapter.getTextParams(reviewRecyclerView);
+        reviewAdapter = createReviewAdapter();
 
         /* Set a new LinearLayoutManager to the trailerRecyclerView and reviewRecyclerView*/
         reviewRecyclerView.setLayoutManager(new LinearLayoutManager(this));
         trailerRecyclerView.setLayoutManager(new LinearLayoutManager(this));
 
-        /* Set the adapters to the RecyclerViews */
+        /* Set the adapters to the RecyclerViews. The reviews that are added and dropped are
+         * not animated, so the scroll position can be kept when the pages above change. */
         reviewRecyclerView.setAdapter(reviewAdapter);
+        reviewRecyclerView.setItemAnimator(null);
         trailerRecyclerView.setAdapter(trailerAdapter);
+        scrollView.getViewTreeObserver().addOnScrollChangedListener(reviewScrollListener);
 
         /* Get instance of the AppDatabase using the app context */
         database = AppDatabase.getInstance(getApplicationContext());
 
+        /* Cancel the running requests when the Activity is destroyed */
+        detailRequests = new RequestGroup();
+        getLifecycle().addObserver(detailRequests);
+
         /* Check if the savedInstanceState exists, and contains the key CURRENT_MOVIE.
          * If so, get the parcelable under that key value from the savedInstanceState,
          * if not, get the parcelable from the intent. */
@@ -185,7 +234,9 @@ public class DetailActivity extends AppCompatActivity {
             currentMovie = savedInstanceState.getParcelable(CURRENT_MOVIE);
             isFavorite = savedInstanceState.getBoolean(IS_FAVORITE);
             trailers = savedInstanceState.getParcelableArrayList(TRAILERS);
-            reviews = savedInstanceState.getParcelableArrayList(REVIEWS);
+            reviewWindow.restore(savedInstanceState.getInt(REVIEW_FIRST_PAGE),
+                    savedInstanceState.getInt(REVIEW_LAST_PAGE),
+                    savedInstanceState.getInt(REVIEW_TOTAL_PAGES));
             scrollX = savedInstanceState.getInt(SCROLL_POSITION_X);
             scrollY = savedInstanceState.getInt(SCROLL_POSITION_Y);
         }
@@ -200,7 +251,9 @@ public class DetailActivity extends AppCompatActivity {
         savedInstanceState.putParcelable(CURRENT_MOVIE, currentMovie);
         savedInstanceState.putBoolean(IS_FAVORITE, isFavorite);
         savedInstanceState.putParcelableArrayList(TRAILERS, (ArrayList<? extends Parcelable>) trailers);
-        savedInstanceState.putParcelableArrayList(REVIEWS, (ArrayList<? extends Parcelable>) reviews);
+        savedInstanceState.putInt(REVIEW_FIRST_PAGE, reviewWindow.getFirstPage());
+        savedInstanceState.putInt(REVIEW_LAST_PAGE, reviewWindow.getLastPage());
+        savedInstanceState.putInt(REVIEW_TOTAL_PAGES, reviewWindow.getTotalPages());
         scrollX = scrollView.getScrollX();
         scrollY = scrollView.getScrollY();
         savedInstanceState.putInt(SCROLL_POSITION_X, scrollX);
@@ -229,6 +282,18 @@ public class DetailActivity extends AppCompatActivity {
         finish();
     }
 
+    /**
+     * Let go of the poster, so the grid thumbnail it may show can be reused
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        scrollView.getViewTreeObserver().removeOnScrollChangedListener(reviewScrollListener);
+        if (poster != null) {
+            poster.clear();
+        }
+    }
+
     /**
      * Checks if the movie is saved in the Favorites list
      */
@@ -267,167 +332,261 @@ public class DetailActivity extends AppCompatActivity {
     }
 
     /**
-     * ReviewAsyncTask class that uses the movie ID to create the reviewUrl String of that
-     * movie, makes the HTTP request and parses the JSON String in order to create a new Review object.
-     * Returns a list of reviews.
+     * DetailAsyncTask class that uses the movie ID to request the details of that movie together
+     * with its trailers and reviews in a single HTTP request, and parses all of them in one pass.
+     * Returns the MovieDetails.
      */
-    private class ReviewAsyncTask extends AsyncTask<String, Void, List<Review>> {
+    private class DetailAsyncTask extends AsyncTask<Void, Void, MovieDetails> {
 
-        String reviewUrl = null;
+        /**
+         * Handle that cancels the request when the Activity is destroyed
+         */
+        private final RequestHandle handle = detailRequests.newHandle();
 
         @Override
-        protected List<Review> doInBackground(String... strings) {
+        protected MovieDetails doInBackground(Void... voids) {
 
             int id = currentMovie.getMovieId();
-            reviews = new ArrayList<>();
-
-            try {
-                URL url = QueryUtils.createReviewTrailerUrl(String.valueOf(id), QueryUtils.REVIEW_QUERY);
-                String reviewJson = QueryUtils.makeHttpRequest(url);
-
-                /* Create a JSONObject from the JSON response string */
-                JSONObject baseJsonResponse = new JSONObject(reviewJson);
-
-                /* Extract the JSONArray with the key "results" **/
-                JSONArray reviewArray = baseJsonResponse.getJSONArray("results");
-
-                if (reviewArray.length() == 0) {
-                    return reviews;
+            MovieDetails movieDetails = null;
+
+            /* Use the details prefetched while the movie was on screen in the grid, waiting a
+             * little for the prefetch if it is still in flight */
+            movieDetails = DetailPrefetcher.getInstance().take(id, handle);
+            if (movieDetails == null) {
+                try {
+                    /* Parse the details, trailers and reviews straight from the response
+                     * stream */
+                    URL url = QueryUtils.createMovieDetailsUrl(String.valueOf(id));
+                    movieDetails = QueryUtils.fetch(url, JsonParsers.MOVIE_DETAILS, handle);
+                } catch (IOException e) {
+                    if (!handle.isCancelled()) {
+                        Log.e(LOG_TAG, "Problem retrieving the movie JSON results.", e);
+                    }
                 }
+            }
 
-                /* For each review in the reviewArray, create a Review object */
-                for (int i = 0; i < reviewArray.length(); i++) {
-
-                    /* Get a single review at position i within the list of reviews */
-                    JSONObject reviewObject = reviewArray.getJSONObject(i);
-
-                    /* Extract the value for the required keys */
-                    String reviewAuthor = reviewObject.getString("author");
-                    String reviewText = reviewObject.getString("content");
-                    reviewUrl = reviewObject.getString("url");
-
-                    /* Create a new Review object with the given values */
-                    Review currentReview = new Review(reviewAuthor, reviewText, reviewUrl);
-
-                    currentReview.setReviewAuthor(reviewAuthor);
-                    currentReview.setReviewText(reviewText);
-                    currentReview.setReviewUrl(reviewUrl);
-                    reviews.add(i, currentReview);
-                }
-            } catch (IOException e) {
-                Log.e(LOG_TAG, "Problem retrieving the movie JSON results.", e);
-            } catch (JSONException e) {
-                Log.e(LOG_TAG, "Problem parsing the movie JSON response results", e);
+            /* Lay out the previews of the reviews here, rather than when they are bound */
+            if (movieDetails != null) {
+                reviewAdapter.precomputePreviews(movieDetails.reviews);
             }
-            /* Return a list of reviews */
-            return reviews;
+            /* Return the details of the movie */
+            return movieDetails;
         }
 
         /**
-         * Use the review values to populate the UI
+         * Use the trailer and review values to populate the UI
          */
         @Override
-        protected void onPostExecute(List<Review> reviews) {
+        protected void onPostExecute(MovieDetails movieDetails) {
+            detailRequests.finish(handle);
+            if (handle.isCancelled()) {
+                return;
+            }
+            trailers = new ArrayList<>();
+            if (movieDetails != null) {
+                trailers.addAll(movieDetails.trailers);
+            }
+
+            /* If there are no trailers, hide the trailerRecyclerView and inform the user there
+             * are no trailers found */
+            if (trailers.size() == 0) {
+                trailerRecyclerView.setVisibility(View.GONE);
+                emptyTrailerTextView.setText(getString(R.string.no_trailers_found));
+            } else {
+                populateTrailers();
+            }
+
             /* If there are no reviews, hide the reviewRecyclerView and inform the user there
              * are no reviews found */
-            if (reviews.size() == 0) {
+            if (movieDetails == null || movieDetails.reviews.isEmpty()) {
                 reviewRecyclerView.setVisibility(View.GONE);
                 emptyReviewTextView.setText(getString(R.string.no_reviews_found));
-                /* If there are review values, populate the UI with them */
+                /* If there are review values, populate the UI with the first page of them */
             } else {
-                populateReviews();
+                showReviewPage(new ReviewPage(1, movieDetails.reviewTotalPages,
+                        movieDetails.reviews));
             }
         }
     }
 
     /**
-     * Populate the reviews of the current movie
+     * ReviewAsyncTask class that loads a page of the reviews of the current movie, either the
+     * one next to the pages on screen or one of the pages of a restored window.
+     * Returns the page of reviews.
      */
-    private void populateReviews() {
-        reviewAdapter = new ReviewAdapter(reviews);
-        reviewRecyclerView.setAdapter(reviewAdapter);
-        reviewRecyclerView.setVisibility(View.VISIBLE);
-        emptyReviewTextView.setVisibility(View.GONE);
-        reviewRecyclerView.setLayoutManager(new LinearLayoutManager(DetailActivity.this));
-    }
+    private class ReviewAsyncTask extends AsyncTask<Void, Void, ReviewPage> {
 
-    /**
-     * Populate the trailers of the current movie
-     */
-    private void populateTrailers() {
-        trailerAdapter = new TrailerAdapter(trailers);
-        trailerRecyclerView.setVisibility(View.VISIBLE);
-        trailerRecyclerView.setAdapter(trailerAdapter);
-        emptyTrailerTextView.setVisibility(View.GONE);
-        trailerRecyclerView.setLayoutManager(new LinearLayoutManager(DetailActivity.this));
-    }
+        /**
+         * Page the task loads
+         */
+        private final int page;
 
-    /**
-     * TrailerAsyncTask class that uses the movie ID to create the trailerUrlPath String of that
-     * movie, makes the HTTP request and parses the JSON String in order to create a cnew Trailer object.
-     * Returns a list of trailers.
-     */
-    private class TrailerAsyncTask extends AsyncTask<String, Void, List<Trailer>> {
+        /**
+         * Handle that cancels the request when the Activity is destroyed
+         */
+        private final RequestHandle handle = detailRequests.newHandle();
 
-        String trailerUrlPath = null;
+        ReviewAsyncTask(int page) {
+            this.page = page;
+        }
 
         @Override
-        protected List<Trailer> doInBackground(String... strings) {
-
-            int id = currentMovie.getMovieId();
-            trailers = new ArrayList<>();
+        protected ReviewPage doInBackground(Void... voids) {
+            ReviewPage reviewPage = null;
 
             try {
-                URL url = QueryUtils.createReviewTrailerUrl(String.valueOf(id), QueryUtils.TRAILER_QUERY);
-                String movieString = QueryUtils.makeHttpRequest(url);
-
-                /* Create a JSONObject from the JSON response string */
-                JSONObject baseJsonResponse = new JSONObject(movieString);
+                URL url = QueryUtils.createReviewsUrl(
+                        String.valueOf(currentMovie.getMovieId()), page);
+                reviewPage = QueryUtils.fetch(url, JsonParsers.REVIEW_PAGE, handle);
+            } catch (IOException e) {
+                if (!handle.isCancelled()) {
+                    Log.e(LOG_TAG, "Problem retrieving the review JSON results.", e);
+                }
+            }
 
-                /* Extract the JSONArray with the key "results" */
-                JSONArray movieTrailerArray = baseJsonResponse.getJSONArray("results");
+            /* Lay out the previews of the reviews here, rather than when they are bound */
+            if (reviewPage != null) {
+                reviewAdapter.precomputePreviews(reviewPage.reviews);
+            }
+            /* Return the page of reviews */
+            return reviewPage;
+        }
 
-                if (movieTrailerArray.length() == 0) {
-                    return trailers;
+        @Override
+        protected void onPostExecute(ReviewPage reviewPage) {
+            detailRequests.finish(handle);
+            if (handle.isCancelled()) {
+                return;
+            }
+            if (reviewPage == null) {
+                reviewWindow.onPageFailed(page);
+                if (reviewWindow.getReviews().isEmpty()) {
+                    emptyReviewTextView.setText(getString(R.string.no_reviews_found));
                 }
-                for (int i = 0; i < movieTrailerArray.length(); i++) {
-                    /* Create a trailerObject for the first trailer in the movieTrailerArray, */
-                    JSONObject trailerObject = movieTrailerArray.getJSONObject(i);
-
-                    /* Extract the values for the required keys */
-                    trailerUrlPath = trailerObject.getString("key");
-                    String trailerName = trailerObject.getString("name");
+            } else {
+                showReviewPage(reviewPage);
+            }
+        }
+    }
 
-                    /* Create a new Trailer object with the given values */
-                    Trailer currentTrailer = new Trailer(trailerUrlPath, trailerName);
+    /**
+     * Load the page of reviews next to the ones on screen, if they are close to either end of
+     * the pages in memory
+     */
+    private void loadReviewsIfNeeded() {
+        findVisibleReviews();
+        int page = reviewWindow.pageToLoad(firstVisibleReview, lastVisibleReview);
+        if (page != 0) {
+            new ReviewAsyncTask(page).execute();
+        }
+    }
 
-                    currentTrailer.setTrailerUrlPath(trailerUrlPath);
-                    currentTrailer.setTrailerName(trailerName);
-                    trailers.add(i, currentTrailer);
-                }
-            } catch (IOException e) {
-                Log.e(LOG_TAG, "Problem retrieving the movie JSON results.", e);
-            } catch (JSONException e) {
-                Log.e(LOG_TAG, "Problem parsing the movie JSON response results", e);
+    /**
+     * Find the positions of the first and last reviews inside the viewport of the ScrollView
+     */
+    private void findVisibleReviews() {
+        int top = scrollView.getScrollY() - reviewRecyclerView.getTop();
+        int bottom = top + scrollView.getHeight();
+        firstVisibleReview = -1;
+        lastVisibleReview = -1;
+        for (int i = 0; i < reviewRecyclerView.getChildCount(); i++) {
+            View child = reviewRecyclerView.getChildAt(i);
+            if (child.getBottom() <= top || child.getTop() >= bottom) {
+                continue;
+            }
+            int position = reviewRecyclerView.getChildAdapterPosition(child);
+            if (position == RecyclerView.NO_POSITION) {
+                continue;
+            }
+            if (firstVisibleReview == -1 || position < firstVisibleReview) {
+                firstVisibleReview = position;
             }
-            /* Return a list of trailers */
-            return trailers;
+            lastVisibleReview = Math.max(lastVisibleReview, position);
         }
+    }
 
-        /**
-         * Use the trailer values to populate the UI
-         */
-        @Override
-        protected void onPostExecute(List<Trailer> trailers) {
-            /* If there are no trailers, hide the trailerRecyclerView and inform the user there
-             * are no trailers found */
-            if (trailers.size() == 0) {
-                trailerRecyclerView.setVisibility(View.GONE);
-                emptyTrailerTextView.setText(getString(R.string.no_trailers_found));
-            } else {
-                populateTrailers();
+    /**
+     * Add the page to the reviews in memory, and keep the reviews on screen in place when the
+     * reviews above them are dropped or loaded again
+     */
+    private void showReviewPage(ReviewPage reviewPage) {
+        ReviewWindow.Change change = reviewWindow.onPageLoaded(reviewPage);
+        if (change == null) {
+            return;
+        }
+        /* The reviews dropped above the viewport no longer take up space */
+        int scrollOffset = 0;
+        if (change.removeStart == 0 && change.removeCount > 0) {
+            for (int i = 0; i < reviewRecyclerView.getChildCount(); i++) {
+                View child = reviewRecyclerView.getChildAt(i);
+                if (reviewRecyclerView.getChildAdapterPosition(child) < change.removeCount) {
+                    scrollOffset -= child.getHeight();
+                }
             }
         }
+        if (change.removeCount > 0) {
+            reviewAdapter.notifyItemRangeRemoved(change.removeStart, change.removeCount);
+        }
+        reviewAdapter.notifyItemRangeInserted(change.insertStart, change.insertCount);
+        populateReviews();
+
+        /* The reviews loaded again above the viewport take up space once they are laid out */
+        final boolean insertedAbove = change.insertStart == 0
+                && change.insertCount < reviewWindow.getReviews().size();
+        final int removedHeight = scrollOffset;
+        if (insertedAbove || removedHeight != 0) {
+            final int insertCount = change.insertCount;
+            reviewRecyclerView.getViewTreeObserver().addOnPreDrawListener(
+                    new ViewTreeObserver.OnPreDrawListener() {
+                        @Override
+                        public boolean onPreDraw() {
+                            reviewRecyclerView.getViewTreeObserver()
+                                    .removeOnPreDrawListener(this);
+                            int offset = removedHeight;
+                            for (int i = 0; insertedAbove
+                                    && i < reviewRecyclerView.getChildCount(); i++) {
+                                View child = reviewRecyclerView.getChildAt(i);
+                                if (reviewRecyclerView.getChildAdapterPosition(child)
+                                        < insertCount) {
+                                    offset += child.getHeight();
+                                }
+                            }
+                            scrollView.scrollBy(0, offset);
+                            return true;
+                        }
+                    });
+        }
+        /* Continue with the next page of a restored window */
+        loadReviewsIfNeeded();
+    }
+
+    /**
+     * Show the reviews of the current movie
+     */
+    private void populateReviews() {
+        reviewRecyclerView.setVisibility(View.VISIBLE);
+        emptyReviewTextView.setVisibility(View.GONE);
+    }
+
+    /**
+     * Returns a ReviewAdapter of the reviews, which lays out the expanded reviews on the
+     * computation executor
+     */
+    private ReviewAdapter createReviewAdapter() {
+        AppExecutors executors = AppExecutors.getExecutors();
+        return new ReviewAdapter(reviewWindow.getReviews(), reviewTextParams,
+                executors.computation(), executors.mainThread());
+    }
+
+    /**
+     * Populate the trailers of the current movie
+     */
+    private void populateTrailers() {
+        trailerAdapter = new TrailerAdapter(trailers);
+        trailerRecyclerView.setVisibility(View.VISIBLE);
+        trailerRecyclerView.setAdapter(trailerAdapter);
+        emptyTrailerTextView.setVisibility(View.GONE);
+        trailerRecyclerView.setLayoutManager(new LinearLayoutManager(DetailActivity.this));
     }
 
     /**
@@ -475,31 +634,54 @@ public class DetailActivity extends AppCompatActivity {
               load it into the moviePosterImageView */
             final String posterPath = currentMovie.getMovieUrlPoster();
 
-            Uri fullPosterPathUri = MovieAdapter.formatPosterPath(currentMovie);
-            com.squareup.picasso.Picasso
+            /* The poster is shown at the width of a grid cell, so its file is the one the grid
+            already downloaded. It is decoded in full quality ARGB_8888, apart from the RGB_565
+            thumbnail of the grid. */
+            int posterWidth = ImageConfiguration.getInstance(this).getGridCellWidth();
+            Uri fullPosterPathUri = MovieAdapter.formatPosterPath(this, currentMovie,
+                    posterWidth);
+            RequestCreator posterRequest = com.squareup.picasso.Picasso
                     .get()
                     .load(fullPosterPathUri)
-                    .into(moviePosterImageView);
-
-            /* If there are no trailers, execute the TrailerAsyncTask using the trailer
-            query String. If not, populate the trailers. */
-            if (trailers == null) {
-                new TrailerAsyncTask().execute(String.valueOf(id), QueryUtils.TRAILER_QUERY);
-            } else if (trailers.size() == 0) {
-                emptyTrailerTextView.setText(getString(R.string.no_trailers_found));
+                    .config(Bitmap.Config.ARGB_8888)
+                    .resize(posterWidth, 0)
+                    .onlyScaleDown();
+
+            /* The poster keeps its size while the placeholder is shown */
+            ViewGroup.LayoutParams layoutParams = moviePosterImageView.getLayoutParams();
+            layoutParams.width = posterWidth + moviePosterImageView.getPaddingLeft()
+                    + moviePosterImageView.getPaddingRight();
+            moviePosterImageView.setLayoutParams(layoutParams);
+
+            /* Until the poster is decoded, show the thumbnail the grid decoded, or else the
+            smallest size of the poster */
+            poster = new ProgressivePoster(moviePosterImageView);
+            ImageCache imageCache = ImageCache.getInstance();
+            Bitmap thumbnail = imageCache == null ? null
+                    : imageCache.getGridPoster(fullPosterPathUri, posterWidth);
+            if (thumbnail != null) {
+                poster.load(posterRequest, thumbnail);
             } else {
-                populateTrailers();
+                poster.load(posterRequest, MovieAdapter.formatPreviewPath(this, currentMovie));
             }
 
-
-            /* If there are no reviews, execute the ReviewAsyncTask using the review
-            query String. If not, populate the reviews. */
-            if (reviews == null) {
-                new ReviewAsyncTask().execute(String.valueOf(id), String.valueOf(QueryUtils.REVIEW_QUERY));
-            } else if (reviews.size() == 0) {
-                emptyReviewTextView.setText(getString(R.string.no_reviews_found));
+            /* If the trailers and reviews have not been loaded yet, execute the DetailAsyncTask,
+            which loads both of them in a single request. If not, populate the trailers and load
+            the pages of reviews that were on screen again. */
+            if (trailers == null) {
+                new DetailAsyncTask().execute();
             } else {
-                populateReviews();
+                if (trailers.size() == 0) {
+                    emptyTrailerTextView.setText(getString(R.string.no_trailers_found));
+                } else {
+                    populateTrailers();
+                }
+
+                if (reviewWindow.getFirstPage() == 0) {
+                    emptyReviewTextView.setText(getString(R.string.no_reviews_found));
+                } else {
+                    loadReviewsIfNeeded();
+                }
             }
 
             /* Set the onClickListener to tha addToFavorites button */
@@ -0,0 +1,319 @@
+package com.example.android.popularmovies;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Predictive prefetch of the movie details. Movies that stay on screen in the grid for a
+ * while are likely to be opened, so their details, trailers and reviews are loaded at low
+ * priority and kept in memory for the DetailActivity. At most a few prefetches are pending at
+ * a time, and a prefetch is cancelled as soon as its movie scrolls out of view, unless its
+ * movie is the one being opened, whose DetailActivity joins the prefetch.
+ */
+final class DetailPrefetcher {
+
+    private static final String TAG = DetailPrefetcher.class.getSimpleName();
+
+    /**
+     * Loads the details of a movie, once per prefetch
+     */
+    interface Loader {
+        MovieDetails load(Movie movie, RequestHandle handle) throws IOException;
+    }
+
+    /* Defaults: prefetch after 600ms on screen, 3 pending prefetches, 20 prefetched movies,
+    join a prefetch in flight for at most 2s */
+    private static final long DEFAULT_DWELL_MILLIS = 600;
+    private static final int DEFAULT_MAX_PENDING = 3;
+    private static final int DEFAULT_MAX_PREFETCHED = 20;
+    private static final long DEFAULT_JOIN_TIMEOUT_MILLIS = 2000;
+
+    /* Singleton instantiation */
+    private static final Object LOCK = new Object();
+    private static DetailPrefetcher prefetcher;
+
+    private final Loader loader;
+    private final Executor executor;
+    private final long dwellMillis;
+    private final int maxPending;
+    private final long joinTimeoutMillis;
+
+    /**
+     * Time each movie on screen became visible, by movie ID
+     */
+    private final Map<Integer, Long> visibleSince = new HashMap<>();
+
+    /**
+     * Prefetches that are queued or running, by movie ID
+     */
+    private final Map<Integer, RequestHandle> pending = new HashMap<>();
+
+    /**
+     * Prefetched details, least recently prefetched first
+     */
+    private final LinkedHashMap<Integer, MovieDetails> prefetched;
+
+    /**
+     * ID of the movie being opened, whose prefetch is kept when the grid goes off screen, or 0
+     */
+    private int openedMovieId;
+
+    private long prefetchCount;
+    private long cancelledCount;
+    private long failedCount;
+    private long hitCount;
+    private long pendingHitCount;
+    private long missCount;
+
+    DetailPrefetcher(Loader loader, Executor executor, long dwellMillis, int maxPending,
+                     final int maxPrefetched, long joinTimeoutMillis) {
+        this.loader = loader;
+        this.executor = executor;
+        this.dwellMillis = dwellMillis;
+        this.maxPending = maxPending;
+        this.joinTimeoutMillis = joinTimeoutMillis;
+        prefetched = new LinkedHashMap<Integer, MovieDetails>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, MovieDetails> eldest) {
+                return size() > maxPrefetched;
+            }
+        };
+    }
+
+    static DetailPrefetcher getInstance() {
+        synchronized (LOCK) {
+            if (prefetcher == null) {
+                Loader loader = new Loader() {
+                    @Override
+                    public MovieDetails load(Movie movie, RequestHandle handle)
+                            throws IOException {
+                        URL url = QueryUtils.createMovieDetailsUrl(
+                                String.valueOf(movie.getMovieId()));
+                        return QueryUtils.fetch(url, JsonParsers.MOVIE_DETAILS, handle);
+                    }
+                };
+                prefetcher = new DetailPrefetcher(loader, AppExecutors.getExecutors().prefetchIO(),
+                        DEFAULT_DWELL_MILLIS, DEFAULT_MAX_PENDING, DEFAULT_MAX_PREFETCHED,
+                        DEFAULT_JOIN_TIMEOUT_MILLIS);
+            }
+            return prefetcher;
+        }
+    }
+
+    /**
+     * Report the movies that are on screen now. Prefetches of movies that are no longer on
+     * screen are cancelled, and movies that have been on screen for the dwell time are
+     * prefetched while there is room in the queue.
+     * Returns the delay after which the movies on screen should be reported again, or -1 if
+     * nothing is waiting for its dwell time.
+     */
+    synchronized long onVisibleMovies(Collection<Movie> movies, long now) {
+        Set<Integer> visibleIds = new HashSet<>();
+        for (Movie movie : movies) {
+            visibleIds.add(movie.getMovieId());
+        }
+
+        /* Forget the movies that scrolled away and cancel their prefetches */
+        Iterator<Integer> iterator = visibleSince.keySet().iterator();
+        while (iterator.hasNext()) {
+            Integer movieId = iterator.next();
+            if (!visibleIds.contains(movieId)) {
+                iterator.remove();
+                if (movieId == openedMovieId) {
+                    continue;
+                }
+                RequestHandle handle = pending.remove(movieId);
+                if (handle != null) {
+                    cancelledCount++;
+                    handle.cancel();
+                }
+            }
+        }
+
+        long nextCheck = -1;
+        for (Movie movie : movies) {
+            int movieId = movie.getMovieId();
+            Long since = visibleSince.get(movieId);
+            if (since == null) {
+                since = now;
+                visibleSince.put(movieId, since);
+            }
+            if (prefetched.containsKey(movieId) || pending.containsKey(movieId)) {
+                continue;
+            }
+            long remaining = since + dwellMillis - now;
+            if (remaining <= 0 && pending.size() < maxPending) {
+                start(movie);
+            } else {
+                /* Check again once the movie has been on screen long enough, or a slot of the
+                queue might be free */
+                long delay = Math.max(remaining, dwellMillis);
+                nextCheck = nextCheck < 0 ? delay : Math.min(nextCheck, delay);
+            }
+        }
+        return nextCheck;
+    }
+
+    /**
+     * Report that the movie is being opened, before the grid goes off screen and reports no
+     * visible movies, so its pending prefetch is not cancelled
+     */
+    synchronized void onOpened(int movieId) {
+        openedMovieId = movieId;
+    }
+
+    /**
+     * Returns the prefetched details of the movie and records whether the prefetch was a hit.
+     * A prefetch still in flight is joined: the calling thread waits for its result rather
+     * than requesting the same details again, until the join timeout passes or the caller's
+     * request is cancelled. Returns null if the details have to be loaded.
+     * Must not be called on the main thread.
+     */
+    synchronized MovieDetails take(int movieId, RequestHandle caller) {
+        if (openedMovieId == movieId) {
+            openedMovieId = 0;
+        }
+        MovieDetails movieDetails = prefetched.get(movieId);
+        RequestHandle handle = pending.get(movieId);
+        if (movieDetails != null) {
+            hitCount++;
+        } else if (handle != null) {
+            movieDetails = join(movieId, handle, caller);
+            if (movieDetails != null) {
+                pendingHitCount++;
+            } else {
+                missCount++;
+            }
+        } else {
+            missCount++;
+        }
+        return movieDetails;
+    }
+
+    /**
+     * Wait for the pending prefetch of the movie, and return its details or null if it failed,
+     * took longer than the join timeout or the caller's request was cancelled
+     */
+    private MovieDetails join(int movieId, RequestHandle handle, RequestHandle caller) {
+        /* Wake up the wait below when the caller's request is cancelled */
+        caller.addOnCancelListener(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (DetailPrefetcher.this) {
+                    DetailPrefetcher.this.notifyAll();
+                }
+            }
+        });
+        long deadline = System.currentTimeMillis() + joinTimeoutMillis;
+        long remaining = joinTimeoutMillis;
+        try {
+            while (pending.get(movieId) == handle && !caller.isCancelled() && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return prefetched.get(movieId);
+    }
+
+    private void start(final Movie movie) {
+        final int movieId = movie.getMovieId();
+        final RequestHandle handle = new RequestHandle();
+        pending.put(movieId, handle);
+        prefetchCount++;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                MovieDetails movieDetails = null;
+                if (!handle.isCancelled()) {
+                    try {
+                        movieDetails = loader.load(movie, handle);
+                    } catch (IOException e) {
+                        if (!handle.isCancelled()) {
+                            Log.e(TAG, "Problem prefetching the details of " + movieId, e);
+                        }
+                    }
+                }
+                finish(movieId, handle, movieDetails);
+            }
+        });
+    }
+
+    private synchronized void finish(int movieId, RequestHandle handle,
+                                     MovieDetails movieDetails) {
+        if (pending.get(movieId) == handle) {
+            pending.remove(movieId);
+        }
+        /* Wake up the DetailActivity that joined the prefetch */
+        notifyAll();
+        if (handle.isCancelled()) {
+            return;
+        }
+        if (movieDetails == null) {
+            failedCount++;
+        } else {
+            prefetched.put(movieId, movieDetails);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the prefetch counters
+     */
+    synchronized Stats getStats() {
+        return new Stats(prefetchCount, cancelledCount, failedCount, hitCount, pendingHitCount,
+                missCount);
+    }
+
+    /**
+     * Prefetch counters: prefetches started, cancelled by scrolling away and failed, and the
+     * detail screens opened with prefetched details, by joining a prefetch still in flight and
+     * with nothing prefetched
+     */
+    static final class Stats {
+
+        final long prefetchCount;
+        final long cancelledCount;
+        final long failedCount;
+        final long hitCount;
+        final long pendingHitCount;
+        final long missCount;
+
+        Stats(long prefetchCount, long cancelledCount, long failedCount, long hitCount,
+              long pendingHitCount, long missCount) {
+            this.prefetchCount = prefetchCount;
+            this.cancelledCount = cancelledCount;
+            this.failedCount = failedCount;
+            this.hitCount = hitCount;
+            this.pendingHitCount = pendingHitCount;
+            this.missCount = missCount;
+        }
+
+        /**
+         * Share of the detail screens that opened with prefetched details
+         */
+        double hitRate() {
+            long opened = hitCount + pendingHitCount + missCount;
+            return opened == 0 ? 0 : (double) hitCount / opened;
+        }
+
+        @Override
+        public String toString() {
+            return "prefetched=" + prefetchCount + " cancelled=" + cancelledCount
+                    + " failed=" + failedCount + " hits=" + hitCount
+                    + " pendingHits=" + pendingHitCount + " misses=" + missCount
+                    + " hitRate=" + String.format(Locale.US, "%.2f", hitRate());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.android.popularmovies;
+
+/**
+ * The number of columns of the movie grid and the width of its cells, for the width the grid
+ * has and the width a poster should be drawn at. A phone in portrait gets two columns, and
+ * landscape and tablets get more columns rather than wider cells, so a poster is never
+ * decoded and downloaded at twice the size of a phone cell.
+ */
+final class GridSizing {
+
+    private GridSizing() {
+    }
+
+    /**
+     * Returns the number of columns whose width is the closest to the target width, and at
+     * least the minimum number of columns
+     */
+    static int spanCount(int availableWidth, int targetCellWidth, int minSpanCount) {
+        if (availableWidth <= 0 || targetCellWidth <= 0) {
+            return minSpanCount;
+        }
+        int spanCount = (availableWidth + targetCellWidth / 2) / targetCellWidth;
+        return Math.max(spanCount, minSpanCount);
+    }
+
+    /**
+     * Returns the width of a cell in pixels when the available width is shared by the columns
+     */
+    static int cellWidth(int availableWidth, int targetCellWidth, int minSpanCount) {
+        return availableWidth / spanCount(availableWidth, targetCellWidth, minSpanCount);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.android.popularmovies;
+
+import java.util.Locale;
+
+/**
+ * Fixed-bucket histogram of non-negative values, cheap enough to be updated on every request.
+ * Percentiles are estimated as the upper bound of the bucket that holds them.
+ */
+final class Histogram {
+
+    /**
+     * Bucket bounds in microseconds, from 100us to 10s
+     */
+    static final long[] DURATION_BOUNDS_MICROS = {100, 250, 500, 1000, 2500, 5000, 10000, 25000,
+            50000, 100000, 250000, 500000, 1000000, 2500000, 5000000, 10000000};
+
+    /**
+     * Bucket bounds in bytes, from 512 bytes to 2 MB
+     */
+    static final long[] SIZE_BOUNDS_BYTES = {512, 1024, 2048, 4096, 8192, 16384, 32768, 65536,
+            131072, 262144, 524288, 1048576, 2097152};
+
+    /**
+     * Upper bounds of the buckets, the last bucket holds everything above the last bound
+     */
+    private final long[] bounds;
+    private final long[] counts;
+
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    Histogram(long[] bounds) {
+        this.bounds = bounds;
+        counts = new long[bounds.length + 1];
+    }
+
+    synchronized void record(long value) {
+        int bucket = 0;
+        while (bucket < bounds.length && value > bounds[bucket]) {
+            bucket++;
+        }
+        counts[bucket]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the estimated value below which the given fraction of the values fall, 0 if the
+     * histogram is empty
+     */
+    synchronized long percentile(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return bucket < bounds.length ? Math.min(bounds[bucket], max) : max;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Format the count, mean, percentiles and extremes, with the values divided by the given
+     * scale (1000 to print microseconds as milliseconds)
+     */
+    synchronized String format(double scale) {
+        if (count == 0) {
+            return "n=0";
+        }
+        return String.format(Locale.US,
+                "n=%d mean=%.1f p50=%.1f p90=%.1f p99=%.1f min=%.1f max=%.1f", count,
+                sum / scale / count, percentile(0.5) / scale, percentile(0.9) / scale,
+                percentile(0.99) / scale, min / scale, max / scale);
+    }
+}
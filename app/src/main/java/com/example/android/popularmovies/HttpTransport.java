@@ -0,0 +1,120 @@
+package com.example.android.popularmovies;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.NoSuchAlgorithmException;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+
+/**
+ * Shared HTTP transport used by QueryUtils. Connections are kept alive and returned to the
+ * platform connection pool instead of being disconnected after every call. HTTPS connections
+ * already share the default SSLContext, whose client session cache is sized here so TLS
+ * sessions can be resumed.
+ */
+final class HttpTransport {
+
+    private static final String TAG = HttpTransport.class.getSimpleName();
+
+    /**
+     * Maximum number of idle keep-alive connections kept per host
+     */
+    static final int MAX_IDLE_CONNECTIONS = 5;
+
+    /**
+     * Number of TLS sessions cached for resumption
+     */
+    private static final int TLS_SESSION_CACHE_SIZE = 20;
+
+    /**
+     * Lifetime of a cached TLS session, in seconds
+     */
+    private static final int TLS_SESSION_TIMEOUT = 5 * 60;
+
+    /* Define the read time out and connect time out */
+    private static final int READ_TIME_OUT = 10000;
+    private static final int CONNECT_TIME_OUT = 15000;
+
+    /* Singleton instantiation */
+    private static final Object LOCK = new Object();
+    private static HttpTransport transport;
+
+    private HttpTransport() {
+        /* Keep-alive is on by default, but make the pool bound explicit */
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+        configureTlsSessionCache();
+    }
+
+    static HttpTransport getInstance() {
+        if (transport == null) {
+            synchronized (LOCK) {
+                if (transport == null) {
+                    transport = new HttpTransport();
+                }
+            }
+        }
+        return transport;
+    }
+
+    /**
+     * Open a GET connection to the given URL. The connection has to be handed back through
+     * release() once the body is read, or through abort() if it is not reusable.
+     */
+    HttpURLConnection openConnection(URL url) throws IOException {
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        urlConnection.setReadTimeout(READ_TIME_OUT);
+        urlConnection.setConnectTimeout(CONNECT_TIME_OUT);
+        urlConnection.setRequestMethod("GET");
+        urlConnection.setRequestProperty("Connection", "keep-alive");
+        return urlConnection;
+    }
+
+    /**
+     * Drain and close the body so the socket goes back to the pool. The connection is
+     * deliberately not disconnected, which would close the socket.
+     */
+    void release(HttpURLConnection urlConnection, InputStream inputStream) {
+        try {
+            if (inputStream != null) {
+                byte[] buffer = new byte[1024];
+                while (inputStream.read(buffer) != -1) {
+                    /* Discard what the caller did not read */
+                }
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            abort(urlConnection);
+        }
+    }
+
+    /**
+     * Close the underlying socket of a connection that can not be reused
+     */
+    void abort(HttpURLConnection urlConnection) {
+        if (urlConnection != null) {
+            urlConnection.disconnect();
+        }
+    }
+
+    /**
+     * Size the client session cache of the default SSLContext, which HttpsURLConnection uses
+     */
+    private static void configureTlsSessionCache() {
+        try {
+            SSLSessionContext sessionContext = SSLContext.getDefault().getClientSessionContext();
+            if (sessionContext != null) {
+                sessionContext.setSessionCacheSize(TLS_SESSION_CACHE_SIZE);
+                sessionContext.setSessionTimeout(TLS_SESSION_TIMEOUT);
+            }
+        } catch (NoSuchAlgorithmException e) {
+            Log.e(TAG, "Problem configuring the TLS session cache", e);
+        }
+    }
+
+}
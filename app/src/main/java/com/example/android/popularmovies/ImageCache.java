@@ -0,0 +1,266 @@
+package com.example.android.popularmovies;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.util.Log;
+
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.Request;
+import com.squareup.picasso.RequestCreator;
+import com.squareup.picasso.RequestHandler;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+
+import okio.Okio;
+
+/**
+ * Two-tier cache of the posters behind the Picasso instance of the app: decoded bitmaps are
+ * kept in a memory LRU sized from the memory class of the device, and the downloaded files in
+ * the byte-bounded PosterCache on disk. Every poster from the network is written to the disk
+ * first, so scrolling back over the grid is served from memory or disk.
+ * <p>
+ * The thumbnails of the grid are decoded by the ThumbnailDecoder, in RGB_565 and into the
+ * bitmaps of a BitmapPool fed by the memory tier, while the other posters keep the full
+ * quality decode of Picasso.
+ */
+final class ImageCache {
+
+    private static final String TAG = ImageCache.class.getSimpleName();
+
+    /* Singleton instantiation */
+    private static final Object LOCK = new Object();
+    private static ImageCache imageCache;
+
+    /**
+     * Marks the stable key of a grid thumbnail, followed by the width of the cell
+     */
+    private static final String GRID_KEY = "\ngrid:";
+
+    /**
+     * Ends the stable key in the memory cache keys of Picasso
+     */
+    private static final char KEY_SEPARATOR = '\n';
+
+    private final PosterMemoryCache memoryCache;
+    private final BitmapPool bitmapPool;
+    private final PosterCache posterCache;
+
+    private long diskHitCount;
+    private long networkFetchCount;
+
+    private ImageCache(PosterMemoryCache memoryCache, BitmapPool bitmapPool,
+                       PosterCache posterCache) {
+        this.memoryCache = memoryCache;
+        this.bitmapPool = bitmapPool;
+        this.posterCache = posterCache;
+    }
+
+    /**
+     * Install the disk cache and the Picasso instance that uses both tiers. Has to be called
+     * before the first Picasso.get().
+     */
+    static void install(Context context) {
+        synchronized (LOCK) {
+            if (imageCache != null) {
+                return;
+            }
+            Context appContext = context.getApplicationContext();
+            PosterCache.install(appContext);
+            PosterCache posterCache = PosterCache.getInstance();
+            if (posterCache == null) {
+                /* Picasso keeps its defaults without the disk tier */
+                return;
+            }
+
+            ActivityManager activityManager =
+                    (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+            int memoryClass = activityManager == null ? 16 : activityManager.getMemoryClass();
+            int percent = appContext.getResources()
+                    .getInteger(R.integer.poster_memory_cache_percent);
+            int maxBytes = (int) (memoryClass * 1024L * 1024L * percent / 100);
+            int poolPercent = appContext.getResources()
+                    .getInteger(R.integer.poster_bitmap_pool_percent);
+            BitmapPool bitmapPool =
+                    new BitmapPool(memoryClass * 1024L * 1024L * poolPercent / 100);
+
+            ImageCache cache = new ImageCache(new PosterMemoryCache(maxBytes, bitmapPool),
+                    bitmapPool, posterCache);
+            Picasso picasso = new Picasso.Builder(appContext)
+                    .memoryCache(cache.memoryCache)
+                    .addRequestHandler(cache.new DiskRequestHandler())
+                    .build();
+            try {
+                Picasso.setSingletonInstance(picasso);
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Picasso was used before the image cache was installed", e);
+                picasso.shutdown();
+                return;
+            }
+            imageCache = cache;
+        }
+    }
+
+    /**
+     * Returns the installed cache, or null if the cache has not been installed
+     */
+    static ImageCache getInstance() {
+        return imageCache;
+    }
+
+    /**
+     * Returns the request of the grid thumbnail of a poster, at the width of a cell. The
+     * thumbnail has its own key in the memory cache, apart from the full quality poster of the
+     * same URI. Without the disk tier, Picasso decodes and scales the poster itself.
+     */
+    static RequestCreator loadGridPoster(Uri uri, int width) {
+        RequestCreator request = Picasso.get()
+                .load(uri)
+                .config(Bitmap.Config.RGB_565);
+        if (imageCache == null) {
+            return request.resize(width, 0).onlyScaleDown();
+        }
+        return request.stableKey(uri + GRID_KEY + width);
+    }
+
+    /**
+     * Returns the grid thumbnail of a poster if it is in the memory cache, or null. A screen
+     * that shows it has to report it through onPosterShown().
+     */
+    Bitmap getGridPoster(Uri uri, int width) {
+        return memoryCache.get(uri + GRID_KEY + width + KEY_SEPARATOR);
+    }
+
+    /**
+     * Record that a screen shows the bitmap, so it is not decoded into
+     */
+    void onPosterShown(Bitmap bitmap) {
+        memoryCache.show(bitmap);
+    }
+
+    /**
+     * Record that a screen no longer shows the bitmap
+     */
+    void onPosterHidden(Bitmap bitmap) {
+        memoryCache.hide(bitmap);
+    }
+
+    /**
+     * Returns a snapshot of the counters of both tiers and of the bitmap pool
+     */
+    Stats getStats() {
+        synchronized (this) {
+            return new Stats(memoryCache.hitCount(), memoryCache.missCount(),
+                    memoryCache.evictionCount(), memoryCache.size(), memoryCache.maxSize(),
+                    diskHitCount, networkFetchCount, posterCache.getEvictionCount(),
+                    posterCache.getSize(), bitmapPool.getStats());
+        }
+    }
+
+    /**
+     * Returns the cell width of a grid thumbnail request, or 0 for the other requests
+     */
+    private static int gridWidthOf(Request request) {
+        if (request.stableKey == null) {
+            return 0;
+        }
+        int index = request.stableKey.lastIndexOf(GRID_KEY);
+        if (index < 0) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(request.stableKey.substring(index + GRID_KEY.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Loads the http and https posters that missed the memory cache, from the disk cache or
+     * from the network through the disk cache
+     */
+    private final class DiskRequestHandler extends RequestHandler {
+
+        @Override
+        public boolean canHandleRequest(Request data) {
+            String scheme = data.uri.getScheme();
+            return "http".equals(scheme) || "https".equals(scheme);
+        }
+
+        @Override
+        public Result load(Request request, int networkPolicy) throws IOException {
+            String url = request.uri.toString();
+            File file = posterCache.get(url);
+            Picasso.LoadedFrom loadedFrom = Picasso.LoadedFrom.DISK;
+            if (file != null) {
+                synchronized (ImageCache.this) {
+                    diskHitCount++;
+                }
+            } else {
+                synchronized (ImageCache.this) {
+                    networkFetchCount++;
+                }
+                posterCache.download(new URL(url), new RequestHandle(), Long.MAX_VALUE);
+                file = posterCache.get(url);
+                if (file == null) {
+                    throw new IOException("Problem caching the poster " + url);
+                }
+                loadedFrom = Picasso.LoadedFrom.NETWORK;
+            }
+
+            int gridWidth = gridWidthOf(request);
+            if (gridWidth > 0) {
+                return new Result(ThumbnailDecoder.decode(file, gridWidth, bitmapPool),
+                        loadedFrom);
+            }
+            return new Result(Okio.source(file), loadedFrom);
+        }
+    }
+
+    /**
+     * Counters of the two tiers: memory hits, misses and evictions with the size of the memory
+     * cache, disk hits, network fetches and disk evictions with the size of the disk cache, and
+     * the counters of the bitmap pool
+     */
+    static final class Stats {
+
+        final long memoryHitCount;
+        final long memoryMissCount;
+        final long memoryEvictionCount;
+        final long memorySize;
+        final long memoryMaxSize;
+        final long diskHitCount;
+        final long networkFetchCount;
+        final long diskEvictionCount;
+        final long diskSize;
+        final BitmapPool.Stats poolStats;
+
+        Stats(long memoryHitCount, long memoryMissCount, long memoryEvictionCount,
+              long memorySize, long memoryMaxSize, long diskHitCount, long networkFetchCount,
+              long diskEvictionCount, long diskSize, BitmapPool.Stats poolStats) {
+            this.memoryHitCount = memoryHitCount;
+            this.memoryMissCount = memoryMissCount;
+            this.memoryEvictionCount = memoryEvictionCount;
+            this.memorySize = memorySize;
+            this.memoryMaxSize = memoryMaxSize;
+            this.diskHitCount = diskHitCount;
+            this.networkFetchCount = networkFetchCount;
+            this.diskEvictionCount = diskEvictionCount;
+            this.diskSize = diskSize;
+            this.poolStats = poolStats;
+        }
+
+        @Override
+        public String toString() {
+            return "memoryHits=" + memoryHitCount + " memoryMisses=" + memoryMissCount
+                    + " memoryEvictions=" + memoryEvictionCount
+                    + " memoryKb=" + memorySize / 1024 + "/" + memoryMaxSize / 1024
+                    + " diskHits=" + diskHitCount + " networkFetches=" + networkFetchCount
+                    + " diskEvictions=" + diskEvictionCount + " diskKb=" + diskSize / 1024
+                    + " " + poolStats;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.android.popularmovies;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.net.Uri;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The image configuration of The MovieDB, downloaded once and kept in the shared preferences
+ * until it is older than its time to live. It picks the poster size of every poster URL, and
+ * remembers the width of a cell of the movie grid, so the posters prefetched in the
+ * background have the size the grid asks for.
+ */
+final class ImageConfiguration {
+
+    private static final String TAG = ImageConfiguration.class.getSimpleName();
+
+    private static final String PREFERENCES = "image_configuration";
+    private static final String KEY_BASE_URL = "base_url";
+    private static final String KEY_POSTER_SIZES = "poster_sizes";
+    private static final String KEY_FETCHED_AT = "fetched_at";
+    private static final String KEY_GRID_CELL_WIDTH = "grid_cell_width";
+
+    /* Singleton instantiation */
+    private static final Object LOCK = new Object();
+    private static ImageConfiguration configuration;
+
+    private final SharedPreferences preferences;
+    private final long timeToLive;
+
+    private volatile PosterSizes posterSizes;
+    private volatile long fetchedAt;
+    private volatile int gridCellWidth;
+
+    /**
+     * True while a download of the configuration is queued or running
+     */
+    private boolean refreshing;
+
+    private ImageConfiguration(Context context) {
+        preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        timeToLive = TimeUnit.DAYS.toMillis(
+                context.getResources().getInteger(R.integer.image_configuration_ttl_days));
+        String baseUrl = preferences.getString(KEY_BASE_URL, null);
+        String sizes = preferences.getString(KEY_POSTER_SIZES, null);
+        if (baseUrl != null && !TextUtils.isEmpty(sizes)) {
+            posterSizes = new PosterSizes(baseUrl, Arrays.asList(TextUtils.split(sizes, ",")));
+            fetchedAt = preferences.getLong(KEY_FETCHED_AT, 0);
+        } else {
+            posterSizes = PosterSizes.DEFAULT;
+        }
+        /* Until the grid has been laid out, assume it is as wide as the screen */
+        Resources resources = context.getResources();
+        gridCellWidth = preferences.getInt(KEY_GRID_CELL_WIDTH,
+                GridSizing.cellWidth(resources.getDisplayMetrics().widthPixels,
+                        resources.getDimensionPixelSize(R.dimen.grid_cell_target_width),
+                        resources.getInteger(R.integer.grid_min_span_count)));
+    }
+
+    static ImageConfiguration getInstance(Context context) {
+        synchronized (LOCK) {
+            if (configuration == null) {
+                configuration = new ImageConfiguration(context.getApplicationContext());
+            }
+            return configuration;
+        }
+    }
+
+    PosterSizes getPosterSizes() {
+        return posterSizes;
+    }
+
+    /**
+     * Returns the Uri of the poster at the smallest size that covers the given width in pixels
+     */
+    Uri posterUri(String posterPath, int width) {
+        return Uri.parse(posterSizes.urlFor(posterPath, width));
+    }
+
+    /**
+     * Returns the Uri of the poster at the smallest size, a placeholder while the poster loads
+     */
+    Uri previewUri(String posterPath) {
+        return Uri.parse(posterSizes.urlFor(posterPath, PosterSizes.SMALLEST));
+    }
+
+    /**
+     * Returns the last width of a cell of the movie grid, in pixels
+     */
+    int getGridCellWidth() {
+        return gridCellWidth;
+    }
+
+    /**
+     * Remember the width of a cell of the movie grid, in pixels
+     */
+    void setGridCellWidth(int width) {
+        if (width <= 0 || width == gridCellWidth) {
+            return;
+        }
+        gridCellWidth = width;
+        preferences.edit().putInt(KEY_GRID_CELL_WIDTH, width).apply();
+    }
+
+    /**
+     * Download the configuration again on the network executor if it has never been
+     * downloaded or is older than its time to live
+     */
+    void refreshIfStale() {
+        synchronized (this) {
+            if (refreshing || System.currentTimeMillis() - fetchedAt < timeToLive) {
+                return;
+            }
+            refreshing = true;
+        }
+        AppExecutors.getExecutors().networkIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    PosterSizes sizes = QueryUtils.fetch(QueryUtils.createConfigurationUrl(),
+                            JsonParsers.POSTER_SIZES);
+                    if (sizes != null) {
+                        save(sizes, System.currentTimeMillis());
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Problem downloading the image configuration", e);
+                } finally {
+                    synchronized (ImageConfiguration.this) {
+                        refreshing = false;
+                    }
+                }
+            }
+        });
+    }
+
+    private void save(PosterSizes sizes, long now) {
+        posterSizes = sizes;
+        fetchedAt = now;
+        preferences.edit()
+                .putString(KEY_BASE_URL, sizes.baseUrl)
+                .putString(KEY_POSTER_SIZES, TextUtils.join(",", sizes.getSizes()))
+                .putLong(KEY_FETCHED_AT, now)
+                .apply();
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.android.popularmovies;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parsers for the movie, review and trailer responses from The MovieDB.
+ * The JSON is read token by token straight from the response stream, and fields that are not
+ * needed are skipped without being materialized.
+ */
+final class JsonParsers {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Names of the sections appended to the movie details response
+     */
+    private static final String VIDEOS_SECTION = "videos";
+    private static final String REVIEWS_SECTION = "reviews";
+
+    /**
+     * Parser of a page of the /movie/popular and /movie/top_rated responses
+     */
+    static final ResponseParser<MoviePage> MOVIE_PAGE = new ResponseParser<MoviePage>() {
+        @Override
+        public MoviePage parse(InputStream inputStream) throws IOException {
+            int page = 0;
+            int totalPages = 0;
+            List<Movie> movies = new ArrayList<>();
+            JsonReader reader = newReader(inputStream);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "page":
+                        page = reader.nextInt();
+                        break;
+                    case "total_pages":
+                        totalPages = reader.nextInt();
+                        break;
+                    case "results":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            movies.add(readMovie(reader));
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            return new MoviePage(page, totalPages, movies);
+        }
+    };
+
+    /**
+     * Parser of a page of the /movie/{id}/reviews responses
+     */
+    static final ResponseParser<ReviewPage> REVIEW_PAGE = new ResponseParser<ReviewPage>() {
+        @Override
+        public ReviewPage parse(InputStream inputStream) throws IOException {
+            return readReviewPage(newReader(inputStream));
+        }
+    };
+
+    /**
+     * Parser of the /movie/{id}/videos responses
+     */
+    static final ResultsParser<Trailer> TRAILERS = new ResultsParser<Trailer>() {
+        @Override
+        public List<Trailer> parse(JsonReader reader) throws IOException {
+            List<Trailer> trailers = new ArrayList<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("results")) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        trailers.add(readTrailer(reader));
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return trailers;
+        }
+    };
+
+    /**
+     * Parser of the /movie/{id}?append_to_response=videos,reviews responses, which contain the
+     * movie details with the trailers and reviews nested under "videos" and "reviews"
+     */
+    static final ResponseParser<MovieDetails> MOVIE_DETAILS = new ResponseParser<MovieDetails>() {
+        @Override
+        public MovieDetails parse(InputStream inputStream) throws IOException {
+            Movie movie = new Movie();
+            List<Trailer> trailers = new ArrayList<>();
+            ReviewPage reviewPage = new ReviewPage(0, 0, new ArrayList<Review>());
+            JsonReader reader = newReader(inputStream);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals(VIDEOS_SECTION)) {
+                    trailers = TRAILERS.parse(reader);
+                } else if (name.equals(REVIEWS_SECTION)) {
+                    reviewPage = readReviewPage(reader);
+                } else if (!readMovieField(reader, name, movie)) {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return new MovieDetails(movie, trailers, reviewPage.reviews, reviewPage.totalPages);
+        }
+    };
+
+    /**
+     * Parser of the /configuration response, of which only the poster sizes are read
+     */
+    static final ResponseParser<PosterSizes> POSTER_SIZES = new ResponseParser<PosterSizes>() {
+        @Override
+        public PosterSizes parse(InputStream inputStream) throws IOException {
+            String baseUrl = null;
+            List<String> sizes = new ArrayList<>();
+            JsonReader reader = newReader(inputStream);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("images")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "secure_base_url":
+                            baseUrl = nextString(reader);
+                            break;
+                        case "poster_sizes":
+                            reader.beginArray();
+                            while (reader.hasNext()) {
+                                sizes.add(reader.nextString());
+                            }
+                            reader.endArray();
+                            break;
+                        default:
+                            reader.skipValue();
+                            break;
+                    }
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+            /* A configuration without images is no better than the default one */
+            if (baseUrl == null || sizes.isEmpty()) {
+                return null;
+            }
+            return new PosterSizes(baseUrl, sizes);
+        }
+    };
+
+    /**
+     * Create a private constructor JsonParsers
+     */
+    private JsonParsers() {
+    }
+
+    /**
+     * Create a JsonReader on top of the response stream. The reader is not closed by the
+     * parsers, as that would close the stream owned by the caller.
+     */
+    private static JsonReader newReader(InputStream inputStream) {
+        return new JsonReader(new InputStreamReader(inputStream, UTF_8));
+    }
+
+    /**
+     * Parser of an object with a "results" array. It reads either a whole response, or an
+     * object nested in a bigger response from a JsonReader that is already positioned on it.
+     */
+    abstract static class ResultsParser<T> implements ResponseParser<List<T>> {
+
+        @Override
+        public List<T> parse(InputStream inputStream) throws IOException {
+            return parse(newReader(inputStream));
+        }
+
+        abstract List<T> parse(JsonReader reader) throws IOException;
+    }
+
+    /**
+     * Read a single movie object
+     */
+    static Movie readMovie(JsonReader reader) throws IOException {
+        Movie movie = new Movie();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!readMovieField(reader, reader.nextName(), movie)) {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return movie;
+    }
+
+    /**
+     * Read the value of the given movie field into the movie.
+     * Returns false if the field is not one the app uses, in which case nothing is read.
+     */
+    private static boolean readMovieField(JsonReader reader, String name, Movie movie)
+            throws IOException {
+        switch (name) {
+            case "id":
+                movie.setMovieId(reader.nextInt());
+                return true;
+            case "title":
+                movie.setMovieTitle(nextString(reader));
+                return true;
+            case "release_date":
+                movie.setMovieReleaseDate(nextString(reader));
+                return true;
+            case "poster_path":
+                movie.setMovieUrlPoster(nextString(reader));
+                return true;
+            case "vote_average":
+                movie.setMovieUserRating(nextString(reader));
+                return true;
+            case "overview":
+                movie.setMoviePlotSynopsis(nextString(reader));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Read a page of reviews, either a whole response or the reviews appended to the details
+     */
+    private static ReviewPage readReviewPage(JsonReader reader) throws IOException {
+        int page = 0;
+        int totalPages = 0;
+        List<Review> reviews = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "page":
+                    page = reader.nextInt();
+                    break;
+                case "total_pages":
+                    totalPages = reader.nextInt();
+                    break;
+                case "results":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        reviews.add(readReview(reader));
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return new ReviewPage(page, totalPages, reviews);
+    }
+
+    /**
+     * Read a single review object
+     */
+    static Review readReview(JsonReader reader) throws IOException {
+        String reviewAuthor = null;
+        String reviewText = null;
+        String reviewUrl = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "author":
+                    reviewAuthor = nextString(reader);
+                    break;
+                case "content":
+                    reviewText = nextString(reader);
+                    break;
+                case "url":
+                    reviewUrl = nextString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return new Review(reviewAuthor, reviewText, reviewUrl);
+    }
+
+    /**
+     * Read a single trailer object
+     */
+    static Trailer readTrailer(JsonReader reader) throws IOException {
+        String trailerUrlPath = null;
+        String trailerName = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "key":
+                    trailerUrlPath = nextString(reader);
+                    break;
+                case "name":
+                    trailerName = nextString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return new Trailer(trailerUrlPath, trailerName);
+    }
+
+    /**
+     * Returns the next string or number as a String, or null for a JSON null
+     */
+    private static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
@@ -0,0 +1,533 @@
+package com.example.android.popularmovies;
+
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Disk-backed cache of the JSON responses from The MovieDB. Entries are fresh for the max-age
+ * given in the Cache-Control header, after that they are revalidated with If-None-Match or
+ * If-Modified-Since, and the cached body is served again if the server answers 304.
+ */
+final class JsonResponseCache {
+
+    private static final String TAG = JsonResponseCache.class.getSimpleName();
+
+    /**
+     * Name of the cache directory inside the application cache directory
+     */
+    private static final String CACHE_DIRECTORY = "tmdb-responses";
+
+    /**
+     * Maximum size of all cached bodies, in bytes
+     */
+    private static final long MAX_SIZE = 5 * 1024 * 1024;
+
+    private static final String BODY_SUFFIX = ".body";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /* Keys of the metadata stored next to each body */
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "lastModified";
+    private static final String KEY_EXPIRES_AT = "expiresAt";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Buffer size used when streaming bodies to and from the disk
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /* Singleton instantiation */
+    private static final Object LOCK = new Object();
+    private static JsonResponseCache cache;
+
+    private final File directory;
+
+    private long hitCount;
+    private long missCount;
+    private long revalidateCount;
+    private long savedBytes;
+    private long cachedTimeMillis;
+    private long networkTimeMillis;
+
+    private JsonResponseCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Install the cache in the given application cache directory. Until the cache is installed
+     * QueryUtils goes straight to the network.
+     */
+    static void install(File cacheDir) {
+        synchronized (LOCK) {
+            if (cache == null) {
+                File directory = new File(cacheDir, CACHE_DIRECTORY);
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    Log.e(TAG, "Problem creating the cache directory " + directory);
+                    return;
+                }
+                cache = new JsonResponseCache(directory);
+            }
+        }
+    }
+
+    /**
+     * Remove the installed cache, so every test installs its own
+     */
+    @VisibleForTesting
+    static void uninstall() {
+        synchronized (LOCK) {
+            cache = null;
+        }
+    }
+
+    /**
+     * Returns the installed cache, or null if the cache has not been installed
+     */
+    static JsonResponseCache getInstance() {
+        return cache;
+    }
+
+    /**
+     * Returns the cached entry of the given URL, or null if there is none
+     */
+    synchronized Entry get(URL url) {
+        String key = keyOf(url);
+        File bodyFile = new File(directory, key + BODY_SUFFIX);
+        File metaFile = new File(directory, key + META_SUFFIX);
+        if (!bodyFile.isFile() || !metaFile.isFile()) {
+            return null;
+        }
+        try {
+            Properties meta = readProperties(metaFile);
+            long expiresAt = Long.parseLong(meta.getProperty(KEY_EXPIRES_AT, "0"));
+            return new Entry(url, bodyFile, meta.getProperty(KEY_ETAG),
+                    meta.getProperty(KEY_LAST_MODIFIED), expiresAt);
+        } catch (IOException | NumberFormatException e) {
+            Log.e(TAG, "Problem reading the cached response", e);
+            remove(url);
+            return null;
+        }
+    }
+
+    /**
+     * Start storing a 200 response body together with its validators. The body is written
+     * while it is being parsed, through the returned Editor, and only becomes visible once the
+     * Editor is committed. Returns null if the response must not be cached.
+     */
+    synchronized Editor edit(URL url, HttpURLConnection urlConnection) {
+        CacheControl cacheControl = CacheControl.parse(
+                urlConnection.getHeaderField("Cache-Control"));
+        if (cacheControl.noStore) {
+            return null;
+        }
+        String etag = urlConnection.getHeaderField("ETag");
+        String lastModified = urlConnection.getHeaderField("Last-Modified");
+        if (cacheControl.maxAgeSeconds <= 0 && etag == null && lastModified == null) {
+            /* Nothing to serve fresh and nothing to revalidate with */
+            return null;
+        }
+        String key = keyOf(url);
+        try {
+            /* Concurrent downloads of the same URL each get their own temporary file */
+            File tempFile = File.createTempFile(key, BODY_SUFFIX + TEMP_SUFFIX, directory);
+            return new Editor(key, tempFile, etag, lastModified,
+                    cacheControl.expiresAt(System.currentTimeMillis()));
+        } catch (IOException e) {
+            Log.e(TAG, "Problem writing the response to the cache", e);
+            return null;
+        }
+    }
+
+    /**
+     * Move a completely written body into place and store its validators
+     */
+    private synchronized void commit(Editor editor) {
+        File bodyFile = new File(directory, editor.key + BODY_SUFFIX);
+        try {
+            deleteFile(bodyFile);
+            if (!editor.tempFile.renameTo(bodyFile)) {
+                throw new IOException("Problem renaming " + editor.tempFile);
+            }
+            writeMeta(editor.key, editor.etag, editor.lastModified, editor.expiresAt);
+        } catch (IOException e) {
+            Log.e(TAG, "Problem writing the response to the cache", e);
+            deleteFile(bodyFile);
+            deleteFile(new File(directory, editor.key + META_SUFFIX));
+        }
+        trimToSize();
+    }
+
+    /**
+     * Refresh the freshness lifetime of an entry the server confirmed with a 304
+     */
+    synchronized void update(Entry entry, HttpURLConnection urlConnection) {
+        CacheControl cacheControl = CacheControl.parse(
+                urlConnection.getHeaderField("Cache-Control"));
+        String etag = urlConnection.getHeaderField("ETag");
+        String lastModified = urlConnection.getHeaderField("Last-Modified");
+        try {
+            writeMeta(keyOf(entry.url), etag != null ? etag : entry.etag,
+                    lastModified != null ? lastModified : entry.lastModified,
+                    cacheControl.expiresAt(System.currentTimeMillis()));
+        } catch (IOException e) {
+            Log.e(TAG, "Problem updating the cached response", e);
+        }
+    }
+
+    /**
+     * Remove the cached entry of the given URL
+     */
+    synchronized void remove(URL url) {
+        String key = keyOf(url);
+        deleteFile(new File(directory, key + BODY_SUFFIX));
+        deleteFile(new File(directory, key + META_SUFFIX));
+    }
+
+    /**
+     * Record a fresh entry served without touching the network
+     */
+    synchronized void recordHit(Entry entry, long elapsedMillis) {
+        hitCount++;
+        savedBytes += entry.bodyFile.length();
+        cachedTimeMillis += elapsedMillis;
+    }
+
+    /**
+     * Record a stale entry the server confirmed with a 304
+     */
+    synchronized void recordRevalidation(Entry entry, long elapsedMillis) {
+        revalidateCount++;
+        savedBytes += entry.bodyFile.length();
+        networkTimeMillis += elapsedMillis;
+    }
+
+    /**
+     * Record a request that downloaded the full body
+     */
+    synchronized void recordMiss(long elapsedMillis) {
+        missCount++;
+        networkTimeMillis += elapsedMillis;
+    }
+
+    /**
+     * Returns a snapshot of the cache counters
+     */
+    synchronized Stats getStats() {
+        return new Stats(hitCount, missCount, revalidateCount, savedBytes, cachedTimeMillis,
+                networkTimeMillis);
+    }
+
+    private void writeMeta(String key, String etag, String lastModified, long expiresAt)
+            throws IOException {
+        Properties meta = new Properties();
+        if (etag != null) {
+            meta.setProperty(KEY_ETAG, etag);
+        }
+        if (lastModified != null) {
+            meta.setProperty(KEY_LAST_MODIFIED, lastModified);
+        }
+        meta.setProperty(KEY_EXPIRES_AT, String.valueOf(expiresAt));
+        OutputStream outputStream = new FileOutputStream(new File(directory, key + META_SUFFIX));
+        try {
+            meta.store(outputStream, null);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Delete the least recently written bodies until the cache fits in MAX_SIZE
+     */
+    private void trimToSize() {
+        File[] bodies = directory.listFiles();
+        if (bodies == null) {
+            return;
+        }
+        long size = 0;
+        for (File file : bodies) {
+            size += file.length();
+        }
+        if (size <= MAX_SIZE) {
+            return;
+        }
+        Arrays.sort(bodies, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                return Long.compare(first.lastModified(), second.lastModified());
+            }
+        });
+        for (File file : bodies) {
+            if (size <= MAX_SIZE) {
+                break;
+            }
+            String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                /* Bodies that are still being written are left alone */
+                continue;
+            }
+            if (name.endsWith(BODY_SUFFIX)) {
+                String key = name.substring(0, name.length() - BODY_SUFFIX.length());
+                File metaFile = new File(directory, key + META_SUFFIX);
+                size -= file.length() + metaFile.length();
+                deleteFile(file);
+                deleteFile(metaFile);
+            }
+        }
+    }
+
+    /**
+     * The file name of an entry is the MD5 of its URL, as the URL contains the API key
+     */
+    static String keyOf(URL url) {
+        return keyOf(url.toString());
+    }
+
+    static String keyOf(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(url.getBytes(UTF_8));
+            StringBuilder key = new StringBuilder();
+            for (byte b : hash) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return String.valueOf(url.hashCode());
+        }
+    }
+
+    private static Properties readProperties(File file) throws IOException {
+        Properties properties = new Properties();
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            properties.load(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        return properties;
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.e(TAG, "Problem deleting " + file);
+        }
+    }
+
+    /**
+     * A cached response body together with its validators
+     */
+    static final class Entry {
+
+        final URL url;
+        final File bodyFile;
+        final String etag;
+        final String lastModified;
+        final long expiresAt;
+
+        Entry(URL url, File bodyFile, String etag, String lastModified, long expiresAt) {
+            this.url = url;
+            this.bodyFile = bodyFile;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * Returns true if the entry can be served without revalidation
+         */
+        boolean isFresh(long now) {
+            return now < expiresAt;
+        }
+
+        /**
+         * Open the cached body for streaming
+         */
+        InputStream openBody() throws IOException {
+            return new BufferedInputStream(new FileInputStream(bodyFile), BUFFER_SIZE);
+        }
+
+        /**
+         * Add the conditional request headers to a connection that is about to be opened
+         */
+        void addValidators(HttpURLConnection urlConnection) {
+            if (etag != null) {
+                urlConnection.setRequestProperty("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                urlConnection.setRequestProperty("If-Modified-Since", lastModified);
+            }
+        }
+    }
+
+    /**
+     * Writes a response body to a temporary file while it is being read from the network
+     */
+    final class Editor {
+
+        private final String key;
+        private final File tempFile;
+        private final String etag;
+        private final String lastModified;
+        private final long expiresAt;
+        private final OutputStream outputStream;
+
+        private Editor(String key, File tempFile, String etag, String lastModified,
+                       long expiresAt) throws IOException {
+            this.key = key;
+            this.tempFile = tempFile;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expiresAt = expiresAt;
+            outputStream = new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE);
+        }
+
+        /**
+         * Wrap the network stream so everything read from it is also written to the cache
+         */
+        InputStream tee(final InputStream inputStream) {
+            return new FilterInputStream(inputStream) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b != -1) {
+                        outputStream.write(b);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int count) throws IOException {
+                    int read = super.read(buffer, offset, count);
+                    if (read > 0) {
+                        outputStream.write(buffer, offset, read);
+                    }
+                    return read;
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    /* Skipped bytes have to end up in the cache too */
+                    byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+                    int read = read(buffer, 0, buffer.length);
+                    return read == -1 ? 0 : read;
+                }
+            };
+        }
+
+        /**
+         * Read the rest of the tee stream and publish the body
+         */
+        void commit(InputStream teeStream) throws IOException {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (teeStream.read(buffer) != -1) {
+                /* The remaining bytes are written to the cache by the tee stream */
+            }
+            outputStream.close();
+            JsonResponseCache.this.commit(this);
+        }
+
+        /**
+         * Throw the partially written body away
+         */
+        void abort() {
+            try {
+                outputStream.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Problem closing the cache file", e);
+            }
+            deleteFile(tempFile);
+        }
+    }
+
+    /**
+     * The parts of the Cache-Control response header the cache cares about
+     */
+    static final class CacheControl {
+
+        final long maxAgeSeconds;
+        final boolean noStore;
+
+        private CacheControl(long maxAgeSeconds, boolean noStore) {
+            this.maxAgeSeconds = maxAgeSeconds;
+            this.noStore = noStore;
+        }
+
+        static CacheControl parse(String header) {
+            long maxAgeSeconds = 0;
+            boolean noStore = false;
+            if (header != null) {
+                for (String directive : header.split(",")) {
+                    String value = directive.trim().toLowerCase(Locale.US);
+                    if (value.equals("no-store")) {
+                        noStore = true;
+                    } else if (value.equals("no-cache")) {
+                        maxAgeSeconds = 0;
+                    } else if (value.startsWith("max-age=")) {
+                        try {
+                            maxAgeSeconds = Long.parseLong(value.substring("max-age=".length()));
+                        } catch (NumberFormatException e) {
+                            maxAgeSeconds = 0;
+                        }
+                    }
+                }
+            }
+            return new CacheControl(maxAgeSeconds, noStore);
+        }
+
+        long expiresAt(long now) {
+            return now + maxAgeSeconds * 1000;
+        }
+    }
+
+    /**
+     * Cache counters: fresh hits, full downloads, 304 revalidations, bytes not downloaded and
+     * the time spent serving from the cache and from the network
+     */
+    static final class Stats {
+
+        final long hitCount;
+        final long missCount;
+        final long revalidateCount;
+        final long savedBytes;
+        final long cachedTimeMillis;
+        final long networkTimeMillis;
+
+        Stats(long hitCount, long missCount, long revalidateCount, long savedBytes,
+              long cachedTimeMillis, long networkTimeMillis) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.revalidateCount = revalidateCount;
+            this.savedBytes = savedBytes;
+            this.cachedTimeMillis = cachedTimeMillis;
+            this.networkTimeMillis = networkTimeMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hitCount + " misses=" + missCount + " revalidated=" + revalidateCount
+                    + " savedBytes=" + savedBytes + " cachedMs=" + cachedTimeMillis
+                    + " networkMs=" + networkTimeMillis;
+        }
+    }
+}
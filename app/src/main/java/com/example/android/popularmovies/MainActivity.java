@@ -1,12 +1,13 @@
 package com.example.android.popularmovies;
 
+import android.arch.lifecycle.LiveData;
 import android.arch.lifecycle.Observer;
 import android.arch.lifecycle.ViewModelProviders;
-import android.content.res.Configuration;
 import android.os.AsyncTask;
+import android.os.Handler;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
-import android.support.v4.widget.NestedScrollView;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.support.v7.widget.GridLayoutManager;
@@ -20,12 +21,7 @@ import android.widget.ProgressBar;
 import android.widget.Spinner;
 import android.widget.TextView;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.io.IOException;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -88,11 +84,6 @@ public class MainActivity extends AppCompatActivity {
      */
     private List<Movie> movieList;
 
-    /**
-     * Key of the movie list
-     */
-    private final String MOVIE_LIST = "movieList";
-
     /**
      * Saved recyclerViewState
      */
@@ -104,9 +95,79 @@ public class MainActivity extends AppCompatActivity {
     private RecyclerView movieRecyclerView;
 
     /**
-     * Number of columns in the RecyclerView
+     * Pager that keeps track of the loaded pages of the most popular and top rated lists
      */
-    private int spanCount;
+    private MoviePager moviePager;
+
+    /**
+     * Requests for pages of movies, cancelled when they are superseded or the Activity is destroyed
+     */
+    private RequestGroup movieRequests;
+
+    /**
+     * Keys of the selected option and the paging state
+     */
+    private static final String SELECTED_OPTION = "selectedOption";
+    private static final String LOADED_PAGE = "loadedPage";
+    private static final String TOTAL_PAGES = "totalPages";
+
+    /**
+     * Repository of the cached most popular and top rated lists
+     */
+    private MovieRepository movieRepository;
+
+    /**
+     * Cached snapshot of the selected list, null while the favorites are displayed
+     */
+    private LiveData<MovieRepository.Snapshot> catalog;
+
+    /**
+     * True once the snapshot of the selected list has been checked for revalidation
+     */
+    private boolean catalogChecked;
+
+    /**
+     * Download time of the first page of the list on screen, to tell appended pages apart
+     * from a refreshed list
+     */
+    private long displayedFetchedAt;
+
+    /**
+     * Prefetches the details of the movies that stay on screen
+     */
+    private DetailPrefetcher detailPrefetcher;
+
+    /**
+     * Prefetches the posters of the rows ahead of the scroll
+     */
+    private PosterPrefetcher posterPrefetcher;
+
+    /**
+     * Delay between the end of a scroll and the check of the movies on screen, in milliseconds
+     */
+    private static final long VISIBILITY_CHECK_DELAY = 100;
+
+    private final Handler visibilityHandler = new Handler();
+
+    /**
+     * Distance the grid has scrolled down, in pixels
+     */
+    private int gridScrollY;
+
+    private final Runnable visibilityCheck = new Runnable() {
+        @Override
+        public void run() {
+            reportVisibleMovies();
+        }
+    };
+
+    private final Observer<MovieRepository.Snapshot> catalogObserver =
+            new Observer<MovieRepository.Snapshot>() {
+                @Override
+                public void onChanged(@Nullable MovieRepository.Snapshot snapshot) {
+                    showSnapshot(snapshot);
+                }
+            };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -117,22 +178,35 @@ public class MainActivity extends AppCompatActivity {
         emptyTextView = findViewById(R.id.empty_text_view);
         movieRecyclerView = findViewById(R.id.movies_recycler_view);
         loadingIndicator = findViewById(R.id.loading_indicator);
-        NestedScrollView scrollView = findViewById(R.id.main_scroll_view);
         movieRecyclerView.setFocusable(false);
-        scrollView.requestFocus();
+
+        /* Cancel the running requests when the Activity is destroyed */
+        movieRequests = new RequestGroup();
+        getLifecycle().addObserver(movieRequests);
+
+        /* Load the next page a few rows before the user reaches the end of the grid */
+        moviePager = new MoviePager(getResources().getInteger(R.integer.pagination_prefetch_rows));
+        movieRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                gridScrollY += dy;
+                loadNextPageIfNeeded();
+                prefetchPosters();
+                scheduleVisibilityCheck(VISIBILITY_CHECK_DELAY);
+            }
+        });
+        detailPrefetcher = DetailPrefetcher.getInstance();
+        posterPrefetcher = PosterPrefetcher.create(getApplicationContext());
 
         /* Create a new MovieAdapter */
         movieAdapter = new MovieAdapter();
         movieAdapter.setMovieList(movieList);
 
-        /* The number of columns in the recyclerView */
-        if (getResources().getConfiguration().orientation == Configuration.ORIENTATION_LANDSCAPE ||
-                getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT) {
-            spanCount = 2;
-        }
-
-        /* Set a new LinearLayoutManager to the movieRecyclerView */
-        GridLayoutManager mLayoutManager = new GridLayoutManager(this, spanCount);
+        /* Set a new PosterGridLayoutManager to the movieRecyclerView, which fits as many
+         * columns of the target poster width as the width of the grid allows */
+        GridLayoutManager mLayoutManager = new PosterGridLayoutManager(this,
+                getResources().getDimensionPixelSize(R.dimen.grid_cell_target_width),
+                getResources().getInteger(R.integer.grid_min_span_count));
         movieRecyclerView.setLayoutManager(mLayoutManager);
 
         /* Set the adapters to the RecyclerViews */
@@ -140,6 +214,17 @@ public class MainActivity extends AppCompatActivity {
 
         /* Get instance of the AppDatabase using the app context */
         appDatabase = AppDatabase.getInstance(getApplicationContext());
+        movieRepository = MovieRepository.getInstance(getApplicationContext());
+
+        /* Install the disk cache of the TMDB responses and the poster caches */
+        JsonResponseCache.install(getApplicationContext().getCacheDir());
+        ImageCache.install(getApplicationContext());
+
+        /* Download the image sizes of The MovieDB if they are not known or too old */
+        ImageConfiguration.getInstance(getApplicationContext()).refreshIfStale();
+
+        /* Warm the lists and posters in the background while charging on Wi-Fi */
+        CatalogPrefetchJobService.schedule(getApplicationContext());
 
         if (selectedOption == null) {
             selectedOption = getString(R.string.settings_sort_by_most_popular_value);
@@ -152,11 +237,15 @@ public class MainActivity extends AppCompatActivity {
         if (savedInstanceState == null) {
             generateSpinner(0);
             if (movieList == null) {
-                new MovieAsyncTask().execute(selectedOption);
+                loadFirstPage();
             }
         } else {
-            movieList = savedInstanceState.getParcelableArrayList(MOVIE_LIST);
             spinnerSelectedPosition = savedInstanceState.getInt(SPINNER_SELECTED_POSITION);
+            selectedOption = savedInstanceState.getString(SELECTED_OPTION, selectedOption);
+            if (spinnerSelectedPosition != 2) {
+                moviePager.restore(selectedOption, savedInstanceState.getInt(LOADED_PAGE),
+                        savedInstanceState.getInt(TOTAL_PAGES));
+            }
             generateSpinner(spinnerSelectedPosition);
             savedRecyclerViewState = savedInstanceState.getParcelable(LIST_STATE);
             if (movieRecyclerView.getLayoutManager() != null) {
@@ -176,6 +265,42 @@ public class MainActivity extends AppCompatActivity {
         if (spinnerSelectedPosition == 2) {
             loadFavorites();
         }
+        scheduleVisibilityCheck(VISIBILITY_CHECK_DELAY);
+    }
+
+    /**
+     * Dump the request timings of the session in debug builds, so builds can be compared
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (BuildConfig.DEBUG) {
+            Log.i(LOG_TAG, "Request metrics:\n" + QueryUtils.getRequestMetrics().dump());
+            JsonResponseCache.Stats responseCacheStats = QueryUtils.getResponseCacheStats();
+            if (responseCacheStats != null) {
+                Log.i(LOG_TAG, "Response cache: " + responseCacheStats);
+            }
+            Log.i(LOG_TAG, "Request scheduler: " + QueryUtils.getSchedulerStats());
+            Log.i(LOG_TAG, "Request coalescing: " + QueryUtils.getCoalescerStats());
+            ImageCache imageCache = ImageCache.getInstance();
+            if (imageCache != null) {
+                Log.i(LOG_TAG, "Poster cache: " + imageCache.getStats());
+            }
+            Log.i(LOG_TAG, "Poster prefetch: " + posterPrefetcher.getStats());
+            Log.i(LOG_TAG, "Detail prefetch: " + DetailPrefetcher.getInstance().getStats());
+        }
+    }
+
+    /**
+     * Nothing is on screen while the Activity is paused, so the pending detail and poster
+     * prefetches are cancelled
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        visibilityHandler.removeCallbacks(visibilityCheck);
+        detailPrefetcher.onVisibleMovies(new ArrayList<Movie>(), SystemClock.uptimeMillis());
+        posterPrefetcher.cancelAll();
     }
 
     /**
@@ -193,16 +318,17 @@ public class MainActivity extends AppCompatActivity {
         }
         outState.putParcelable(LIST_STATE, savedRecyclerViewState);
         outState.putInt(SPINNER_SELECTED_POSITION, selectedPosition);
-        outState.putParcelableArrayList(MOVIE_LIST, (ArrayList<? extends Parcelable>) movieList);
+        outState.putString(SELECTED_OPTION, selectedOption);
+        outState.putInt(LOADED_PAGE, moviePager.getLoadedPage());
+        outState.putInt(TOTAL_PAGES, moviePager.getTotalPages());
     }
 
     @Override
     protected void onRestoreInstanceState(Bundle savedInstanceState) {
         super.onRestoreInstanceState(savedInstanceState);
-        /* If there is a savedInstanceState, get the movieList, spinnerSelectedPosition and
+        /* If there is a savedInstanceState, get the spinnerSelectedPosition and
         savedRecyclerViewState*/
         if (savedInstanceState != null) {
-            movieList = savedInstanceState.getParcelableArrayList(MOVIE_LIST);
             spinnerSelectedPosition = savedInstanceState.getInt(SPINNER_SELECTED_POSITION);
             savedRecyclerViewState = savedInstanceState.getParcelable(LIST_STATE);
         }
@@ -227,6 +353,54 @@ public class MainActivity extends AppCompatActivity {
         movieRecyclerView.setVisibility(View.VISIBLE);
         emptyTextView.setVisibility(View.GONE);
         loadingIndicator.setVisibility(View.GONE);
+        scheduleVisibilityCheck(VISIBILITY_CHECK_DELAY);
+    }
+
+    /**
+     * Report the movies on screen to the DetailPrefetcher after the given delay, replacing a
+     * check that is already scheduled
+     */
+    private void scheduleVisibilityCheck(long delay) {
+        visibilityHandler.removeCallbacks(visibilityCheck);
+        visibilityHandler.postDelayed(visibilityCheck, delay);
+    }
+
+    /**
+     * Report the movies whose posters are at least partly on screen to the DetailPrefetcher
+     */
+    private void reportVisibleMovies() {
+        List<Movie> visibleMovies = new ArrayList<>();
+        GridLayoutManager layoutManager = (GridLayoutManager) movieRecyclerView.getLayoutManager();
+        if (movieRecyclerView.getVisibility() == View.VISIBLE && layoutManager != null) {
+            List<Movie> shownMovies = movieAdapter.getMovies();
+            int first = layoutManager.findFirstVisibleItemPosition();
+            int last = Math.min(layoutManager.findLastVisibleItemPosition(),
+                    shownMovies.size() - 1);
+            for (int position = Math.max(first, 0); position <= last; position++) {
+                visibleMovies.add(shownMovies.get(position));
+            }
+        }
+        long nextCheck = detailPrefetcher.onVisibleMovies(visibleMovies,
+                SystemClock.uptimeMillis());
+        if (nextCheck >= 0) {
+            scheduleVisibilityCheck(nextCheck);
+        }
+    }
+
+    /**
+     * Report the scroll to the PosterPrefetcher with the range of positions on screen, so it
+     * loads the posters of the rows ahead
+     */
+    private void prefetchPosters() {
+        View firstItem = movieRecyclerView.getChildAt(0);
+        GridLayoutManager layoutManager = (GridLayoutManager) movieRecyclerView.getLayoutManager();
+        if (firstItem == null || firstItem.getHeight() == 0 || layoutManager == null) {
+            return;
+        }
+        posterPrefetcher.onScroll(movieAdapter.getMovies(),
+                layoutManager.findFirstVisibleItemPosition(),
+                layoutManager.findLastVisibleItemPosition(), gridScrollY,
+                layoutManager.getSpanCount(), firstItem.getHeight(), SystemClock.uptimeMillis());
     }
 
     /**
@@ -236,7 +410,7 @@ public class MainActivity extends AppCompatActivity {
         /* If the movieList is null, execute the MovieAsyncTask. Otherwise set the text to the
          * emptyTextView and hide the loading indicator */
         if (movieList == null) {
-            new MovieAsyncTask().execute(selectedOption);
+            loadFirstPage();
         } else if (movieList.size() == 0) {
             emptyTextView.setText(R.string.no_movies_found);
             loadingIndicator.setVisibility(View.GONE);
@@ -275,18 +449,27 @@ public class MainActivity extends AppCompatActivity {
                     return;
                 }
                 if (view == null) {
-                    populateMovies(movieList);
+                    /* The movies are not saved with the state of the Activity, only the selected
+                     * list and its pages: the restored list is shown again from the cached
+                     * catalog, which is loaded again if it is empty or stale, and followed so
+                     * the pages loaded later show up */
+                    if (selectedPosition != 2) {
+                        observeCatalog();
+                    }
                 } else {
                     if (selectedPosition == 0) {
                         selectedOption = getString(R.string.settings_sort_by_most_popular_value);
-                        new MovieAsyncTask().execute(selectedOption);
+                        showCatalog();
                     } else if (selectedPosition == 1) {
                         Log.i("TAG", " selectedOption " + selectedOption);
                         selectedOption = getString(R.string.settings_sort_by_top_rated_value);
-                        new MovieAsyncTask().execute(selectedOption);
+                        showCatalog();
                     } else if (selectedPosition == 2) {
                         /* if the selectedPosition is 2, call the method loadFavorites to load all the
                          * favorite movies from the local database */
+                        movieRequests.cancelAll();
+                        moviePager.reset();
+                        stopObservingCatalog();
                         loadFavorites();
                     }
                     MainActivity.spinnerSelectedPosition = selectedPosition;
@@ -300,77 +483,171 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * MovieAsyncTask class that creates the URL for loading the movies, makes the HTTP request and
-     * parses the JSON String in order to create a new Movie object.
-     * Returns a list of movies.
+     * Display the cached snapshot of the selected option, which is revalidated in the
+     * background if it is stale
      */
-    private class MovieAsyncTask extends AsyncTask<String, Void, List<Movie>> {
+    private void showCatalog() {
+        /* The pages of the previous list are no longer needed */
+        movieRequests.cancelAll();
+        moviePager.reset();
+        observeCatalog();
+    }
 
-        @Override
-        protected List<Movie> doInBackground(String... strings) {
-            List<Movie> movieList1 = new ArrayList<>();
+    /**
+     * Observe the cached snapshot of the selected option in place of the previous one
+     */
+    private void observeCatalog() {
+        stopObservingCatalog();
+        catalogChecked = false;
+        displayedFetchedAt = 0;
+        catalog = movieRepository.getCatalog(selectedOption);
+        catalog.observe(this, catalogObserver);
+    }
 
-            try {
-                URL url = QueryUtils.createMovieUrl(selectedOption);
-                String movieJson = QueryUtils.makeHttpRequest(url);
+    private void stopObservingCatalog() {
+        if (catalog != null) {
+            catalog.removeObserver(catalogObserver);
+            catalog = null;
+        }
+    }
+
+    /**
+     * Display a snapshot of the selected list. Pages appended to the list on screen are
+     * inserted into the grid, anything else replaces the grid. The first snapshot of a
+     * selection is revalidated in the background if it is stale, while it stays on screen.
+     */
+    private void showSnapshot(MovieRepository.Snapshot snapshot) {
+        if (snapshot == null || selectedPosition == 2
+                || !snapshot.listName.equals(selectedOption)) {
+            return;
+        }
+        if (moviePager.getSelectedOption() == null) {
+            moviePager.restore(selectedOption, snapshot.loadedPage, snapshot.totalPages);
+        } else {
+            moviePager.onSnapshot(selectedOption, snapshot.loadedPage, snapshot.totalPages);
+        }
+
+        if (!snapshot.movies.isEmpty()) {
+            if (snapshot.fetchedAt == displayedFetchedAt
+                    && snapshot.movies.size() > movieList.size()) {
+                List<Movie> page = snapshot.movies.subList(movieList.size(),
+                        snapshot.movies.size());
+                movieList.addAll(page);
+                movieAdapter.addMovies(page);
+            } else {
+                /* The activity gets its own copy that later pages are appended to */
+                populateMovies(new ArrayList<>(snapshot.movies));
+            }
+            displayedFetchedAt = snapshot.fetchedAt;
+        }
 
-                /* Create a JSONObject from the JSON response string */
-                JSONObject baseJsonResponse = new JSONObject(movieJson);
+        if (!catalogChecked) {
+            catalogChecked = true;
+            if (movieRepository.isStale(snapshot, System.currentTimeMillis())) {
+                loadFirstPage();
+            }
+        }
+    }
 
-                /* Extract the JSONArray with the key "results" */
-                JSONArray movieArray = baseJsonResponse.getJSONArray("results");
+    /**
+     * Start loading the first page of the selected option, which replaces the stored list
+     */
+    private void loadFirstPage() {
+        if (moviePager.startFirstPage(selectedOption)) {
+            new MovieAsyncTask(selectedOption, 1).execute();
+        }
+    }
 
-                if (movieArray.length() == 0) {
-                    return movieList1;
-                }
+    /**
+     * Start loading the next page if the number of rows left below the viewport drops to the
+     * prefetch distance. The pager makes sure the same page is never requested twice.
+     */
+    private void loadNextPageIfNeeded() {
+        GridLayoutManager layoutManager = (GridLayoutManager) movieRecyclerView.getLayoutManager();
+        if (layoutManager == null) {
+            return;
+        }
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (lastVisible == RecyclerView.NO_POSITION) {
+            return;
+        }
+        int remainingRows = Math.max(movieAdapter.getMovies().size() - 1 - lastVisible, 0)
+                / layoutManager.getSpanCount();
+        int page = moviePager.nextPageToLoad(remainingRows);
+        if (page != 0) {
+            new MovieAsyncTask(selectedOption, page).execute();
+        }
+    }
 
-                /* For each movie in the movieArray, create a Movie object */
-                for (int i = 0; i < movieArray.length(); i++) {
-
-                    /* Get a single movie at position i within the list of movies */
-                    JSONObject movieObject = movieArray.getJSONObject(i);
-
-                    /* Extract the value for the required keys */
-                    String title = movieObject.getString("title");
-                    String releaseDate = movieObject.getString("release_date");
-                    String posterUrl = movieObject.getString("poster_path");
-                    String userRating = movieObject.getString("vote_average");
-                    String plotSynopsis = movieObject.getString("overview");
-                    int id = movieObject.getInt("id");
-
-                    /* Create a new Movie object with the id, title, releaseDate, posterUrl, userRating
-                    and plotSynopsis from the JSON response. */
-                    Movie movie = new Movie(id, title, releaseDate, posterUrl, userRating, plotSynopsis);
-
-                    movie.setMovieId(id);
-                    movie.setMovieTitle(title);
-                    movie.setMovieReleaseDate(releaseDate);
-                    movie.setMovieUrlPoster(posterUrl);
-                    movie.setMovieUserRating(userRating);
-                    movie.setMoviePlotSynopsis(plotSynopsis);
-
-                    /* Add the movie to the movieList */
-                    movieList1.add(i, movie);
-                }
+    /**
+     * MovieAsyncTask class that loads a page of movies through the MovieRepository, which
+     * stores it in the database. The grid is updated by the snapshot of the list.
+     * Returns the page of movies.
+     */
+    private class MovieAsyncTask extends AsyncTask<Void, Void, MoviePage> {
+
+        /**
+         * Selected option and page the task loads
+         */
+        private final String option;
+        private final int page;
+
+        /**
+         * Handle that cancels the request when it is superseded
+         */
+        private final RequestHandle handle;
+
+        /**
+         * True if the request was given up because The MovieDB kept failing
+         */
+        private boolean unavailable;
+
+        MovieAsyncTask(String option, int page) {
+            this.option = option;
+            this.page = page;
+            handle = movieRequests.newHandle();
+        }
+
+        @Override
+        protected MoviePage doInBackground(Void... voids) {
+            MoviePage moviePage = null;
+
+            try {
+                moviePage = movieRepository.loadPage(option, page, handle);
+            } catch (RequestScheduler.UnavailableException e) {
+                unavailable = true;
+                Log.e(LOG_TAG, "The MovieDB is unavailable.", e);
             } catch (IOException e) {
-                Log.e(LOG_TAG, "Problem retrieving the movie JSON results.", e);
-            } catch (JSONException e) {
-                Log.e(LOG_TAG, "Problem parsing the movie JSON response results", e);
+                if (!handle.isCancelled()) {
+                    Log.e(LOG_TAG, "Problem retrieving the movie JSON results.", e);
+                }
             }
-            /* Return a list of movies */
-            return movieList1;
+            /* Return the page of movies */
+            return moviePage;
         }
 
         @Override
-        protected void onPostExecute(List<Movie> movies) {
-            /* If there are no movies, hide the movieRecyclerView and loading indicator and inform
-            the user there are no movies found */
-            if (movies.size() == 0) {
+        protected void onPostExecute(MoviePage moviePage) {
+            movieRequests.finish(handle);
+            /* Drop pages of a list that is no longer selected */
+            if (handle.isCancelled() || !moviePager.isExpected(option, page)) {
+                return;
+            }
+            if (moviePage == null) {
+                moviePager.onPageFailed(page);
+            } else {
+                moviePager.onPageLoaded(page, moviePage.totalPages);
+            }
+
+            if (page == 1 && displayedFetchedAt == 0
+                    && (moviePage == null || moviePage.movies.isEmpty())) {
+                /* If there are no movies, neither cached nor downloaded, hide the
+                movieRecyclerView and loading indicator and inform the user there are no movies
+                found, or that they could not be loaded */
                 movieRecyclerView.setVisibility(View.GONE);
-                emptyTextView.setText(getString(R.string.no_movies_found));
+                emptyTextView.setText(getString(unavailable ? R.string.movies_unavailable
+                        : R.string.no_movies_found));
                 loadingIndicator.setVisibility(View.GONE);
-            } else {
-                populateMovies(movies);
             }
         }
     }
@@ -415,18 +692,12 @@ public class MainActivity extends AppCompatActivity {
                             runOnUiThread(new Runnable() {
                                 @Override
                                 public void run() {
-                                    /* Hide the empty state text view as the loading indicator will
-                                    be displayed */
-                                    movieList = movies;
-                                    movieAdapter.notifyDataSetChanged();
-                                    populateMovies(movieList);
-                                    emptyTextView.setVisibility(View.GONE);
+                                    /* Only the favorites added or removed since the last
+                                    list are inserted into or removed from the grid */
+                                    populateMovies(movies);
 
-                                    /* Show the loading indicator while new date is being fetched,
-                                    notify the movieAdapter that the DataSet has been change, and
-                                    after adding all the movies to the adapter, hide the loading
-                                    indicator */
-                                    loadingIndicator.setVisibility(View.VISIBLE);
+                                    /* Hide the empty state text view and the loading indicator */
+                                    emptyTextView.setVisibility(View.GONE);
                                     loadingIndicator.setVisibility(View.GONE);
                                 }
                             });
@@ -2,41 +2,103 @@ package com.example.android.popularmovies;
 
 import android.content.Context;
 import android.content.Intent;
-import android.content.res.Configuration;
 import android.net.Uri;
 import android.support.annotation.NonNull;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
- * A MovieAdapter creates a recyclerView layout for the list of movies
+ * A MovieAdapter creates a recyclerView layout for the list of movies. The cells have the ID
+ * of their movie, and a new list is diffed against the movies on screen in the background, so
+ * only the cells of the movies that changed are bound again.
  */
 class MovieAdapter extends RecyclerView.Adapter<MovieAdapter.ViewHolder> {
 
-    class ViewHolder extends RecyclerView.ViewHolder {
+    class ViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
 
         final ImageView moviePosterImageView;
 
+        /**
+         * Loads the preview and then the thumbnail of the poster into the cell
+         */
+        final ProgressivePoster poster;
+
+        /**
+         * The movie bound to the cell, and the width its poster was loaded at, or 0 once the
+         * poster is cleared
+         */
+        private Movie movie;
+        private int posterWidth;
+
         ViewHolder(@NonNull View itemView) {
             super(itemView);
             moviePosterImageView = itemView.findViewById(R.id.movie_poster_image_view);
+            poster = new ProgressivePoster(moviePosterImageView);
+            moviePosterImageView.setOnClickListener(this);
+        }
+
+        /**
+         * Send an intent to the DetailActivity to open the details of the movie of the cell
+         */
+        @Override
+        public void onClick(View v) {
+            if (movie == null) {
+                return;
+            }
+            /* Keep the prefetch of the details of the movie, which the DetailActivity joins */
+            DetailPrefetcher.getInstance().onOpened(movie.getMovieId());
+            Context context = v.getContext();
+            Intent intent = new Intent(context, DetailActivity.class);
+            intent.putExtra(CURRENT_MOVIE, movie);
+            context.startActivity(intent);
+        }
+
+        /**
+         * Returns true if the cell has the poster of the movie at the given width, loaded or on
+         * its way
+         */
+        boolean hasPoster(Movie other, int width) {
+            return movie != null && posterWidth == width
+                    && movie.getMovieId() == other.getMovieId()
+                    && TextUtils.equals(movie.getMovieUrlPoster(), other.getMovieUrlPoster());
         }
     }
 
     /**
-     * List of movies
+     * List of movies on screen. It is replaced, never changed, so a diff can read it off the
+     * main thread.
      */
     private List<Movie> movies;
 
     /**
-     * URL for the movie poster from The MovieDB
+     * The latest list given to the adapter, which is the list on screen unless its diff is
+     * still being computed
+     */
+    private List<Movie> latestMovies;
+
+    /**
+     * Incremented by every new list, so the diff against a list that was replaced is dropped
+     */
+    private int generation;
+
+    /**
+     * Computes the diffs, and applies them to the adapter on the main thread
      */
-    private static final String BASE_POSTER_URL = "https://image.tmdb.org/t/p/";
+    private final Executor backgroundExecutor;
+    private final Executor mainExecutor;
 
     /**
      * The key of the current movie
@@ -44,16 +106,110 @@ class MovieAdapter extends RecyclerView.Adapter<MovieAdapter.ViewHolder> {
     private static final String CURRENT_MOVIE = "currentMovie";
 
     /**
-     * Size of the movie poster
+     * The posters of The MovieDB are 2:3, so a cell is one and a half times as tall as wide
      */
-    private static final String posterSize = "w185";
+    private static final int POSTER_WIDTH_RATIO = 2;
+    private static final int POSTER_HEIGHT_RATIO = 3;
 
     /**
-     * Sets the movie list and notifies the adapter that the dataset has been changed
+     * The RecyclerView of the grid, whose width gives the width of the cells
      */
-    void setMovieList(List<Movie> movies) {
-        this.movies = movies;
-        notifyDataSetChanged();
+    private RecyclerView recyclerView;
+
+    /**
+     * Picks the poster size for the width of the cells
+     */
+    private ImageConfiguration imageConfiguration;
+
+    MovieAdapter() {
+        this(AppExecutors.getExecutors().computation(), AppExecutors.getExecutors().mainThread());
+    }
+
+    MovieAdapter(Executor backgroundExecutor, Executor mainExecutor) {
+        this.backgroundExecutor = backgroundExecutor;
+        this.mainExecutor = mainExecutor;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Sets the movie list. The adapter keeps a copy without the movies listed twice. The first
+     * list, and an empty one, are shown right away. Any other list is diffed against the movies
+     * on screen by movie ID on the background executor, and only the cells of the inserted,
+     * removed, moved or changed movies are updated.
+     */
+    void setMovieList(List<Movie> newMovies) {
+        final List<Movie> oldMovies = movies;
+        final List<Movie> submitted = newMovies == null
+                ? Collections.<Movie>emptyList() : new ArrayList<>(newMovies);
+        final int listGeneration = ++generation;
+        latestMovies = submitted;
+        if (oldMovies == null || oldMovies.isEmpty() || submitted.isEmpty()) {
+            movies = appendDistinct(Collections.<Movie>emptyList(), submitted);
+            latestMovies = movies;
+            notifyDataSetChanged();
+            return;
+        }
+
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Movie> distinct = appendDistinct(Collections.<Movie>emptyList(),
+                        submitted);
+                final DiffUtil.DiffResult diff = DiffUtil.calculateDiff(
+                        new MovieDiffCallback(oldMovies, distinct));
+                mainExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (listGeneration != generation) {
+                            return;
+                        }
+                        movies = distinct;
+                        latestMovies = distinct;
+                        diff.dispatchUpdatesTo(MovieAdapter.this);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Appends a page of movies to the movie list and notifies the adapter of the inserted range.
+     * While a diff is being computed, the page is appended to the latest list instead.
+     */
+    void addMovies(List<Movie> newMovies) {
+        if (movies == null || newMovies.isEmpty()) {
+            return;
+        }
+        if (latestMovies != movies) {
+            List<Movie> appended = new ArrayList<>(latestMovies);
+            appended.addAll(newMovies);
+            setMovieList(appended);
+            return;
+        }
+        int positionStart = movies.size();
+        movies = appendDistinct(movies, newMovies);
+        latestMovies = movies;
+        if (movies.size() > positionStart) {
+            notifyItemRangeInserted(positionStart, movies.size() - positionStart);
+        }
+    }
+
+    /**
+     * Returns the movies on screen, whose positions are the positions of the cells
+     */
+    List<Movie> getMovies() {
+        return movies == null ? Collections.<Movie>emptyList() : movies;
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        this.recyclerView = recyclerView;
+        imageConfiguration = ImageConfiguration.getInstance(recyclerView.getContext());
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        this.recyclerView = null;
     }
 
     @NonNull
@@ -65,47 +221,53 @@ class MovieAdapter extends RecyclerView.Adapter<MovieAdapter.ViewHolder> {
         return new ViewHolder(movieView);
     }
 
+    /**
+     * Binds the poster of the movie. The ViewHolder listens to the clicks itself, and a cell
+     * bound again to the poster it has, as after a change of the list that does not change its
+     * poster, keeps it without a new request.
+     */
     @Override
     public void onBindViewHolder(@NonNull ViewHolder viewHolder, int position) {
-        final Movie movie = movies.get(position);
-        ImageView moviePosterImageView = viewHolder.moviePosterImageView;
+        Movie movie = movies.get(position);
+        assert movie != null;
+        int cellWidth = getCellWidth();
+        setCellHeight(viewHolder.itemView, cellWidth);
+        if (viewHolder.hasPoster(movie, cellWidth)) {
+            viewHolder.movie = movie;
+            return;
+        }
+        viewHolder.movie = movie;
+        viewHolder.posterWidth = cellWidth;
 
-        final Context context = moviePosterImageView.getContext();
+        /* Get the fullPosterPathUri of the size that covers the cell from the
+        formatPosterPath() method */
+        Context context = viewHolder.moviePosterImageView.getContext();
+        Uri fullPosterPathUri = formatPosterPath(context, movie, cellWidth);
 
-        /* Get the fullPosterPathUri from the formatPosterPath() method */
-        assert movie != null;
-        Uri fullPosterPathUri = formatPosterPath(movie);
-
-        /* Get the width and height pixels and store them in integers width and height*/
-        int width = context.getResources().getDisplayMetrics().widthPixels;
-        int height = context.getResources().getDisplayMetrics().heightPixels;
-
-        /* Using the Picasso library load the fullPosterPathUri into the recyclerView,
-         * resize and center it. */
-        if (context.getResources().getConfiguration().orientation == Configuration.ORIENTATION_LANDSCAPE) {
-            com.squareup.picasso.Picasso
-                    .get()
-                    .load(fullPosterPathUri)
-                    .centerInside().resize(width / 2, height)
-                    .into(moviePosterImageView);
-        } else {
-            com.squareup.picasso.Picasso
-                    .get()
-                    .load(fullPosterPathUri)
-                    .centerInside().resize(width / 2, height / 2)
-                    .into(moviePosterImageView);
+        /* Using the Picasso library load the thumbnail of the fullPosterPathUri into the
+         * recyclerView, scaled down to the width of the cell if the poster is wider. Picasso
+         * goes through the memory and disk tiers of the ImageCache before the network, and
+         * unless the thumbnail is in memory, the smallest size of the poster fills the cell
+         * until it arrives. */
+        if (!viewHolder.poster.loadPoster(
+                ImageCache.loadGridPoster(fullPosterPathUri, cellWidth))) {
+            viewHolder.poster.loadPreview(formatPreviewPath(context, movie));
         }
+    }
 
-        /* Set an onClickListener on the RecyclerView, which sends an intent to the DetailActivity
-         to open the details of the selected movie. */
-        moviePosterImageView.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                Intent intent = new Intent(context, DetailActivity.class);
-                intent.putExtra(CURRENT_MOVIE, movie);
-                context.startActivity(intent);
-            }
-        });
+    /**
+     * A recycled cell is rebound before it shows again, so its thumbnail can be reused
+     */
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        holder.poster.clear();
+        holder.movie = null;
+        holder.posterWidth = 0;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return movies.get(position).getMovieId();
     }
 
     @Override
@@ -118,11 +280,119 @@ class MovieAdapter extends RecyclerView.Adapter<MovieAdapter.ViewHolder> {
     }
 
     /**
-     * Return the formatted poster path Uri
+     * Returns the width of a cell of the grid in pixels, as laid out by the RecyclerView, or
+     * the last known width before the first layout
      */
-    static Uri formatPosterPath(Movie selectedMovie) {
+    private int getCellWidth() {
+        int width = recyclerView == null ? 0
+                : recyclerView.getWidth() - recyclerView.getPaddingLeft()
+                - recyclerView.getPaddingRight();
+        if (width <= 0) {
+            return imageConfiguration.getGridCellWidth();
+        }
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        int spanCount = layoutManager instanceof GridLayoutManager
+                ? ((GridLayoutManager) layoutManager).getSpanCount() : 1;
+        int cellWidth = width / spanCount;
+        imageConfiguration.setGridCellWidth(cellWidth);
+        return cellWidth;
+    }
+
+    /**
+     * Give the cell the height of its poster before the poster arrives, so the grid only lays
+     * out the cells that fit on screen. The cell is measured after it is bound.
+     */
+    private static void setCellHeight(View cell, int cellWidth) {
+        ViewGroup.LayoutParams params = cell.getLayoutParams();
+        int height = cellWidth * POSTER_HEIGHT_RATIO / POSTER_WIDTH_RATIO;
+        if (params.height != height) {
+            params.height = height;
+        }
+    }
+
+    /**
+     * Return the formatted poster path Uri, at the smallest size that covers the given width
+     * in pixels
+     */
+    static Uri formatPosterPath(Context context, Movie selectedMovie, int width) {
         String posterPath = selectedMovie.getMovieUrlPoster();
-        String fullPosterPath = BASE_POSTER_URL + posterSize + posterPath;
-        return Uri.parse(fullPosterPath);
+        return ImageConfiguration.getInstance(context).posterUri(posterPath, width);
+    }
+
+    /**
+     * Return the Uri of the smallest size of the poster, shown while the poster loads
+     */
+    static Uri formatPreviewPath(Context context, Movie selectedMovie) {
+        String posterPath = selectedMovie.getMovieUrlPoster();
+        return ImageConfiguration.getInstance(context).previewUri(posterPath);
+    }
+
+    /**
+     * Returns a new list of the movies followed by the movies of the page that are not in it
+     * yet. A movie can move to the next page of a list between two requests, and a stable ID
+     * has to be unique in the adapter.
+     */
+    private static List<Movie> appendDistinct(List<Movie> movies, List<Movie> page) {
+        List<Movie> distinct = new ArrayList<>(movies.size() + page.size());
+        Set<Integer> movieIds = new HashSet<>();
+        for (Movie movie : movies) {
+            movieIds.add(movie.getMovieId());
+            distinct.add(movie);
+        }
+        for (Movie movie : page) {
+            if (movieIds.add(movie.getMovieId())) {
+                distinct.add(movie);
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Movies are the same if they have the same ID, and a cell shows the same content if all the
+     * fields of the movie are the same
+     */
+    private static final class MovieDiffCallback extends DiffUtil.Callback {
+
+        private final List<Movie> oldMovies;
+        private final List<Movie> newMovies;
+
+        MovieDiffCallback(List<Movie> oldMovies, List<Movie> newMovies) {
+            this.oldMovies = oldMovies;
+            this.newMovies = newMovies;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldMovies.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newMovies.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return oldMovies.get(oldPosition).getMovieId()
+                    == newMovies.get(newPosition).getMovieId();
+        }
+
+        /**
+         * The cell only shows the poster, but a click hands the whole Movie to the
+         * DetailActivity, so a movie whose title, rating or synopsis changed is bound again
+         */
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            Movie oldMovie = oldMovies.get(oldPosition);
+            Movie newMovie = newMovies.get(newPosition);
+            return TextUtils.equals(oldMovie.getMovieUrlPoster(), newMovie.getMovieUrlPoster())
+                    && TextUtils.equals(oldMovie.getMovieTitle(), newMovie.getMovieTitle())
+                    && TextUtils.equals(oldMovie.getMovieReleaseDate(),
+                    newMovie.getMovieReleaseDate())
+                    && TextUtils.equals(oldMovie.getMovieUserRating(),
+                    newMovie.getMovieUserRating())
+                    && TextUtils.equals(oldMovie.getMoviePlotSynopsis(),
+                    newMovie.getMoviePlotSynopsis());
+        }
     }
-}
\ No newline at end of file
+}
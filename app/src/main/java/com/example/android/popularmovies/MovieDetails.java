@@ -0,0 +1,40 @@
+package com.example.android.popularmovies;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A MovieDetails object contains the details of a single movie together with its trailers and
+ * reviews, as returned by a single append_to_response request
+ */
+class MovieDetails {
+
+    /**
+     * Details of the movie
+     */
+    final Movie movie;
+
+    /**
+     * Trailers of the movie. The lists can not be modified, as the details may be shared by
+     * the callers of a coalesced request.
+     */
+    final List<Trailer> trailers;
+
+    /**
+     * First page of the reviews of the movie
+     */
+    final List<Review> reviews;
+
+    /**
+     * Total number of pages of the reviews, of which the next ones are loaded on demand
+     */
+    final int reviewTotalPages;
+
+    MovieDetails(Movie movie, List<Trailer> trailers, List<Review> reviews,
+                 int reviewTotalPages) {
+        this.movie = movie;
+        this.trailers = Collections.unmodifiableList(trailers);
+        this.reviews = Collections.unmodifiableList(reviews);
+        this.reviewTotalPages = reviewTotalPages;
+    }
+}
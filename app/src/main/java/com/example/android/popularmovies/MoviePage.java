@@ -0,0 +1,32 @@
+package com.example.android.popularmovies;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A MoviePage object contains a single page of the /movie/popular or /movie/top_rated results
+ */
+class MoviePage {
+
+    /**
+     * Number of the page, starting at 1
+     */
+    final int page;
+
+    /**
+     * Total number of pages of the list
+     */
+    final int totalPages;
+
+    /**
+     * Movies on the page, which can not be modified as the page may be shared by the callers
+     * of a coalesced request
+     */
+    final List<Movie> movies;
+
+    MoviePage(int page, int totalPages, List<Movie> movies) {
+        this.page = page;
+        this.totalPages = totalPages;
+        this.movies = Collections.unmodifiableList(movies);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.android.popularmovies;
+
+/**
+ * Keeps track of the pages of the movie list that are loaded and in flight, so the next page
+ * is requested a few rows before the end of the grid and no page is requested twice.
+ */
+class MoviePager {
+
+    /**
+     * Number of rows before the end of the grid at which the next page starts loading
+     */
+    private final int prefetchRows;
+
+    /**
+     * Selected option (popular or top_rated) of the list being paged
+     */
+    private String selectedOption;
+
+    /**
+     * Last page of the list that has been loaded, 0 if none
+     */
+    private int loadedPage;
+
+    /**
+     * Total number of pages reported by the server, 0 while unknown
+     */
+    private int totalPages;
+
+    /**
+     * Page that is currently being loaded, 0 if none
+     */
+    private int pageInFlight;
+
+    MoviePager(int prefetchRows) {
+        this.prefetchRows = prefetchRows;
+    }
+
+    /**
+     * Forget all pages, as a list that is not paged is displayed
+     */
+    void reset() {
+        selectedOption = null;
+        loadedPage = 0;
+        totalPages = 0;
+        pageInFlight = 0;
+    }
+
+    /**
+     * Restore the state of a list that has already been loaded up to loadedPage
+     */
+    void restore(String selectedOption, int loadedPage, int totalPages) {
+        this.selectedOption = selectedOption;
+        this.loadedPage = loadedPage;
+        this.totalPages = totalPages;
+        pageInFlight = 0;
+    }
+
+    /**
+     * Returns the page to load given the number of rows left below the viewport, or 0 if no
+     * page has to be loaded. The returned page is marked as in flight.
+     */
+    int nextPageToLoad(int remainingRows) {
+        if (selectedOption == null || pageInFlight != 0 || !hasMorePages()
+                || remainingRows > prefetchRows) {
+            return 0;
+        }
+        pageInFlight = loadedPage + 1;
+        return pageInFlight;
+    }
+
+    /**
+     * Start paging the list of the given option by marking its first page as in flight.
+     * Returns false if the first page of that list is already being loaded.
+     */
+    boolean startFirstPage(String selectedOption) {
+        if (pageInFlight == 1 && selectedOption.equals(this.selectedOption)) {
+            return false;
+        }
+        if (!selectedOption.equals(this.selectedOption)) {
+            reset();
+            this.selectedOption = selectedOption;
+        }
+        /* The pages already loaded stay valid until the first page replaces them */
+        pageInFlight = 1;
+        return true;
+    }
+
+    /**
+     * Follow the pages of the list stored in the database. A page in flight stays in flight
+     * until it is stored, and the first page stays in flight until its request completes.
+     */
+    void onSnapshot(String selectedOption, int loadedPage, int totalPages) {
+        if (!selectedOption.equals(this.selectedOption)) {
+            return;
+        }
+        this.loadedPage = loadedPage;
+        this.totalPages = totalPages;
+        if (pageInFlight > 1 && pageInFlight <= loadedPage) {
+            pageInFlight = 0;
+        }
+    }
+
+    /**
+     * Record a page that has been appended to the grid
+     */
+    void onPageLoaded(int page, int totalPages) {
+        if (page != pageInFlight) {
+            return;
+        }
+        loadedPage = page;
+        this.totalPages = totalPages;
+        pageInFlight = 0;
+    }
+
+    /**
+     * Record a page that could not be loaded, so it can be requested again
+     */
+    void onPageFailed(int page) {
+        if (page == pageInFlight) {
+            pageInFlight = 0;
+        }
+    }
+
+    /**
+     * Returns true if the result for the given list and page is the one the pager is waiting for
+     */
+    boolean isExpected(String selectedOption, int page) {
+        return page == pageInFlight && selectedOption.equals(this.selectedOption);
+    }
+
+    boolean hasMorePages() {
+        return totalPages == 0 ? loadedPage == 0 : loadedPage < totalPages;
+    }
+
+    String getSelectedOption() {
+        return selectedOption;
+    }
+
+    int getLoadedPage() {
+        return loadedPage;
+    }
+
+    int getTotalPages() {
+        return totalPages;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.android.popularmovies;
+
+import android.arch.core.util.Function;
+import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.Transformations;
+import android.content.Context;
+import android.content.res.Resources;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline-first source of the most popular and top rated lists. The pages of each list are
+ * stored in the database, so a list is displayed right away from its cached snapshot, which is
+ * revalidated in the background once it is older than the time to live of the list.
+ * Every page that is downloaded is written to the database, and the observers of the list get
+ * the update through LiveData.
+ */
+final class MovieRepository implements CatalogPrefetcher.CatalogStore {
+
+    private static final String LOG_TAG = MovieRepository.class.getSimpleName();
+    private static final Object LOCK = new Object();
+    private static MovieRepository repositoryInstance;
+
+    private final AppDatabase database;
+
+    /**
+     * Time to live of each list, in milliseconds
+     */
+    private final Map<String, Long> timeToLive = new HashMap<>();
+
+    private MovieRepository(Context context) {
+        this(AppDatabase.getInstance(context), createTimeToLive(context));
+    }
+
+    /**
+     * Repository of the lists stored in the given database, with the time to live of each list
+     * in milliseconds
+     */
+    @VisibleForTesting
+    MovieRepository(AppDatabase database, Map<String, Long> timeToLive) {
+        this.database = database;
+        this.timeToLive.putAll(timeToLive);
+    }
+
+    private static Map<String, Long> createTimeToLive(Context context) {
+        Resources resources = context.getResources();
+        Map<String, Long> timeToLive = new HashMap<>();
+        timeToLive.put(context.getString(R.string.settings_sort_by_most_popular_value),
+                TimeUnit.MINUTES.toMillis(
+                        resources.getInteger(R.integer.catalog_ttl_popular_minutes)));
+        timeToLive.put(context.getString(R.string.settings_sort_by_top_rated_value),
+                TimeUnit.MINUTES.toMillis(
+                        resources.getInteger(R.integer.catalog_ttl_top_rated_minutes)));
+        return timeToLive;
+    }
+
+    static MovieRepository getInstance(Context context) {
+        synchronized (LOCK) {
+            if (repositoryInstance == null) {
+                repositoryInstance = new MovieRepository(context.getApplicationContext());
+            }
+            return repositoryInstance;
+        }
+    }
+
+    /**
+     * Returns the cached snapshot of the list, updated every time a page of the list is stored
+     */
+    LiveData<Snapshot> getCatalog(final String listName) {
+        return Transformations.map(database.catalogDao().loadCatalog(listName),
+                new Function<List<CatalogRow>, Snapshot>() {
+                    @Override
+                    public Snapshot apply(List<CatalogRow> rows) {
+                        return new Snapshot(listName, rows);
+                    }
+                });
+    }
+
+    /**
+     * Returns true if the snapshot is empty or older than the time to live of its list, in
+     * which case its first page should be downloaded again
+     */
+    boolean isStale(Snapshot snapshot, long now) {
+        return snapshot.movies.isEmpty() || isExpired(snapshot.listName, snapshot.fetchedAt, now);
+    }
+
+    /**
+     * Returns true if the list is not stored or older than its time to live.
+     * Must be called on a background thread.
+     */
+    @Override
+    public boolean isStale(String listName, long now) {
+        CatalogList catalogList = database.catalogDao().getList(listName);
+        return catalogList == null || isExpired(listName, catalogList.getFetchedAt(), now);
+    }
+
+    /**
+     * Returns the stored movies of a page of the list. Must be called on a background thread.
+     */
+    @Override
+    public List<Movie> getMovies(String listName, int page) {
+        List<CatalogMovie> catalogMovies = database.catalogDao().getMovies(listName, page);
+        List<Movie> movies = new ArrayList<>(catalogMovies.size());
+        for (CatalogMovie catalogMovie : catalogMovies) {
+            movies.add(catalogMovie.getMovie());
+        }
+        return movies;
+    }
+
+    private boolean isExpired(String listName, long fetchedAt, long now) {
+        Long ttl = timeToLive.get(listName);
+        return ttl == null || now - fetchedAt >= ttl || now < fetchedAt;
+    }
+
+    /**
+     * Download a page of the list and store it. Returns the page, or null if it could not be
+     * downloaded. Must be called on a background thread.
+     */
+    MoviePage loadPage(String listName, int page, RequestHandle handle) throws IOException {
+        URL url = QueryUtils.createMovieUrl(listName, page);
+        MoviePage moviePage = QueryUtils.fetch(url, JsonParsers.MOVIE_PAGE, handle);
+        if (moviePage != null) {
+            savePage(listName, moviePage, System.currentTimeMillis());
+        }
+        return moviePage;
+    }
+
+    /**
+     * Store a page of the list. The first page replaces the whole list, as the order of the
+     * following pages may have changed since they were stored. Any other page is appended only
+     * if it follows the last stored page, so a page of a list that has been refreshed in the
+     * meantime is dropped.
+     */
+    @Override
+    public void savePage(final String listName, final MoviePage moviePage, final long now) {
+        database.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                CatalogDao catalogDao = database.catalogDao();
+                int position;
+                if (moviePage.page == 1) {
+                    catalogDao.deleteMovies(listName);
+                    catalogDao.insertList(new CatalogList(listName, moviePage.totalPages, now));
+                    position = 0;
+                } else if (catalogDao.getLoadedPage(listName) == moviePage.page - 1) {
+                    catalogDao.updateTotalPages(listName, moviePage.totalPages);
+                    position = catalogDao.getMovieCount(listName);
+                } else {
+                    Log.d(LOG_TAG, "Dropping page " + moviePage.page + " of " + listName);
+                    return;
+                }
+
+                List<CatalogMovie> catalogMovies = new ArrayList<>(moviePage.movies.size());
+                for (Movie movie : moviePage.movies) {
+                    catalogMovies.add(
+                            new CatalogMovie(listName, position++, moviePage.page, movie));
+                }
+                catalogDao.insertMovies(catalogMovies);
+            }
+        });
+    }
+
+    /**
+     * The movies of a cached list, with the paging state and the age of the list
+     */
+    static final class Snapshot {
+
+        final String listName;
+        final List<Movie> movies;
+
+        /**
+         * Last stored page, 0 if the list is not cached
+         */
+        final int loadedPage;
+        final int totalPages;
+
+        /**
+         * Time the first page was downloaded, 0 if the list is not cached
+         */
+        final long fetchedAt;
+
+        Snapshot(String listName, List<CatalogRow> rows) {
+            this.listName = listName;
+            if (rows == null || rows.isEmpty()) {
+                movies = Collections.emptyList();
+                loadedPage = 0;
+                totalPages = 0;
+                fetchedAt = 0;
+                return;
+            }
+            List<Movie> rowMovies = new ArrayList<>(rows.size());
+            for (CatalogRow row : rows) {
+                rowMovies.add(row.getMovie());
+            }
+            CatalogRow lastRow = rows.get(rows.size() - 1);
+            movies = Collections.unmodifiableList(rowMovies);
+            loadedPage = lastRow.getPage();
+            totalPages = lastRow.getTotalPages();
+            fetchedAt = lastRow.getFetchedAt();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.android.popularmovies;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Disk cache of the movie posters, the second tier of the ImageCache. It is filled by every
+ * poster the app downloads and ahead of time by the background prefetch, so the grid loads
+ * its posters from the disk instead of the network. Once the cache is over its byte budget,
+ * the least recently used posters are evicted.
+ */
+final class PosterCache {
+
+    private static final String TAG = PosterCache.class.getSimpleName();
+
+    /**
+     * Name of the cache directory inside the application cache directory
+     */
+    private static final String CACHE_DIRECTORY = "posters";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /* Singleton instantiation */
+    private static final Object LOCK = new Object();
+    private static PosterCache cache;
+
+    private final File directory;
+    private final long maxSize;
+
+    /**
+     * Size of the cached posters in bytes, computed on the first commit
+     */
+    private long size = -1;
+    private long evictionCount;
+
+    PosterCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Install the cache in the application cache directory, with the byte budget from the
+     * resources
+     */
+    static void install(Context context) {
+        synchronized (LOCK) {
+            if (cache == null) {
+                File directory = new File(context.getCacheDir(), CACHE_DIRECTORY);
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    Log.e(TAG, "Problem creating the cache directory " + directory);
+                    return;
+                }
+                long maxSize = context.getResources()
+                        .getInteger(R.integer.poster_disk_cache_megabytes) * 1024L * 1024L;
+                cache = new PosterCache(directory, maxSize);
+            }
+        }
+    }
+
+    /**
+     * Returns the installed cache, or null if the cache has not been installed
+     */
+    static PosterCache getInstance() {
+        return cache;
+    }
+
+    /**
+     * Returns the cached poster of the given URL, or null if it is not cached. The poster is
+     * marked as used, so this is not meant to be called on the main thread.
+     */
+    File get(String url) {
+        File file = new File(directory, JsonResponseCache.keyOf(url));
+        if (!file.isFile()) {
+            return null;
+        }
+        if (!file.setLastModified(System.currentTimeMillis())) {
+            Log.e(TAG, "Problem marking " + file + " as used");
+        }
+        return file;
+    }
+
+    /**
+     * Returns the size of the cached posters in bytes
+     */
+    synchronized long getSize() {
+        if (size < 0) {
+            size = computeSize();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of posters evicted to keep the cache in its byte budget
+     */
+    synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Download the poster of the given URL into the cache, reading at most maxBytes.
+     * Returns the number of bytes downloaded, or -1 if the poster is bigger than maxBytes, in
+     * which case nothing is stored.
+     */
+    long download(URL url, RequestHandle handle, long maxBytes) throws IOException {
+        HttpTransport transport = HttpTransport.getInstance();
+        HttpURLConnection urlConnection = transport.openConnection(url);
+        handle.attach(urlConnection);
+        InputStream inputStream = null;
+        File tempFile = null;
+        try {
+            int responseCode = urlConnection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                transport.abort(urlConnection);
+                throw new IOException("Error response code: " + responseCode);
+            }
+            if (urlConnection.getContentLength() > maxBytes) {
+                transport.abort(urlConnection);
+                return -1;
+            }
+
+            inputStream = urlConnection.getInputStream();
+            tempFile = File.createTempFile(JsonResponseCache.keyOf(url), TEMP_SUFFIX, directory);
+            long count = 0;
+            OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(tempFile),
+                    BUFFER_SIZE);
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    count += read;
+                    if (count > maxBytes) {
+                        break;
+                    }
+                    outputStream.write(buffer, 0, read);
+                }
+            } finally {
+                outputStream.close();
+            }
+            if (count > maxBytes) {
+                transport.abort(urlConnection);
+                return -1;
+            }
+
+            transport.release(urlConnection, inputStream);
+            commit(url, tempFile);
+            tempFile = null;
+            return count;
+        } catch (IOException e) {
+            transport.abort(urlConnection);
+            handle.throwIfCancelled();
+            throw e;
+        } finally {
+            handle.detach(urlConnection);
+            if (tempFile != null) {
+                deleteFile(tempFile);
+            }
+        }
+    }
+
+    /**
+     * Move a completely downloaded poster into place
+     */
+    private synchronized void commit(URL url, File tempFile) throws IOException {
+        File file = new File(directory, JsonResponseCache.keyOf(url));
+        long currentSize = getSize() - file.length();
+        deleteFile(file);
+        if (!tempFile.renameTo(file)) {
+            size = currentSize;
+            throw new IOException("Problem renaming " + tempFile);
+        }
+        size = currentSize + file.length();
+        if (size > maxSize) {
+            trimToSize();
+        }
+    }
+
+    /**
+     * Delete the least recently used posters until the cache fits in its maximum size
+     */
+    private void trimToSize() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                return Long.compare(first.lastModified(), second.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (size <= maxSize) {
+                break;
+            }
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                /* Posters that are still being downloaded are left alone */
+                continue;
+            }
+            size -= file.length();
+            deleteFile(file);
+            evictionCount++;
+        }
+    }
+
+    private long computeSize() {
+        File[] files = directory.listFiles();
+        long total = 0;
+        if (files != null) {
+            for (File file : files) {
+                if (!file.getName().endsWith(TEMP_SUFFIX)) {
+                    total += file.length();
+                }
+            }
+        }
+        return total;
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.e(TAG, "Problem deleting " + file);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.android.popularmovies;
+
+import android.content.Context;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * A GridLayoutManager whose number of columns follows the width of the RecyclerView, as sized
+ * by the GridSizing. The width changes when the screen rotates, as the MainActivity is not
+ * recreated, and the cells are then bound again so their posters are loaded at the new size.
+ */
+class PosterGridLayoutManager extends GridLayoutManager {
+
+    /**
+     * Width in pixels a cell should be close to, and the least number of columns
+     */
+    private final int targetCellWidth;
+    private final int minSpanCount;
+
+    /**
+     * The width the columns were computed for, 0 before the first layout
+     */
+    private int laidOutWidth;
+
+    PosterGridLayoutManager(Context context, int targetCellWidth, int minSpanCount) {
+        super(context, minSpanCount);
+        this.targetCellWidth = targetCellWidth;
+        this.minSpanCount = minSpanCount;
+    }
+
+    @Override
+    public void onLayoutChildren(RecyclerView.Recycler recycler, RecyclerView.State state) {
+        int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        if (width > 0 && width != laidOutWidth && !state.isPreLayout()) {
+            if (laidOutWidth > 0) {
+                /* Through the pool, and not the cache of the Recycler, so every cell is bound */
+                removeAndRecycleAllViews(recycler);
+                recycler.clear();
+            }
+            laidOutWidth = width;
+            setSpanCount(GridSizing.spanCount(width, targetCellWidth, minSpanCount));
+        }
+        super.onLayoutChildren(recycler, state);
+    }
+}
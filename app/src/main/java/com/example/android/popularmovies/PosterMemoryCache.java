@@ -0,0 +1,138 @@
+package com.example.android.popularmovies;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import com.squareup.picasso.Cache;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Memory tier of the ImageCache: an LRU of the decoded posters bounded in bytes. The bitmaps
+ * it drops go to the BitmapPool, unless a cell of the grid still shows them. The grid reports
+ * the bitmaps its cells show through show() and hide(), and a dropped bitmap that is on screen
+ * is pooled when its last cell lets go of it.
+ */
+final class PosterMemoryCache implements Cache {
+
+    /**
+     * Separator of the URI from the rest of the Picasso cache keys
+     */
+    private static final char KEY_SEPARATOR = '\n';
+
+    private final LruCache<String, Bitmap> cache;
+    private final BitmapPool pool;
+
+    /**
+     * Number of cells showing each bitmap
+     */
+    private final Map<Bitmap, Integer> shownCounts = new IdentityHashMap<>();
+
+    /**
+     * Bitmaps dropped from the cache while they were on screen
+     */
+    private final Set<Bitmap> droppedShown =
+            Collections.newSetFromMap(new IdentityHashMap<Bitmap, Boolean>());
+
+    PosterMemoryCache(int maxBytes, BitmapPool pool) {
+        this.pool = pool;
+        cache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return BitmapPool.byteCountOf(value);
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue,
+                                        Bitmap newValue) {
+                if (oldValue != newValue) {
+                    release(oldValue);
+                }
+            }
+        };
+    }
+
+    @Override
+    public Bitmap get(String key) {
+        return cache.get(key);
+    }
+
+    @Override
+    public void set(String key, Bitmap bitmap) {
+        cache.put(key, bitmap);
+    }
+
+    @Override
+    public int size() {
+        return cache.size();
+    }
+
+    @Override
+    public int maxSize() {
+        return cache.maxSize();
+    }
+
+    @Override
+    public void clear() {
+        cache.evictAll();
+    }
+
+    @Override
+    public void clearKeyUri(String uri) {
+        for (String key : cache.snapshot().keySet()) {
+            if (key.startsWith(uri) && key.length() > uri.length()
+                    && key.charAt(uri.length()) == KEY_SEPARATOR) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Record that a cell of the grid shows the bitmap, so it is not reused
+     */
+    synchronized void show(Bitmap bitmap) {
+        Integer count = shownCounts.get(bitmap);
+        shownCounts.put(bitmap, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Record that a cell of the grid no longer shows the bitmap
+     */
+    synchronized void hide(Bitmap bitmap) {
+        Integer count = shownCounts.get(bitmap);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            shownCounts.put(bitmap, count - 1);
+            return;
+        }
+        shownCounts.remove(bitmap);
+        if (droppedShown.remove(bitmap)) {
+            pool.put(bitmap);
+        }
+    }
+
+    private synchronized void release(Bitmap bitmap) {
+        if (shownCounts.containsKey(bitmap)) {
+            droppedShown.add(bitmap);
+        } else {
+            pool.put(bitmap);
+        }
+    }
+
+    long hitCount() {
+        return cache.hitCount();
+    }
+
+    long missCount() {
+        return cache.missCount();
+    }
+
+    long evictionCount() {
+        return cache.evictionCount();
+    }
+}
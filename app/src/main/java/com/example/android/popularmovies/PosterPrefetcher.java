@@ -0,0 +1,308 @@
+package com.example.android.popularmovies;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import com.squareup.picasso.Callback;
+import com.squareup.picasso.Picasso;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Prefetch of the posters ahead of the viewport of the movie grid. The scroll direction and
+ * speed are measured from the scroll events, and the posters of the next rows in the
+ * direction of the scroll are decoded into the memory cache before their cells are bound.
+ * The number of rows ahead is the distance scrolled while a poster loads, from the measured
+ * load latency, so a fling prefetches deeper than a slow scroll. Prefetches that fall behind
+ * the viewport, or are left behind when the direction changes, are cancelled.
+ * All the methods are called on the main thread.
+ */
+final class PosterPrefetcher {
+
+    /**
+     * Loads the poster of a movie into the memory cache, and reports the outcome through
+     * onLoaded()
+     */
+    interface Loader {
+        void load(Movie movie, Prefetch prefetch);
+
+        void cancel(Prefetch prefetch);
+    }
+
+    /**
+     * A poster being prefetched, also the tag of its request
+     */
+    static final class Prefetch {
+
+        final int movieId;
+        final int position;
+        final long startedAt;
+
+        private Prefetch(int movieId, int position, long startedAt) {
+            this.movieId = movieId;
+            this.position = position;
+            this.startedAt = startedAt;
+        }
+    }
+
+    /* Defaults: 1 to 8 rows ahead, a first latency estimate of 250ms */
+    private static final int DEFAULT_MIN_ROWS = 1;
+    private static final int DEFAULT_MAX_ROWS = 8;
+    private static final long DEFAULT_INITIAL_LATENCY_MILLIS = 250;
+
+    /**
+     * Weight of a new sample in the moving averages of the speed and the latency
+     */
+    private static final double SMOOTHING = 0.25;
+
+    /**
+     * Scroll events further apart than this start a new scroll, whose speed is measured anew
+     */
+    private static final long SCROLL_GAP_MILLIS = 200;
+
+    private final Loader loader;
+    private final int minRows;
+    private final int maxRows;
+
+    /**
+     * Posters being prefetched, by movie ID
+     */
+    private final Map<Integer, Prefetch> pending = new HashMap<>();
+
+    /**
+     * IDs of the movies whose posters were prefetched, least recently prefetched first
+     */
+    private final LinkedHashMap<Integer, Boolean> prefetched;
+
+    private int lastScrollY;
+    private long lastScrollTime;
+    private int direction = 1;
+
+    /**
+     * Moving averages of the scroll speed in pixels per millisecond and of the load latency
+     */
+    private double speed;
+    private double latencyMillis;
+
+    /**
+     * The prefetch whose load() is running, so an outcome reported from within it is known
+     * to come from the memory cache
+     */
+    private Prefetch starting;
+
+    private int depthRows;
+    private long startedCount;
+    private long cancelledCount;
+    private long loadedCount;
+    private long failedCount;
+
+    PosterPrefetcher(Loader loader, int minRows, int maxRows, long initialLatencyMillis,
+                     final int maxPrefetched) {
+        this.loader = loader;
+        this.minRows = minRows;
+        this.maxRows = maxRows;
+        latencyMillis = initialLatencyMillis;
+        depthRows = minRows;
+        prefetched = new LinkedHashMap<Integer, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Boolean> eldest) {
+                return size() > maxPrefetched;
+            }
+        };
+    }
+
+    /**
+     * Create a prefetcher that decodes the posters with Picasso, at the size of the grid cells
+     */
+    static PosterPrefetcher create(final Context context) {
+        final ImageConfiguration imageConfiguration = ImageConfiguration.getInstance(context);
+        final PosterPrefetcher[] prefetcher = new PosterPrefetcher[1];
+        Loader loader = new Loader() {
+            @Override
+            public void load(Movie movie, final Prefetch prefetch) {
+                int width = imageConfiguration.getGridCellWidth();
+                ImageCache.loadGridPoster(MovieAdapter.formatPosterPath(context, movie, width),
+                        width)
+                        .priority(Picasso.Priority.LOW)
+                        .tag(prefetch)
+                        .fetch(new Callback() {
+                            @Override
+                            public void onSuccess() {
+                                prefetcher[0].onLoaded(prefetch, true,
+                                        SystemClock.uptimeMillis());
+                            }
+
+                            @Override
+                            public void onError(Exception e) {
+                                prefetcher[0].onLoaded(prefetch, false,
+                                        SystemClock.uptimeMillis());
+                            }
+                        });
+            }
+
+            @Override
+            public void cancel(Prefetch prefetch) {
+                Picasso.get().cancelTag(prefetch);
+            }
+        };
+        /* Remember a few screens of prefetched posters, the memory cache holds them */
+        prefetcher[0] = new PosterPrefetcher(loader, DEFAULT_MIN_ROWS, DEFAULT_MAX_ROWS,
+                DEFAULT_INITIAL_LATENCY_MILLIS, DEFAULT_MAX_ROWS * 8);
+        return prefetcher[0];
+    }
+
+    /**
+     * Report a scroll of the grid: the movies of the grid, the first and last adapter
+     * positions on screen, the scroll offset, the number of columns and the height of a row.
+     * Prefetches outside of the rows ahead of the viewport are cancelled, and the posters of
+     * the rows ahead that are not prefetched yet are loaded.
+     */
+    void onScroll(List<Movie> movies, int firstVisible, int lastVisible, int scrollY,
+                  int spanCount, int rowHeight, long now) {
+        measureSpeed(scrollY, now);
+        if (movies.isEmpty() || rowHeight <= 0 || spanCount <= 0 || firstVisible < 0) {
+            return;
+        }
+
+        /* Rows scrolled while a poster loads, plus the row that is about to appear */
+        double rowsPerLoad = speed * latencyMillis / rowHeight;
+        depthRows = Math.max(minRows, Math.min(maxRows, (int) Math.ceil(rowsPerLoad) + 1));
+        int count = depthRows * spanCount;
+        int start;
+        int end;
+        if (direction > 0) {
+            start = lastVisible + 1;
+            end = Math.min(movies.size() - 1, lastVisible + count);
+        } else {
+            start = Math.max(0, firstVisible - count);
+            end = firstVisible - 1;
+        }
+
+        /* Cancel the prefetches that are on screen now, or no longer ahead of the viewport */
+        Iterator<Prefetch> iterator = pending.values().iterator();
+        while (iterator.hasNext()) {
+            Prefetch prefetch = iterator.next();
+            if (prefetch.position < start || prefetch.position > end
+                    || prefetch.position >= movies.size()
+                    || movies.get(prefetch.position).getMovieId() != prefetch.movieId) {
+                iterator.remove();
+                cancelledCount++;
+                loader.cancel(prefetch);
+            }
+        }
+
+        /* Load the nearest rows first */
+        for (int i = 0; i <= end - start; i++) {
+            int position = direction > 0 ? start + i : end - i;
+            Movie movie = movies.get(position);
+            int movieId = movie.getMovieId();
+            if (movie.getMovieUrlPoster() == null || pending.containsKey(movieId)
+                    || prefetched.containsKey(movieId)) {
+                continue;
+            }
+            Prefetch prefetch = new Prefetch(movieId, position, now);
+            pending.put(movieId, prefetch);
+            startedCount++;
+            starting = prefetch;
+            loader.load(movie, prefetch);
+            starting = null;
+        }
+    }
+
+    /**
+     * Record the outcome of a prefetch and its latency. A poster found in the memory cache is
+     * reported from within load(), and its latency is left out of the estimate, which is
+     * the time to load a poster that is not in memory.
+     */
+    void onLoaded(Prefetch prefetch, boolean success, long now) {
+        if (pending.get(prefetch.movieId) != prefetch) {
+            /* Cancelled, the outcome is of no use */
+            return;
+        }
+        pending.remove(prefetch.movieId);
+        if (!success) {
+            failedCount++;
+            return;
+        }
+        loadedCount++;
+        prefetched.put(prefetch.movieId, Boolean.TRUE);
+        if (prefetch != starting && now > prefetch.startedAt) {
+            latencyMillis += SMOOTHING * ((now - prefetch.startedAt) - latencyMillis);
+        }
+    }
+
+    /**
+     * Cancel every prefetch, when the grid is no longer on screen or shows another list
+     */
+    void cancelAll() {
+        for (Prefetch prefetch : pending.values()) {
+            cancelledCount++;
+            loader.cancel(prefetch);
+        }
+        pending.clear();
+        lastScrollTime = 0;
+        speed = 0;
+    }
+
+    private void measureSpeed(int scrollY, long now) {
+        int distance = scrollY - lastScrollY;
+        if (lastScrollTime == 0 || now - lastScrollTime > SCROLL_GAP_MILLIS) {
+            speed = 0;
+        } else if (now > lastScrollTime) {
+            double sample = Math.abs(distance) / (double) (now - lastScrollTime);
+            speed += SMOOTHING * (sample - speed);
+        }
+        if (distance != 0) {
+            direction = distance > 0 ? 1 : -1;
+        }
+        lastScrollY = scrollY;
+        lastScrollTime = now;
+    }
+
+    /**
+     * Returns a snapshot of the prefetch counters
+     */
+    Stats getStats() {
+        return new Stats(startedCount, cancelledCount, loadedCount, failedCount, depthRows,
+                (long) latencyMillis, speed);
+    }
+
+    /**
+     * Prefetch counters: posters prefetched, cancelled and failed, the current depth in rows,
+     * the latency estimate and the scroll speed in pixels per millisecond
+     */
+    static final class Stats {
+
+        final long startedCount;
+        final long cancelledCount;
+        final long loadedCount;
+        final long failedCount;
+        final int depthRows;
+        final long latencyMillis;
+        final double speed;
+
+        Stats(long startedCount, long cancelledCount, long loadedCount, long failedCount,
+              int depthRows, long latencyMillis, double speed) {
+            this.startedCount = startedCount;
+            this.cancelledCount = cancelledCount;
+            this.loadedCount = loadedCount;
+            this.failedCount = failedCount;
+            this.depthRows = depthRows;
+            this.latencyMillis = latencyMillis;
+            this.speed = speed;
+        }
+
+        @Override
+        public String toString() {
+            return "started=" + startedCount + " cancelled=" + cancelledCount
+                    + " loaded=" + loadedCount + " failed=" + failedCount
+                    + " depthRows=" + depthRows + " latencyMs=" + latencyMillis
+                    + " speed=" + String.format(Locale.US, "%.2f", speed) + "px/ms";
+        }
+    }
+}
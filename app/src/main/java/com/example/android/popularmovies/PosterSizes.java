@@ -0,0 +1,117 @@
+package com.example.android.popularmovies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The poster sizes The MovieDB serves, as listed by its /configuration endpoint, and the
+ * choice of the smallest one that covers a given width in pixels.
+ */
+final class PosterSizes {
+
+    /**
+     * Size of the poster as it was uploaded, of unknown width
+     */
+    static final String ORIGINAL = "original";
+
+    /**
+     * Width that picks the smallest size
+     */
+    static final int SMALLEST = 0;
+
+    /**
+     * The sizes of the images of The MovieDB at the time of writing, used until the
+     * configuration has been downloaded
+     */
+    static final PosterSizes DEFAULT = new PosterSizes("https://image.tmdb.org/t/p/",
+            Arrays.asList("w92", "w154", "w185", "w342", "w500", "w780", ORIGINAL));
+
+    /**
+     * Base URL of the images, the size and the poster path are appended to it
+     */
+    final String baseUrl;
+
+    /**
+     * The sizes as listed by the configuration
+     */
+    private final List<String> sizes;
+
+    /**
+     * Widths of the "w" sizes in increasing order, and their names
+     */
+    private final int[] widths;
+    private final String[] widthSizes;
+
+    private final boolean hasOriginal;
+
+    PosterSizes(String baseUrl, List<String> sizes) {
+        this.baseUrl = baseUrl;
+        this.sizes = Collections.unmodifiableList(new ArrayList<>(sizes));
+        List<String> sortedSizes = new ArrayList<>();
+        boolean original = false;
+        for (String size : sizes) {
+            if (size.equals(ORIGINAL)) {
+                original = true;
+            } else if (widthOf(size) > 0) {
+                sortedSizes.add(size);
+            }
+        }
+        Collections.sort(sortedSizes, new Comparator<String>() {
+            @Override
+            public int compare(String first, String second) {
+                return widthOf(first) - widthOf(second);
+            }
+        });
+        widths = new int[sortedSizes.size()];
+        widthSizes = sortedSizes.toArray(new String[sortedSizes.size()]);
+        for (int i = 0; i < widthSizes.length; i++) {
+            widths[i] = widthOf(widthSizes[i]);
+        }
+        hasOriginal = original;
+    }
+
+    List<String> getSizes() {
+        return sizes;
+    }
+
+    /**
+     * Returns the smallest size at least as wide as the given width, so the poster is never
+     * scaled up. Wider than every size, the original is used if there is one, and the widest
+     * size if not.
+     */
+    String sizeFor(int width) {
+        if (widths.length == 0) {
+            return hasOriginal ? ORIGINAL : DEFAULT.sizeFor(width);
+        }
+        for (int i = 0; i < widths.length; i++) {
+            if (widths[i] >= width) {
+                return widthSizes[i];
+            }
+        }
+        return hasOriginal ? ORIGINAL : widthSizes[widthSizes.length - 1];
+    }
+
+    /**
+     * Returns the URL of the poster at the smallest size that covers the given width
+     */
+    String urlFor(String posterPath, int width) {
+        return baseUrl + sizeFor(width) + posterPath;
+    }
+
+    /**
+     * Returns the width of a "w" size such as w185, or 0 for other sizes
+     */
+    private static int widthOf(String size) {
+        if (size.length() < 2 || size.charAt(0) != 'w') {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(size.substring(1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.android.popularmovies;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.widget.ImageView;
+
+import com.squareup.picasso.Callback;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
+import com.squareup.picasso.Target;
+
+/**
+ * Loads a poster into an ImageView in two steps: a placeholder right away, and the poster at
+ * its full size when it arrives. The placeholder is a bitmap already in memory, such as the
+ * grid thumbnail of the movie, or else the smallest size of the poster, which is a fraction of
+ * the bytes and is requested at a higher priority than the poster.
+ * <p>
+ * The bitmap on screen is reported to the ImageCache, so the bitmap pool does not decode into
+ * it while it is drawn. Owned by a ViewHolder or an Activity, and used on the main thread.
+ */
+final class ProgressivePoster implements Callback, Target {
+
+    private final ImageView imageView;
+
+    /**
+     * The bitmap of the ImageCache on screen
+     */
+    private Bitmap shownPoster;
+
+    /**
+     * True once the poster at its full size is on screen
+     */
+    private boolean loaded;
+
+    ProgressivePoster(ImageView imageView) {
+        this.imageView = imageView;
+    }
+
+    /**
+     * Load the poster, showing the smallest size of it until then. The preview is skipped
+     * when the poster is in the memory cache.
+     */
+    void load(RequestCreator poster, Uri previewUri) {
+        if (!loadPoster(poster) && previewUri != null) {
+            loadPreview(previewUri);
+        }
+    }
+
+    /**
+     * Load the poster, and return true if it was in the memory cache and is on screen already.
+     * Otherwise a preview can be shown with loadPreview() until it arrives.
+     */
+    boolean loadPoster(RequestCreator poster) {
+        start();
+        poster.into(imageView, this);
+        return loaded;
+    }
+
+    /**
+     * Show the smallest size of the poster until the poster arrives
+     */
+    void loadPreview(Uri previewUri) {
+        Picasso.get()
+                .load(previewUri)
+                .config(Bitmap.Config.RGB_565)
+                .priority(Picasso.Priority.HIGH)
+                .into(this);
+    }
+
+    /**
+     * Load the poster, showing the given bitmap of the memory cache until then
+     */
+    void load(RequestCreator poster, Bitmap placeholder) {
+        start();
+        setShownPoster(placeholder);
+        /* The placeholder is the same picture, so the poster replaces it without a fade */
+        poster.placeholder(new BitmapDrawable(imageView.getResources(), placeholder))
+                .noFade()
+                .into(imageView, this);
+    }
+
+    /**
+     * Cancel the loads and clear the ImageView, which lets go of its bitmap
+     */
+    void clear() {
+        start();
+        imageView.setImageDrawable(null);
+    }
+
+    private void start() {
+        Picasso picasso = Picasso.get();
+        picasso.cancelRequest(this);
+        picasso.cancelRequest(imageView);
+        loaded = false;
+        setShownPoster(null);
+    }
+
+    @Override
+    public void onSuccess() {
+        loaded = true;
+        Picasso.get().cancelRequest(this);
+        Drawable drawable = imageView.getDrawable();
+        setShownPoster(drawable instanceof BitmapDrawable
+                ? ((BitmapDrawable) drawable).getBitmap() : null);
+    }
+
+    @Override
+    public void onError(Exception e) {
+        /* The placeholder stays on screen, and so stays reported */
+    }
+
+    @Override
+    public void onBitmapLoaded(Bitmap bitmap, Picasso.LoadedFrom from) {
+        /* The preview is decoded by Picasso apart from the pool, so it is never reused */
+        if (!loaded) {
+            imageView.setImageBitmap(bitmap);
+        }
+    }
+
+    @Override
+    public void onBitmapFailed(Exception e, Drawable errorDrawable) {
+        /* The poster is still on its way */
+    }
+
+    @Override
+    public void onPrepareLoad(Drawable placeHolderDrawable) {
+        /* The ImageView was cleared by the poster request */
+    }
+
+    private void setShownPoster(Bitmap bitmap) {
+        ImageCache imageCache = ImageCache.getInstance();
+        if (imageCache != null && shownPoster != null) {
+            imageCache.onPosterHidden(shownPoster);
+        }
+        shownPoster = bitmap;
+        if (imageCache != null && shownPoster != null) {
+            imageCache.onPosterShown(shownPoster);
+        }
+    }
+}
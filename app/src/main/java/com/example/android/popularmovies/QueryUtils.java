@@ -1,16 +1,14 @@
 package com.example.android.popularmovies;
 
 import android.net.Uri;
+import android.support.annotation.VisibleForTesting;
 import android.util.Log;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.charset.Charset;
 
 /**
  * Helper methods related to requesting and receiving movie data from The MovieDB.
@@ -22,6 +20,16 @@ final class QueryUtils {
      */
     private static final String BASE_URL = "https://api.themoviedb.org/3/movie/";
 
+    /**
+     * Base URL the movie URLs are built on, replaced by the benchmarks with a local server
+     */
+    private static String baseUrl = BASE_URL;
+
+    /**
+     * URL of the configuration of The MovieDB, which lists the image sizes
+     */
+    private static final String CONFIGURATION_URL = "https://api.themoviedb.org/3/configuration";
+
     /**
      * URL for the trailers from The MovieDB
      */
@@ -32,11 +40,32 @@ final class QueryUtils {
      */
     static final String REVIEW_QUERY = "reviews";
 
+    /**
+     * Sections appended to the movie details request, so trailers and reviews come in the
+     * same response
+     */
+    static final String DETAILS_APPENDED_QUERIES = TRAILER_QUERY + "," + REVIEW_QUERY;
+
     /**
      * Tag for the log messages
      */
     private static final String TAG = QueryUtils.class.getSimpleName();
 
+    /**
+     * Shares one in-flight request between the callers of the same URL
+     */
+    private static final RequestCoalescer COALESCER = new RequestCoalescer();
+
+    /**
+     * Rate limits and retries every request that goes to the network
+     */
+    private static RequestScheduler scheduler = new RequestScheduler();
+
+    /**
+     * Timings of every request, per endpoint
+     */
+    private static final RequestMetrics METRICS = new RequestMetrics();
+
     /**
      * Create a private constructor QueryUtils
      */
@@ -52,7 +81,7 @@ final class QueryUtils {
 
         URL url = null;
 
-        Uri baseUri = Uri.parse(BASE_URL);
+        Uri baseUri = Uri.parse(baseUrl);
 
         Uri.Builder uriBuilder = baseUri.buildUpon();
         uriBuilder.appendEncodedPath(movieId)
@@ -68,18 +97,76 @@ final class QueryUtils {
     }
 
     /**
-     * Create a URL for the most popular and top rated movies
+     * Create a URL for the given page of the reviews of a movie
+     */
+    static URL createReviewsUrl(String movieId, int page) {
+        /* API key and page parameters that will be appended to the URL */
+        String API_PARAM = "api_key";
+        String PAGE_PARAM = "page";
+
+        URL url = null;
+        Uri baseUri = Uri.parse(baseUrl);
+        Uri.Builder uriBuilder = baseUri.buildUpon();
+        uriBuilder.appendEncodedPath(movieId)
+                .appendEncodedPath(REVIEW_QUERY)
+                .appendQueryParameter(API_PARAM, MainActivity.apiKey)
+                .appendQueryParameter(PAGE_PARAM, String.valueOf(page))
+                .build();
+        try {
+            url = new URL(uriBuilder.toString());
+        } catch (MalformedURLException e) {
+            Log.e(TAG, "Problem building the URL", e);
+        }
+        return url;
+    }
+
+    /**
+     * Create a URL for the details of a movie, with its trailers and reviews appended
+     */
+    static URL createMovieDetailsUrl(String movieId) {
+        /* API key and append to response parameters that will be appended to the URL */
+        String API_PARAM = "api_key";
+        String APPEND_PARAM = "append_to_response";
+
+        URL url = null;
+
+        Uri baseUri = Uri.parse(baseUrl);
+
+        Uri.Builder uriBuilder = baseUri.buildUpon();
+        uriBuilder.appendEncodedPath(movieId)
+                .appendQueryParameter(API_PARAM, MainActivity.apiKey)
+                .appendQueryParameter(APPEND_PARAM, DETAILS_APPENDED_QUERIES)
+                .build();
+        try {
+            url = new URL(uriBuilder.toString());
+        } catch (MalformedURLException e) {
+            Log.e(TAG, "Problem building the URL", e);
+        }
+        return url;
+    }
+
+    /**
+     * Create a URL for the first page of the most popular and top rated movies
      */
     static URL createMovieUrl(String selectedOption) {
+        return createMovieUrl(selectedOption, 1);
+    }
 
-        /* API key parameter that will be appended to the URL */
+    /**
+     * Create a URL for the given page of the most popular and top rated movies
+     */
+    static URL createMovieUrl(String selectedOption, int page) {
+
+        /* API key and page parameters that will be appended to the URL */
         String API_PARAM = "api_key";
+        String PAGE_PARAM = "page";
 
         URL url = null;
-        Uri baseUri = Uri.parse(BASE_URL);
+        Uri baseUri = Uri.parse(baseUrl);
         Uri.Builder uriBuilder = baseUri.buildUpon();
         uriBuilder.appendEncodedPath(selectedOption)
                 .appendQueryParameter(API_PARAM, MainActivity.apiKey)
+                .appendQueryParameter(PAGE_PARAM, String.valueOf(page))
                 .build();
         try {
             url = new URL(uriBuilder.toString());
@@ -90,73 +177,265 @@ final class QueryUtils {
     }
 
     /**
-     * Make an HTTP request to the given URL and return a String as the response.
+     * Create a URL for the configuration of The MovieDB
      */
-    static String makeHttpRequest(URL url) throws IOException {
+    static URL createConfigurationUrl() {
+        /* API key parameter that will be appended to the URL */
+        String API_PARAM = "api_key";
 
-        /* Define the read time out, connect time out, success response code and request method */
-        int READ_TIME_OUT = 10000;
-        int CONNECT_TIME_OUT = 15000;
-        int SUCCESS_RESPONSE_CODE = 200;
+        URL url = null;
+        Uri.Builder uriBuilder = Uri.parse(CONFIGURATION_URL).buildUpon();
+        uriBuilder.appendQueryParameter(API_PARAM, MainActivity.apiKey)
+                .build();
+        try {
+            url = new URL(uriBuilder.toString());
+        } catch (MalformedURLException e) {
+            Log.e(TAG, "Problem building the URL", e);
+        }
+        return url;
+    }
 
-        String REQUEST_METHOD = "GET";
-        String jsonResponse = "";
+    /**
+     * Make an HTTP request to the given URL and parse the response body while it is streamed
+     * from the network or the cache. Returns null if the server answers with an error, and
+     * throws a RequestScheduler.UnavailableException if it kept failing and the request was
+     * given up.
+     * Concurrent calls for the same URL and parser share a single request and its result, which
+     * must therefore not be modified by the caller.
+     */
+    static <T> T fetch(URL url, ResponseParser<T> parser) throws IOException {
+        return fetch(url, parser, null);
+    }
 
+    /**
+     * Same as fetch(URL, ResponseParser), but the request can be cancelled through the handle,
+     * in which case an InterruptedIOException is thrown. The handle may be null.
+     */
+    static <T> T fetch(final URL url, final ResponseParser<T> parser, RequestHandle handle)
+            throws IOException {
         /* If the URL is null, then return early. */
         if (url == null) {
-            return jsonResponse;
+            return null;
+        }
+        return COALESCER.execute(url, parser, handle, new RequestCoalescer.Call<T>() {
+            @Override
+            public T execute(final RequestHandle networkHandle) throws IOException {
+                return scheduler.execute(networkHandle, new RequestScheduler.Call<T>() {
+                    @Override
+                    public T execute() throws IOException {
+                        return fetchNow(url, parser, networkHandle);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Returns the retry and throttle counters of the request scheduler
+     */
+    static RequestScheduler.Stats getSchedulerStats() {
+        return scheduler.getStats();
+    }
+
+    /**
+     * Replace the request scheduler, so tests can use short backoff delays
+     */
+    @VisibleForTesting
+    static void setRequestScheduler(RequestScheduler requestScheduler) {
+        scheduler = requestScheduler;
+    }
+
+    /**
+     * Returns the hit, miss and revalidation counters of the JsonResponseCache, or null if the
+     * cache is not installed
+     */
+    static JsonResponseCache.Stats getResponseCacheStats() {
+        JsonResponseCache cache = JsonResponseCache.getInstance();
+        return cache == null ? null : cache.getStats();
+    }
+
+    /**
+     * Returns the counters of the requests that were deduplicated by the coalescing layer
+     */
+    static RequestCoalescer.Stats getCoalescerStats() {
+        return COALESCER.getStats();
+    }
+
+    /**
+     * Point the movie URLs at another server, such as a local fake of The MovieDB
+     */
+    @VisibleForTesting
+    static void setBaseUrl(String url) {
+        baseUrl = url;
+    }
+
+    /**
+     * Returns the connect, first byte, download, parse and size histograms of the requests
+     */
+    static RequestMetrics getRequestMetrics() {
+        return METRICS;
+    }
+
+    /**
+     * Make the HTTP request of fetch(). A 429 or transient 5xx response is thrown as a
+     * RetryableResponseException for the scheduler to retry. The connection comes from the
+     * shared HttpTransport, so its socket and TLS session are reused by the following requests.
+     * If the JsonResponseCache is installed, fresh responses are served from disk and stale ones
+     * are revalidated with a conditional request.
+     * Every attempt is timed into the RequestMetrics.
+     */
+    private static <T> T fetchNow(URL url, ResponseParser<T> parser, RequestHandle handle)
+            throws IOException {
+        RequestMetrics.Timing timing = METRICS.start(url);
+        try {
+            return fetchNow(url, parser, handle, timing);
+        } finally {
+            METRICS.record(timing);
         }
+    }
+
+    private static <T> T fetchNow(URL url, ResponseParser<T> parser, RequestHandle handle,
+                                  RequestMetrics.Timing timing) throws IOException {
 
+        /* Define the success and not modified response codes */
+        int SUCCESS_RESPONSE_CODE = 200;
+        int NOT_MODIFIED_RESPONSE_CODE = 304;
+
+        T result = null;
+
+        /* Serve a fresh cached response without touching the network */
+        long startTime = System.currentTimeMillis();
+        JsonResponseCache cache = JsonResponseCache.getInstance();
+        JsonResponseCache.Entry cachedEntry = cache == null ? null : cache.get(url);
+        if (cachedEntry != null && cachedEntry.isFresh(startTime)) {
+            timing.source = RequestMetrics.Source.CACHE;
+            result = parseCached(cachedEntry, parser, timing);
+            if (result != null) {
+                timing.success = true;
+                cache.recordHit(cachedEntry, System.currentTimeMillis() - startTime);
+                return result;
+            }
+            cachedEntry = null;
+            timing.source = RequestMetrics.Source.NETWORK;
+        }
+
+        HttpTransport transport = HttpTransport.getInstance();
         HttpURLConnection urlConnection = null;
         InputStream inputStream = null;
+        JsonResponseCache.Editor editor = null;
+        RequestScheduler.RetryableResponseException retryable = null;
+        boolean reusable = false;
 
         try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(READ_TIME_OUT);
-            urlConnection.setConnectTimeout(CONNECT_TIME_OUT);
-            urlConnection.setRequestMethod(REQUEST_METHOD);
+            urlConnection = transport.openConnection(url);
+            /* Cancelling the handle disconnects the connection, failing a blocked read */
+            handle.attach(urlConnection);
+            if (cachedEntry != null) {
+                cachedEntry.addValidators(urlConnection);
+            }
+            long connectStart = System.nanoTime();
             urlConnection.connect();
+            long connectEnd = System.nanoTime();
+            timing.connectNanos = connectEnd - connectStart;
 
             /* If the request was successful (response code 200),
-             then read the input stream and parse the response. */
-            if (urlConnection.getResponseCode() == SUCCESS_RESPONSE_CODE) {
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
+             then parse the input stream while it is written to the cache. */
+            int responseCode = urlConnection.getResponseCode();
+            timing.firstByteNanos = System.nanoTime() - connectEnd;
+            if (responseCode == SUCCESS_RESPONSE_CODE) {
+                /* The reads of the network stream are timed as the download, the rest of the
+                time spent in the parser as the parse */
+                inputStream = timing.meter(urlConnection.getInputStream());
+                editor = cache == null ? null : cache.edit(url, urlConnection);
+                long parseStart = System.nanoTime();
+                if (editor == null) {
+                    result = parser.parse(inputStream);
+                    timing.parseNanos = System.nanoTime() - parseStart - timing.getReadNanos();
+                } else {
+                    InputStream teeStream = editor.tee(inputStream);
+                    result = parser.parse(teeStream);
+                    timing.parseNanos = System.nanoTime() - parseStart - timing.getReadNanos();
+                    editor.commit(teeStream);
+                    editor = null;
+                }
+                timing.success = true;
+                reusable = true;
+                if (cache != null) {
+                    cache.recordMiss(System.currentTimeMillis() - startTime);
+                }
+            } else if (responseCode == NOT_MODIFIED_RESPONSE_CODE && cachedEntry != null) {
+                /* The cached body is still valid, so it is served again */
+                reusable = true;
+                timing.source = RequestMetrics.Source.REVALIDATED;
+                cache.update(cachedEntry, urlConnection);
+                result = parseCached(cachedEntry, parser, timing);
+                timing.success = result != null;
+                cache.recordRevalidation(cachedEntry, System.currentTimeMillis() - startTime);
+            } else if (RequestScheduler.isRetryable(responseCode)) {
+                long retryAfterMillis = RequestScheduler.parseRetryAfter(
+                        urlConnection.getHeaderField("Retry-After"), System.currentTimeMillis());
+                retryable = new RequestScheduler.RetryableResponseException(responseCode,
+                        retryAfterMillis);
             } else {
-                Log.e(TAG, "Error response code: " + urlConnection.getResponseCode());
+                Log.e(TAG, "Error response code: " + responseCode);
+            }
+        } catch (IOException | RuntimeException e) {
+            /* Malformed JSON is reported by JsonReader as an IOException or an
+             * IllegalStateException */
+            if (!handle.isCancelled()) {
+                Log.e(TAG, "Problem retrieving the movie JSON results.", e);
             }
-        } catch (IOException e) {
-            Log.e(TAG, "Problem retrieving the movie JSON results.", e);
+            reusable = false;
         } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
+            handle.detach(urlConnection);
+            if (editor != null) {
+                editor.abort();
             }
-            if (inputStream != null) {
-                /* Closing the input stream could throw an IOException, which is why
-                 the makeHttpRequest(URL url) method signature specifies than an IOException
-                 could be thrown. */
-                inputStream.close();
+            /* Hand a fully read connection back to the pool instead of disconnecting it */
+            if (reusable) {
+                transport.release(urlConnection, inputStream);
+            } else {
+                transport.abort(urlConnection);
+                if (inputStream != null) {
+                    /* Closing the input stream could throw an IOException, which is why
+                     fetchNow() declares that it throws one. */
+                    inputStream.close();
+                }
             }
         }
-        return jsonResponse;
+        /* A cancelled request reports the cancellation rather than an empty result */
+        handle.throwIfCancelled();
+        if (retryable != null) {
+            throw retryable;
+        }
+        return result;
     }
 
     /**
-     * Convert the InputStream into a String which contains the whole JSON response from the server.
+     * Parse a cached body, dropping the entry if it can not be parsed
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
-        StringBuilder output = new StringBuilder();
-        if (inputStream != null) {
-            InputStreamReader inputStreamReader = new InputStreamReader(inputStream,
-                    Charset.forName("UTF-8"));
-            BufferedReader reader = new BufferedReader(inputStreamReader);
-            String line = reader.readLine();
-            while (line != null) {
-                output.append(line);
-                line = reader.readLine();
+    private static <T> T parseCached(JsonResponseCache.Entry cachedEntry,
+                                     ResponseParser<T> parser, RequestMetrics.Timing timing) {
+        JsonResponseCache cache = JsonResponseCache.getInstance();
+        InputStream inputStream = null;
+        try {
+            inputStream = timing.meter(cachedEntry.openBody());
+            long parseStart = System.nanoTime();
+            T result = parser.parse(inputStream);
+            timing.parseNanos = System.nanoTime() - parseStart - timing.getReadNanos();
+            return result;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Problem parsing the cached movie JSON results.", e);
+            cache.remove(cachedEntry.url);
+            return null;
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Problem closing the cached response", e);
+                }
             }
-            reader.close();
         }
-        return output.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,226 @@
+package com.example.android.popularmovies;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Single-flight layer in front of the network: callers that ask for the same URL with the same
+ * parser while a request is already in flight wait for that request and share its parsed
+ * result instead of downloading the same bytes again.
+ * Shared results must be treated as read-only by the callers: the pages and details the
+ * parsers return hold unmodifiable lists, but the Movie and Review objects in them are the
+ * same instances for every caller.
+ * A caller that cancels its handle stops waiting right away, and the shared request itself is
+ * cancelled once every caller waiting for it has cancelled.
+ */
+final class RequestCoalescer {
+
+    /**
+     * The request that is executed once for all the callers of a URL
+     */
+    interface Call<T> {
+        T execute(RequestHandle networkHandle) throws IOException;
+    }
+
+    /**
+     * Requests in flight, by URL and parser
+     */
+    private final Map<Key, InFlight<?>> inFlight = new HashMap<>();
+
+    private long executedCount;
+    private long deduplicatedCount;
+
+    /**
+     * Execute the call, or wait for the identical call that is already in flight.
+     * The caller handle may be null for a request that is never cancelled.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T execute(URL url, ResponseParser<T> parser, RequestHandle handle, Call<T> call)
+            throws IOException {
+        Key key = new Key(url.toString(), parser);
+        InFlight<T> flight;
+        boolean leader = false;
+        synchronized (inFlight) {
+            flight = (InFlight<T>) inFlight.get(key);
+            if (flight == null || flight.isAbandoned()) {
+                /* A request every caller gave up on is not joined, a new one is started */
+                flight = new InFlight<>(new RequestHandle());
+                inFlight.put(key, flight);
+                leader = true;
+                executedCount++;
+            } else {
+                deduplicatedCount++;
+            }
+            flight.join(handle);
+        }
+
+        if (leader) {
+            try {
+                flight.complete(call.execute(flight.networkHandle), null);
+            } catch (IOException | RuntimeException e) {
+                flight.complete(null, e);
+            } finally {
+                synchronized (inFlight) {
+                    if (inFlight.get(key) == flight) {
+                        inFlight.remove(key);
+                    }
+                }
+            }
+        }
+        return flight.await(handle);
+    }
+
+    /**
+     * Returns a snapshot of the coalescing counters
+     */
+    Stats getStats() {
+        synchronized (inFlight) {
+            return new Stats(executedCount, deduplicatedCount);
+        }
+    }
+
+    /**
+     * A request in flight, the callers waiting for it and, once it completes, its result or
+     * failure
+     */
+    private static final class InFlight<T> {
+
+        /**
+         * Handle of the network request shared by all the callers
+         */
+        final RequestHandle networkHandle;
+
+        private boolean completed;
+        private T result;
+        private Exception failure;
+        private int participants;
+        private int cancelledParticipants;
+
+        InFlight(RequestHandle networkHandle) {
+            this.networkHandle = networkHandle;
+        }
+
+        /**
+         * Add a caller to the request
+         */
+        void join(RequestHandle handle) {
+            synchronized (this) {
+                participants++;
+            }
+            if (handle != null) {
+                handle.addOnCancelListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        onParticipantCancelled();
+                    }
+                });
+            }
+        }
+
+        /**
+         * Returns true if every caller cancelled and the network request has been cancelled
+         */
+        synchronized boolean isAbandoned() {
+            return networkHandle.isCancelled();
+        }
+
+        synchronized void complete(T result, Exception failure) {
+            this.result = result;
+            this.failure = failure;
+            completed = true;
+            notifyAll();
+        }
+
+        T await(RequestHandle handle) throws IOException {
+            synchronized (this) {
+                while (!completed) {
+                    if (handle != null) {
+                        handle.throwIfCancelled();
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for " + this);
+                    }
+                }
+            }
+            if (handle != null) {
+                handle.throwIfCancelled();
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            return result;
+        }
+
+        /**
+         * Wake the caller that cancelled, and cancel the network request once nobody is left
+         * waiting for it
+         */
+        private void onParticipantCancelled() {
+            boolean abandoned;
+            synchronized (this) {
+                cancelledParticipants++;
+                abandoned = !completed && cancelledParticipants == participants;
+                notifyAll();
+            }
+            if (abandoned) {
+                networkHandle.cancel();
+            }
+        }
+    }
+
+    /**
+     * Requests are identical if they have the same URL and the same parser
+     */
+    private static final class Key {
+
+        private final String url;
+        private final ResponseParser<?> parser;
+
+        Key(String url, ResponseParser<?> parser) {
+            this.url = url;
+            this.parser = parser;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return url.equals(other.url) && parser == other.parser;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * url.hashCode() + System.identityHashCode(parser);
+        }
+    }
+
+    /**
+     * Coalescing counters: requests that went to the network and callers that shared the
+     * result of a request already in flight
+     */
+    static final class Stats {
+
+        final long executedCount;
+        final long deduplicatedCount;
+
+        Stats(long executedCount, long deduplicatedCount) {
+            this.executedCount = executedCount;
+            this.deduplicatedCount = deduplicatedCount;
+        }
+
+        @Override
+        public String toString() {
+            return "executed=" + executedCount + " deduplicated=" + deduplicatedCount;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.android.popularmovies;
+
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.OnLifecycleEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Group of the requests started by an Activity. The group observes the Activity lifecycle and
+ * cancels every request that is still running when the Activity is destroyed.
+ */
+class RequestGroup implements LifecycleObserver {
+
+    private final List<RequestHandle> handles = new ArrayList<>();
+
+    /**
+     * Create a handle for a new request of the group
+     */
+    synchronized RequestHandle newHandle() {
+        RequestHandle handle = new RequestHandle();
+        handles.add(handle);
+        return handle;
+    }
+
+    /**
+     * Remove a finished request from the group
+     */
+    synchronized void finish(RequestHandle handle) {
+        handles.remove(handle);
+    }
+
+    /**
+     * Cancel every request of the group
+     */
+    void cancelAll() {
+        List<RequestHandle> running;
+        synchronized (this) {
+            running = new ArrayList<>(handles);
+            handles.clear();
+        }
+        for (RequestHandle handle : running) {
+            handle.cancel();
+        }
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+    void onDestroy() {
+        cancelAll();
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.android.popularmovies;
+
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Handle of a request to The MovieDB that can be cancelled from any thread. Cancelling
+ * disconnects the connection the request is reading from, so a blocked socket read fails
+ * right away instead of downloading the rest of a response nobody is waiting for.
+ */
+final class RequestHandle {
+
+    /**
+     * Executor the connection is disconnected on, as closing a socket may touch the network
+     * and cancel() is usually called from the main thread
+     */
+    private final Executor abortExecutor;
+
+    private final List<Runnable> cancelListeners = new ArrayList<>();
+
+    private boolean cancelled;
+
+    /**
+     * Connection the request is currently reading from, null between attempts
+     */
+    private HttpURLConnection connection;
+
+    RequestHandle() {
+        this(AppExecutors.getExecutors().networkIO());
+    }
+
+    RequestHandle(Executor abortExecutor) {
+        this.abortExecutor = abortExecutor;
+    }
+
+    /**
+     * Cancel the request. Does nothing if the request is already cancelled.
+     */
+    void cancel() {
+        final HttpURLConnection activeConnection;
+        List<Runnable> listeners;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            activeConnection = connection;
+            connection = null;
+            listeners = new ArrayList<>(cancelListeners);
+            cancelListeners.clear();
+            /* Wake up a request waiting in sleep() */
+            notifyAll();
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+        if (activeConnection != null) {
+            abortExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    activeConnection.disconnect();
+                }
+            });
+        }
+    }
+
+    synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Throw an InterruptedIOException if the request has been cancelled
+     */
+    synchronized void throwIfCancelled() throws InterruptedIOException {
+        if (cancelled) {
+            throw new InterruptedIOException("Canceled");
+        }
+    }
+
+    /**
+     * Register the connection the request is about to read from
+     */
+    synchronized void attach(HttpURLConnection urlConnection) throws InterruptedIOException {
+        throwIfCancelled();
+        connection = urlConnection;
+    }
+
+    /**
+     * Forget the connection once the request is done with it
+     */
+    synchronized void detach(HttpURLConnection urlConnection) {
+        if (connection == urlConnection) {
+            connection = null;
+        }
+    }
+
+    /**
+     * Run the listener when the request is cancelled, or right away if it already is
+     */
+    void addOnCancelListener(Runnable listener) {
+        synchronized (this) {
+            if (!cancelled) {
+                cancelListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    /**
+     * Wait for the given time, returning early with an InterruptedIOException if the request
+     * is cancelled in the meantime
+     */
+    synchronized void sleep(long millis) throws InterruptedIOException {
+        long deadline = System.currentTimeMillis() + millis;
+        long remaining = millis;
+        while (!cancelled && remaining > 0) {
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting");
+            }
+            remaining = deadline - System.currentTimeMillis();
+        }
+        throwIfCancelled();
+    }
+}
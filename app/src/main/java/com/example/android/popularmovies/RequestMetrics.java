@@ -0,0 +1,202 @@
+package com.example.android.popularmovies;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory timings of the requests made by QueryUtils, per endpoint: connect time, time to
+ * first byte, download time, parse time and body size, each collected into a Histogram.
+ * The report can be dumped to compare builds.
+ */
+final class RequestMetrics {
+
+    /**
+     * Where the body of a request came from
+     */
+    enum Source {
+        NETWORK, CACHE, REVALIDATED
+    }
+
+    private final Map<String, EndpointMetrics> endpoints = new TreeMap<>();
+
+    /**
+     * Start timing a request to the given URL
+     */
+    Timing start(URL url) {
+        return new Timing(endpointOf(url));
+    }
+
+    /**
+     * Add a finished request to the histograms of its endpoint
+     */
+    void record(Timing timing) {
+        EndpointMetrics metrics;
+        synchronized (endpoints) {
+            metrics = endpoints.get(timing.endpoint);
+            if (metrics == null) {
+                metrics = new EndpointMetrics();
+                endpoints.put(timing.endpoint, metrics);
+            }
+        }
+        metrics.record(timing);
+    }
+
+    /**
+     * Returns a report of the histograms of every endpoint, durations in milliseconds
+     */
+    String dump() {
+        StringBuilder report = new StringBuilder();
+        synchronized (endpoints) {
+            for (Map.Entry<String, EndpointMetrics> entry : endpoints.entrySet()) {
+                report.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+            }
+        }
+        return report.toString();
+    }
+
+    /**
+     * Forget every recorded request
+     */
+    void reset() {
+        synchronized (endpoints) {
+            endpoints.clear();
+        }
+    }
+
+    /**
+     * The endpoint of a URL is its last path segment (popular, top_rated, videos, reviews),
+     * or "details" for the details of a movie, whose last segment is the movie ID
+     */
+    static String endpointOf(URL url) {
+        String path = url.getPath();
+        int end = path.endsWith("/") ? path.length() - 1 : path.length();
+        String segment = path.substring(path.lastIndexOf('/', end - 1) + 1, end);
+        if (segment.isEmpty()) {
+            return "other";
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return segment;
+            }
+        }
+        return "details";
+    }
+
+    /**
+     * The phases of a single request, filled in by QueryUtils while the request runs
+     */
+    static final class Timing {
+
+        final String endpoint;
+        Source source = Source.NETWORK;
+        boolean success;
+        long connectNanos;
+        long firstByteNanos;
+        long parseNanos;
+
+        /**
+         * Time spent blocked in reads of the body and bytes read, updated by the metered stream
+         */
+        private long readNanos;
+        private long bodyBytes;
+
+        private Timing(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        long getReadNanos() {
+            return readNanos;
+        }
+
+        /**
+         * Wrap a body stream so the time spent reading it and its size are recorded
+         */
+        InputStream meter(InputStream inputStream) {
+            return new FilterInputStream(inputStream) {
+                @Override
+                public int read() throws IOException {
+                    long start = System.nanoTime();
+                    int b = super.read();
+                    readNanos += System.nanoTime() - start;
+                    if (b != -1) {
+                        bodyBytes++;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int count) throws IOException {
+                    long start = System.nanoTime();
+                    int read = super.read(buffer, offset, count);
+                    readNanos += System.nanoTime() - start;
+                    if (read > 0) {
+                        bodyBytes += read;
+                    }
+                    return read;
+                }
+            };
+        }
+    }
+
+    /**
+     * Histograms of one endpoint. Connect, first byte and download times are only recorded
+     * for bodies that came from the network.
+     */
+    private static final class EndpointMetrics {
+
+        private final Histogram connect = new Histogram(Histogram.DURATION_BOUNDS_MICROS);
+        private final Histogram firstByte = new Histogram(Histogram.DURATION_BOUNDS_MICROS);
+        private final Histogram download = new Histogram(Histogram.DURATION_BOUNDS_MICROS);
+        private final Histogram parse = new Histogram(Histogram.DURATION_BOUNDS_MICROS);
+        private final Histogram size = new Histogram(Histogram.SIZE_BOUNDS_BYTES);
+
+        private long networkCount;
+        private long cacheCount;
+        private long revalidatedCount;
+        private long failureCount;
+
+        void record(Timing timing) {
+            synchronized (this) {
+                if (!timing.success) {
+                    failureCount++;
+                } else if (timing.source == Source.CACHE) {
+                    cacheCount++;
+                } else if (timing.source == Source.REVALIDATED) {
+                    revalidatedCount++;
+                } else {
+                    networkCount++;
+                }
+            }
+            /* A request that failed before it got a response has no connect or first byte time */
+            if (timing.connectNanos > 0) {
+                connect.record(timing.connectNanos / 1000);
+            }
+            if (timing.firstByteNanos > 0) {
+                firstByte.record(timing.firstByteNanos / 1000);
+            }
+            if (!timing.success) {
+                return;
+            }
+            if (timing.source == Source.NETWORK) {
+                download.record(timing.readNanos / 1000);
+            }
+            parse.record(timing.parseNanos / 1000);
+            size.record(timing.bodyBytes);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "network=" + networkCount + " cache=" + cacheCount
+                    + " revalidated=" + revalidatedCount + " failed=" + failureCount
+                    + "\n  connectMs " + connect.format(1000)
+                    + "\n  ttfbMs " + firstByte.format(1000)
+                    + "\n  downloadMs " + download.format(1000)
+                    + "\n  parseMs " + parse.format(1000)
+                    + "\n  bytes " + size.format(1);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.android.popularmovies;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Central scheduler in front of every request to The MovieDB. Requests take a token from a
+ * token bucket, so bursts of pagination and prefetching stay under the API rate limit, and
+ * responses with 429 or a transient 5xx status are retried with exponential backoff and jitter,
+ * honouring the Retry-After header when the server sends one. A request that is still failing
+ * after the last retry, or that the server asks to wait longer than the maximum backoff for,
+ * is given up with an UnavailableException.
+ */
+final class RequestScheduler {
+
+    /**
+     * The request executed by the scheduler, once per attempt
+     */
+    interface Call<T> {
+        T execute() throws IOException;
+    }
+
+    /**
+     * Thrown by a Call for a response that is worth retrying
+     */
+    static final class RetryableResponseException extends IOException {
+
+        final int responseCode;
+
+        /**
+         * Delay requested by the Retry-After header, -1 if there was none
+         */
+        final long retryAfterMillis;
+
+        RetryableResponseException(int responseCode, long retryAfterMillis) {
+            super("Retryable response code: " + responseCode);
+            this.responseCode = responseCode;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+    }
+
+    /**
+     * Thrown once a request is given up, so the callers can tell the service being unavailable
+     * from an empty result
+     */
+    static final class UnavailableException extends IOException {
+
+        final int responseCode;
+
+        UnavailableException(String message, RetryableResponseException cause) {
+            super(message, cause);
+            this.responseCode = cause.responseCode;
+        }
+    }
+
+    /* Defaults: 40 requests per 10 seconds, 3 retries, backoff from 500ms up to 8s */
+    private static final int DEFAULT_BUCKET_CAPACITY = 40;
+    private static final double DEFAULT_REFILL_PER_SECOND = 4;
+    private static final int DEFAULT_MAX_RETRIES = 3;
+    private static final long DEFAULT_BASE_BACKOFF_MILLIS = 500;
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = 8000;
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final int bucketCapacity;
+    private final double refillPerMillis;
+    private final int maxRetries;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Random random;
+
+    /**
+     * Tokens left in the bucket. A negative value means callers are queued for a token.
+     */
+    private double tokens;
+    private long lastRefillTime;
+
+    private long requestCount;
+    private long retryCount;
+    private long rateLimitedCount;
+    private long serverErrorCount;
+    private long failureCount;
+    private long throttledCount;
+    private long throttledMillis;
+
+    RequestScheduler() {
+        this(DEFAULT_BUCKET_CAPACITY, DEFAULT_REFILL_PER_SECOND, DEFAULT_MAX_RETRIES,
+                DEFAULT_BASE_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS, new Random());
+    }
+
+    RequestScheduler(int bucketCapacity, double refillPerSecond, int maxRetries,
+                     long baseBackoffMillis, long maxBackoffMillis, Random random) {
+        this.bucketCapacity = bucketCapacity;
+        this.refillPerMillis = refillPerSecond / 1000;
+        this.maxRetries = maxRetries;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.random = random;
+        tokens = bucketCapacity;
+        lastRefillTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Execute the call, retrying retryable responses. Throws an UnavailableException once the
+     * retries are exhausted, or if the Retry-After header asks for a delay longer than the
+     * maximum backoff, rather than blocking the thread for that long.
+     * Waiting for a token or a retry ends early if the handle is cancelled.
+     */
+    <T> T execute(RequestHandle handle, Call<T> call) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            acquireToken(handle);
+            handle.throwIfCancelled();
+            synchronized (this) {
+                requestCount++;
+            }
+            try {
+                return call.execute();
+            } catch (RetryableResponseException e) {
+                synchronized (this) {
+                    if (e.responseCode == TOO_MANY_REQUESTS) {
+                        rateLimitedCount++;
+                    } else {
+                        serverErrorCount++;
+                    }
+                    if (attempt >= maxRetries) {
+                        failureCount++;
+                        throw new UnavailableException(
+                                "Giving up after " + (attempt + 1) + " attempts", e);
+                    }
+                    if (e.retryAfterMillis > maxBackoffMillis) {
+                        failureCount++;
+                        throw new UnavailableException(
+                                "Retry-After of " + e.retryAfterMillis + "ms", e);
+                    }
+                    retryCount++;
+                }
+                handle.sleep(e.retryAfterMillis >= 0 ? e.retryAfterMillis
+                        : backoffMillis(attempt));
+            }
+        }
+    }
+
+    /**
+     * Returns true if a response with this code should be retried
+     */
+    static boolean isRetryable(int responseCode) {
+        return responseCode == TOO_MANY_REQUESTS || responseCode == 500 || responseCode == 502
+                || responseCode == 503 || responseCode == 504;
+    }
+
+    /**
+     * Parse the Retry-After header, given either in seconds or as an HTTP date.
+     * Returns -1 if the header is missing or can not be parsed.
+     */
+    static long parseRetryAfter(String header, long now) {
+        if (header == null) {
+            return -1;
+        }
+        try {
+            return Math.max(Long.parseLong(header.trim()) * 1000, 0);
+        } catch (NumberFormatException e) {
+            SimpleDateFormat httpDate = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz",
+                    Locale.US);
+            try {
+                Date date = httpDate.parse(header.trim());
+                return Math.max(date.getTime() - now, 0);
+            } catch (ParseException parseException) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Exponential backoff with full jitter: a random delay between 0 and base * 2^attempt,
+     * capped at the maximum backoff
+     */
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 20));
+        synchronized (this) {
+            return (long) (random.nextDouble() * ceiling);
+        }
+    }
+
+    /**
+     * Take a token from the bucket, waiting for the bucket to refill if it is empty
+     */
+    private void acquireToken(RequestHandle handle) throws IOException {
+        long waitMillis;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            tokens = Math.min(bucketCapacity, tokens + (now - lastRefillTime) * refillPerMillis);
+            lastRefillTime = now;
+            tokens -= 1;
+            if (tokens >= 0) {
+                return;
+            }
+            waitMillis = (long) Math.ceil(-tokens / refillPerMillis);
+            throttledCount++;
+            throttledMillis += waitMillis;
+        }
+        handle.sleep(waitMillis);
+    }
+
+    /**
+     * Returns a snapshot of the retry and throttle counters
+     */
+    synchronized Stats getStats() {
+        return new Stats(requestCount, retryCount, rateLimitedCount, serverErrorCount,
+                failureCount, throttledCount, throttledMillis);
+    }
+
+    /**
+     * Scheduler counters: attempts sent, retries, 429 and 5xx responses, requests given up,
+     * and how often and how long requests waited for the rate limiter
+     */
+    static final class Stats {
+
+        final long requestCount;
+        final long retryCount;
+        final long rateLimitedCount;
+        final long serverErrorCount;
+        final long failureCount;
+        final long throttledCount;
+        final long throttledMillis;
+
+        Stats(long requestCount, long retryCount, long rateLimitedCount, long serverErrorCount,
+              long failureCount, long throttledCount, long throttledMillis) {
+            this.requestCount = requestCount;
+            this.retryCount = retryCount;
+            this.rateLimitedCount = rateLimitedCount;
+            this.serverErrorCount = serverErrorCount;
+            this.failureCount = failureCount;
+            this.throttledCount = throttledCount;
+            this.throttledMillis = throttledMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "requests=" + requestCount + " retries=" + retryCount
+                    + " rateLimited=" + rateLimitedCount + " serverErrors=" + serverErrorCount
+                    + " failures=" + failureCount + " throttled=" + throttledCount
+                    + " throttledMs=" + throttledMillis;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.android.popularmovies;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Turns the body of a response from The MovieDB into a result object while it is being read
+ */
+interface ResponseParser<T> {
+
+    /**
+     * Parse the body. The stream is owned by the caller and must not be closed.
+     */
+    T parse(InputStream inputStream) throws IOException;
+}
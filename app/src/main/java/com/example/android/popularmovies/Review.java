@@ -3,8 +3,20 @@ package com.example.android.popularmovies;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+/**
+ * A review of a movie. The preview of its text, shown until the review is expanded, is cut
+ * when the review is parsed, so the review list never lays out the whole text to bind it.
+ */
 public class Review implements Parcelable {
 
+    /**
+     * Longest preview of the text, in characters and in lines
+     */
+    static final int PREVIEW_LENGTH = 300;
+    static final int PREVIEW_LINES = 4;
+
+    private static final String ELLIPSIS = "\u2026";
+
     /**
      * Author of the movie review
      */
@@ -20,16 +32,23 @@ public class Review implements Parcelable {
      */
     private String reviewUrl;
 
+    /**
+     * Beginning of the text, or the whole text if it is short
+     */
+    private String reviewPreview;
+
     Review(String reviewAuthor, String reviewText, String reviewUrl) {
         this.reviewAuthor = reviewAuthor;
         this.reviewText = reviewText;
         this.reviewUrl = reviewUrl;
+        reviewPreview = previewOf(reviewText);
     }
 
     private Review(Parcel in) {
         reviewAuthor = in.readString();
         reviewText = in.readString();
         reviewUrl = in.readString();
+        reviewPreview = previewOf(reviewText);
     }
 
     @Override
@@ -65,6 +84,21 @@ public class Review implements Parcelable {
         return reviewUrl;
     }
 
+    /**
+     * Returns the beginning of the text of the movie review, ending with an ellipsis if the
+     * text is longer
+     */
+    public String getReviewPreview() {
+        return reviewPreview;
+    }
+
+    /**
+     * Returns true if the preview is the whole text, so there is nothing to expand
+     */
+    public boolean isPreviewComplete() {
+        return reviewPreview == null || reviewPreview.equals(reviewText);
+    }
+
     /**
      * Sets the author of the movie review
      */
@@ -77,6 +111,7 @@ public class Review implements Parcelable {
      */
     void setReviewText(String reviewText) {
         this.reviewText = reviewText;
+        reviewPreview = previewOf(reviewText);
     }
 
     /**
@@ -86,6 +121,36 @@ public class Review implements Parcelable {
         this.reviewUrl = reviewUrl;
     }
 
+    /**
+     * Returns the text cut after PREVIEW_LENGTH characters or PREVIEW_LINES lines, at the end
+     * of a word, or the text itself if it is shorter
+     */
+    static String previewOf(String text) {
+        if (text == null) {
+            return null;
+        }
+        int end = Math.min(text.length(), PREVIEW_LENGTH);
+        int lines = 1;
+        boolean endOfLine = false;
+        for (int i = 0; i < end; i++) {
+            if (text.charAt(i) == '\n' && ++lines > PREVIEW_LINES) {
+                end = i;
+                endOfLine = true;
+                break;
+            }
+        }
+        if (end == text.length()) {
+            return text;
+        }
+        if (!endOfLine) {
+            int space = text.lastIndexOf(' ', end);
+            if (space > end / 2) {
+                end = space;
+            }
+        }
+        return text.substring(0, end).trim() + ELLIPSIS;
+    }
+
     /**
      * Creates and returns a new Review object, as well as a new Review Array
      */
@@ -0,0 +1,32 @@
+package com.example.android.popularmovies;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A ReviewPage object contains a single page of the /movie/{id}/reviews results
+ */
+class ReviewPage {
+
+    /**
+     * Number of the page, starting at 1
+     */
+    final int page;
+
+    /**
+     * Total number of pages of the reviews of the movie
+     */
+    final int totalPages;
+
+    /**
+     * Reviews on the page, which can not be modified as the page may be shared by the callers
+     * of a coalesced request
+     */
+    final List<Review> reviews;
+
+    ReviewPage(int page, int totalPages, List<Review> reviews) {
+        this.page = page;
+        this.totalPages = totalPages;
+        this.reviews = Collections.unmodifiableList(reviews);
+    }
+}
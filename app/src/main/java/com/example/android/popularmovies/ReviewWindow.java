@@ -0,0 +1,204 @@
+package com.example.android.popularmovies;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The reviews of a movie that are kept in memory: a window of consecutive pages of reviews
+ * that moves as the reviews are scrolled. The next page is requested when the last reviews of
+ * the window come into view, and the previous page when its first reviews do. Once the window
+ * holds its largest number of pages, the page at the other end is dropped, and only the numbers
+ * of the pages in the window are saved with the state of the screen.
+ */
+final class ReviewWindow {
+
+    /**
+     * The change to the list of reviews made by a page: the reviews removed first, at their
+     * positions before the change, and then the reviews inserted
+     */
+    static final class Change {
+
+        final int removeStart;
+        final int removeCount;
+        final int insertStart;
+        final int insertCount;
+
+        Change(int removeStart, int removeCount, int insertStart, int insertCount) {
+            this.removeStart = removeStart;
+            this.removeCount = removeCount;
+            this.insertStart = insertStart;
+            this.insertCount = insertCount;
+        }
+    }
+
+    private final int maxPages;
+    private final int prefetchReviews;
+
+    /**
+     * Reviews of the pages in the window, which the adapter shows
+     */
+    private final List<Review> reviews = new ArrayList<>();
+
+    /**
+     * Number of reviews of every page in the window, from the first page
+     */
+    private final Deque<Integer> pageSizes = new ArrayDeque<>();
+
+    /**
+     * First page in the window, or 0 if no page is loaded
+     */
+    private int firstPage;
+    private int totalPages;
+
+    /**
+     * Page that is being loaded, or 0
+     */
+    private int pageInFlight;
+
+    /**
+     * Pages of a restored window, which are loaded again before the window moves
+     */
+    private int restoredFirstPage;
+    private int restoredLastPage;
+
+    /**
+     * @param maxPages        largest number of pages kept in memory
+     * @param prefetchReviews number of reviews from an end of the window at which the next
+     *                        page on that side is requested
+     */
+    ReviewWindow(int maxPages, int prefetchReviews) {
+        this.maxPages = Math.max(maxPages, 2);
+        this.prefetchReviews = prefetchReviews;
+    }
+
+    /**
+     * Returns the reviews in the window. The list is changed in place as pages are loaded.
+     */
+    List<Review> getReviews() {
+        return reviews;
+    }
+
+    int getTotalPages() {
+        return totalPages;
+    }
+
+    /**
+     * Returns the first page to save, which is also the one of a restored window that is not
+     * loaded yet
+     */
+    int getFirstPage() {
+        return firstPage != 0 ? firstPage : restoredFirstPage;
+    }
+
+    /**
+     * Returns the last page to save
+     */
+    int getLastPage() {
+        return Math.max(getLoadedLastPage(), restoredLastPage);
+    }
+
+    private int getLoadedLastPage() {
+        return firstPage == 0 ? 0 : firstPage + pageSizes.size() - 1;
+    }
+
+    /**
+     * Restore the pages saved with the state of the screen. Their reviews were not saved, so
+     * they are loaded again, from the first page of the window.
+     */
+    void restore(int firstPage, int lastPage, int totalPages) {
+        this.totalPages = totalPages;
+        if (firstPage > 0 && lastPage >= firstPage) {
+            restoredFirstPage = firstPage;
+            restoredLastPage = Math.min(lastPage, firstPage + maxPages - 1);
+        }
+    }
+
+    /**
+     * Returns the page to load for the reviews on screen, from the first to the last visible
+     * position, or -1 for both if no review is visible. Returns 0 if there is no page to load,
+     * or if a page is already being loaded. The page returned is expected until it is loaded
+     * or failed.
+     */
+    int pageToLoad(int firstVisible, int lastVisible) {
+        if (pageInFlight != 0) {
+            return 0;
+        }
+        int lastPage = getLoadedLastPage();
+        int page = 0;
+        if (firstPage == 0) {
+            /* The first page of a new screen comes with the details of the movie */
+            page = restoredFirstPage;
+        } else if (lastPage < restoredLastPage) {
+            page = lastPage + 1;
+        } else if (lastVisible >= 0 && lastVisible >= reviews.size() - prefetchReviews
+                && lastPage < totalPages) {
+            page = lastPage + 1;
+        } else if (firstVisible >= 0 && firstVisible < prefetchReviews && firstPage > 1) {
+            page = firstPage - 1;
+        }
+        pageInFlight = page;
+        return page;
+    }
+
+    /**
+     * Let the page be requested again
+     */
+    void onPageFailed(int page) {
+        if (page == pageInFlight) {
+            pageInFlight = 0;
+        }
+    }
+
+    /**
+     * Add the page next to the ones in the window, and drop the page at the other end if the
+     * window is full. The first page of an empty window may be given without being requested.
+     * Returns the change to the list of reviews, or null if the page is not the one expected.
+     */
+    Change onPageLoaded(ReviewPage page) {
+        boolean expected = page.page == pageInFlight
+                || (pageInFlight == 0 && firstPage == 0 && restoredFirstPage == 0);
+        if (!expected) {
+            return null;
+        }
+        pageInFlight = 0;
+        totalPages = page.totalPages;
+        int size = page.reviews.size();
+        Change change;
+        if (firstPage == 0) {
+            firstPage = page.page;
+            restoredFirstPage = 0;
+            reviews.addAll(page.reviews);
+            pageSizes.addLast(size);
+            change = new Change(0, 0, 0, size);
+        } else if (page.page == getLoadedLastPage() + 1) {
+            reviews.addAll(page.reviews);
+            pageSizes.addLast(size);
+            int removeCount = 0;
+            if (pageSizes.size() > maxPages) {
+                removeCount = pageSizes.removeFirst();
+                reviews.subList(0, removeCount).clear();
+                firstPage++;
+            }
+            change = new Change(0, removeCount, reviews.size() - size, size);
+        } else if (page.page == firstPage - 1) {
+            int oldSize = reviews.size();
+            reviews.addAll(0, page.reviews);
+            pageSizes.addFirst(size);
+            firstPage--;
+            int removeCount = 0;
+            if (pageSizes.size() > maxPages) {
+                removeCount = pageSizes.removeLast();
+                reviews.subList(reviews.size() - removeCount, reviews.size()).clear();
+            }
+            change = new Change(oldSize - removeCount, removeCount, 0, size);
+        } else {
+            return null;
+        }
+        if (getLoadedLastPage() >= restoredLastPage) {
+            restoredLastPage = 0;
+        }
+        return change;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.android.popularmovies;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Decodes the posters of the grid at the width of a cell. Posters have no transparency, so they
+ * are decoded in RGB_565 at half the memory of ARGB_8888, and into a bitmap of the BitmapPool
+ * when one is large enough. The scaling to the cell is done by the decoder, so a thumbnail
+ * costs a single bitmap.
+ */
+final class ThumbnailDecoder {
+
+    private ThumbnailDecoder() {
+    }
+
+    /**
+     * Decode the poster file at the given width in pixels, or at its own width if it is
+     * narrower
+     */
+    static Bitmap decode(File file, int width, BitmapPool pool) throws IOException {
+        String path = file.getPath();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Problem decoding the size of the poster " + path);
+        }
+
+        /* Subsample by the largest power of two that keeps the poster as wide as the cell,
+        then scale the rest of the way while decoding */
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= width) {
+            sampleSize *= 2;
+        }
+        int sampledWidth = options.outWidth / sampleSize;
+        int sampledHeight = options.outHeight / sampleSize;
+        int decodedWidth = sampledWidth;
+        int decodedHeight = sampledHeight;
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        options.inMutable = true;
+        if (sampledWidth > width) {
+            options.inScaled = true;
+            options.inDensity = sampledWidth;
+            options.inTargetDensity = width;
+            decodedWidth = width;
+            decodedHeight = (int) Math.ceil((double) sampledHeight * width / sampledWidth);
+        } else {
+            options.inScaled = false;
+        }
+
+        /* A pixel of rounding on either side of the estimate */
+        options.inBitmap = pool.get((decodedWidth + 1) * (decodedHeight + 1) * 2);
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            /* The pooled bitmap does not fit the poster after all */
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeFile(path, options);
+        }
+        if (bitmap == null) {
+            throw new IOException("Problem decoding the poster " + path);
+        }
+        /* The density only served the scaling, the ImageView draws the bitmap at its size */
+        bitmap.setDensity(Bitmap.DENSITY_NONE);
+        return bitmap;
+    }
+}
@@ -3,7 +3,10 @@ package com.example.android.popularmovies.adapters;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.Build;
 import android.support.annotation.NonNull;
+import android.support.v4.text.PrecomputedTextCompat;
+import android.support.v4.widget.TextViewCompat;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -14,11 +17,22 @@ import android.widget.TextView;
 import com.example.android.popularmovies.R;
 import com.example.android.popularmovies.Review;
 
+import java.util.Collections;
 import java.util.List;
-
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * A ReviewAdapter shows the preview of every review, and the whole text of the reviews the
+ * user expands by tapping them. The texts are laid out off the main thread: the previews when
+ * the reviews are parsed, and the whole text when the review is expanded. The laid-out texts
+ * and which reviews are expanded are state of this list, kept here rather than on the reviews,
+ * which are parcelled and may be shared with the DetailPrefetcher.
+ */
 public class ReviewAdapter extends RecyclerView.Adapter<ReviewAdapter.ViewHolder> {
 
-    class ViewHolder extends RecyclerView.ViewHolder {
+    class ViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
 
         /**
          * TextView displaying the the text of the review
@@ -35,11 +49,36 @@ public class ReviewAdapter extends RecyclerView.Adapter<ReviewAdapter.ViewHolder
          */
         final Button fullReviewButton;
 
+        /**
+         * The review bound to the ViewHolder, whose Uri is only parsed when it is opened
+         */
+        private Review review;
+
         ViewHolder(@NonNull View itemView) {
             super(itemView);
             reviewTextView = itemView.findViewById(R.id.review_text_view);
             reviewAuthorTextView = itemView.findViewById(R.id.review_author_text_view);
             fullReviewButton = itemView.findViewById(R.id.full_review_button);
+            fullReviewButton.setOnClickListener(this);
+            reviewTextView.setOnClickListener(this);
+        }
+
+        /**
+         * A click on the text expands or collapses the review. When the user clicks on the
+         * fullReviewButton, a new intent is created and started to open the full review.
+         */
+        @Override
+        public void onClick(View v) {
+            if (review == null) {
+                return;
+            }
+            if (v == reviewTextView) {
+                toggle(review);
+                return;
+            }
+            Intent openFullReviewIntent = new Intent(Intent.ACTION_VIEW);
+            openFullReviewIntent.setData(Uri.parse(review.getReviewUrl()));
+            v.getContext().startActivity(openFullReviewIntent);
         }
     }
 
@@ -48,8 +87,60 @@ public class ReviewAdapter extends RecyclerView.Adapter<ReviewAdapter.ViewHolder
      */
     private final List<Review> reviews;
 
-    public ReviewAdapter(List<Review> reviews) {
+    /**
+     * The text metrics of the review TextView, or null to lay out the texts on the main thread
+     */
+    private final PrecomputedTextCompat.Params textParams;
+
+    /**
+     * Lays out the whole text of an expanded review, and binds it on the main thread
+     */
+    private final Executor layoutExecutor;
+    private final Executor mainExecutor;
+
+    /**
+     * The previews laid out on the thread that parsed the reviews, and the whole texts of the
+     * expanded reviews, which are only touched on the main thread. Review does not override
+     * equals, so the reviews are keyed by identity, and the reviews dropped from the list
+     * are dropped from the maps once they are collected.
+     */
+    private final Map<Review, CharSequence> previewLayouts =
+            Collections.synchronizedMap(new WeakHashMap<Review, CharSequence>());
+    private final Map<Review, CharSequence> expandedLayouts = new WeakHashMap<>();
+
+    public ReviewAdapter(List<Review> reviews, PrecomputedTextCompat.Params textParams,
+                         Executor layoutExecutor, Executor mainExecutor) {
         this.reviews = reviews;
+        this.textParams = textParams;
+        this.layoutExecutor = layoutExecutor;
+        this.mainExecutor = mainExecutor;
+    }
+
+    /**
+     * Returns the text metrics of the TextView of a review, to lay out the texts for it
+     */
+    public static PrecomputedTextCompat.Params getTextParams(ViewGroup parent) {
+        View reviewView = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.review_list_item, parent, false);
+        TextView reviewTextView = reviewView.findViewById(R.id.review_text_view);
+        return TextViewCompat.getTextMetricsParams(reviewTextView);
+    }
+
+    /**
+     * Lay out the previews of the reviews, on the thread that parsed them. Before Pie a
+     * PrecomputedTextCompat is copied by every setText, and the previews are short, so they
+     * are bound as they are.
+     */
+    public void precomputePreviews(List<Review> reviews) {
+        if (textParams == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.P) {
+            return;
+        }
+        for (Review review : reviews) {
+            String preview = review.getReviewPreview();
+            if (preview != null && !previewLayouts.containsKey(review)) {
+                previewLayouts.put(review, PrecomputedTextCompat.create(preview, textParams));
+            }
+        }
     }
 
     @NonNull
@@ -61,32 +152,24 @@ public class ReviewAdapter extends RecyclerView.Adapter<ReviewAdapter.ViewHolder
         return new ViewHolder(reviewView);
     }
 
+    /**
+     * Binds the preview of the review, or the whole text once it is expanded and laid out,
+     * which allocates nothing: the ViewHolder listens to its views itself
+     */
     @Override
     public void onBindViewHolder(@NonNull ReviewAdapter.ViewHolder viewHolder, int position) {
         Review review = reviews.get(position);
-        TextView reviewTextView = viewHolder.reviewTextView;
-        TextView reviewAuthorTextView = viewHolder.reviewAuthorTextView;
-        Button fullReviewButton = viewHolder.fullReviewButton;
-
-        final Context context = fullReviewButton.getContext();
-
-        reviewTextView.setText(review.getReviewText());
-        reviewAuthorTextView.setText(review.getReviewAuthor());
-
-        String reviewUrl = review.getReviewUrl();
-        final Uri reviewUri = Uri.parse(reviewUrl);
-
-        /* Set an onClickListener to the fullReviewButton.*/
-        fullReviewButton.setOnClickListener(new View.OnClickListener() {
-            @Override
-             /* When the user clicks on the fullReviewButton, a new intent is created and started to
-                 open the full review */
-            public void onClick(View v) {
-                Intent openFullReviewIntent = new Intent(Intent.ACTION_VIEW);
-                openFullReviewIntent.setData(reviewUri);
-                context.startActivity(openFullReviewIntent);
-            }
-        });
+        viewHolder.review = review;
+        CharSequence text = expandedLayouts.get(review);
+        if (text == null) {
+            text = previewLayouts.get(review);
+        }
+        if (text == null) {
+            viewHolder.reviewTextView.setText(review.getReviewPreview());
+        } else {
+            setLaidOutText(viewHolder.reviewTextView, text);
+        }
+        viewHolder.reviewAuthorTextView.setText(review.getReviewAuthor());
     }
 
     /**
@@ -100,4 +183,52 @@ public class ReviewAdapter extends RecyclerView.Adapter<ReviewAdapter.ViewHolder
             return reviews.size();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Collapse an expanded review, or lay out its whole text on the layout executor and show
+     * it when it is ready
+     */
+    private void toggle(final Review review) {
+        if (expandedLayouts.remove(review) != null) {
+            notifyReviewChanged(review);
+        } else if (!review.isPreviewComplete()) {
+            layoutExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final CharSequence text = textParams == null ? review.getReviewText()
+                            : PrecomputedTextCompat.create(review.getReviewText(), textParams);
+                    mainExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            expandedLayouts.put(review, text);
+                            notifyReviewChanged(review);
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    private void notifyReviewChanged(Review review) {
+        int position = reviews.indexOf(review);
+        if (position >= 0) {
+            notifyItemChanged(position);
+        }
+    }
+
+    /**
+     * Set a text laid out off the main thread, or set it as it is if the TextView does not
+     * have the metrics it was laid out for
+     */
+    private static void setLaidOutText(TextView textView, CharSequence text) {
+        if (text instanceof PrecomputedTextCompat) {
+            try {
+                TextViewCompat.setPrecomputedText(textView, (PrecomputedTextCompat) text);
+                return;
+            } catch (IllegalArgumentException e) {
+                /* The TextView is styled otherwise than the one the text was laid out for */
+            }
+        }
+        textView.setText(text);
+    }
+}
@@ -23,7 +23,12 @@ public class TrailerAdapter extends RecyclerView.Adapter<TrailerAdapter.ViewHold
      */
     private final List<Trailer> trailers;
 
-    class ViewHolder extends RecyclerView.ViewHolder {
+    /**
+     * Base URL of the trailers, the key of the video is appended to it
+     */
+    private static final String TRAILER_BASE_URL = "http://www.youtube.com/watch?v=";
+
+    class ViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
 
         /**
          * ImageButton for playing the trailer
@@ -35,10 +40,30 @@ public class TrailerAdapter extends RecyclerView.Adapter<TrailerAdapter.ViewHold
          */
         final TextView trailerNameTextView;
 
+        /**
+         * The trailer bound to the ViewHolder, whose Uri is only built when it is played
+         */
+        private Trailer trailer;
+
         ViewHolder(@NonNull View itemView) {
             super(itemView);
             playTrailerButton = itemView.findViewById(R.id.play_trailer_button);
             trailerNameTextView = itemView.findViewById(R.id.trailer_name);
+            playTrailerButton.setOnClickListener(this);
+        }
+
+        /**
+         * When the playTrailerButton is clicked, a new intent to open the trailer is created
+         * and started
+         */
+        @Override
+        public void onClick(View v) {
+            if (trailer == null) {
+                return;
+            }
+            Intent playTrailerIntent = new Intent(Intent.ACTION_VIEW);
+            playTrailerIntent.setData(Uri.parse(TRAILER_BASE_URL + trailer.getTrailerUrlPath()));
+            v.getContext().startActivity(playTrailerIntent);
         }
     }
 
@@ -55,33 +80,15 @@ public class TrailerAdapter extends RecyclerView.Adapter<TrailerAdapter.ViewHold
         return new ViewHolder(trailerView);
     }
 
+    /**
+     * Binds the name of the trailer, which allocates nothing: the ViewHolder listens to its
+     * button itself
+     */
     @Override
     public void onBindViewHolder(@NonNull TrailerAdapter.ViewHolder viewHolder, int position) {
-
         Trailer trailer = trailers.get(position);
-        TextView trailerNameTextView = viewHolder.trailerNameTextView;
-        trailerNameTextView.setText(trailer.getTrailerName());
-
-        ImageButton playTrailerButton = viewHolder.playTrailerButton;
-
-        final Context context = playTrailerButton.getContext();
-
-        /* Get the trailer URL path and create a Uri */
-        String TRAILER_BASE_URL = "http://www.youtube.com/watch?v=";
-        String trailerUrlPath = trailer.getTrailerUrlPath();
-        final Uri trailerUri = Uri.parse(TRAILER_BASE_URL + trailerUrlPath);
-
-        /* Set an onClickListener to the playTrailerButton.*/
-        playTrailerButton.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                /* When the playTrailerButton is clicked, a new intent to open the trailers is
-                 * created and started*/
-                Intent playTrailerIntent = new Intent(Intent.ACTION_VIEW);
-                playTrailerIntent.setData(trailerUri);
-                context.startActivity(playTrailerIntent);
-            }
-        });
+        viewHolder.trailer = trailer;
+        viewHolder.trailerNameTextView.setText(trailer.getTrailerName());
     }
 
     /**
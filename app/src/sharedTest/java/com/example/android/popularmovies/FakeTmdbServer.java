@@ -0,0 +1,458 @@
+package com.example.android.popularmovies;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for The MovieDB API, shared by the local unit tests and the instrumented
+ * benchmarks. It serves the fixtures of the fixtures/ resources under the same paths as the
+ * real API, over HTTP/1.1 keep-alive connections, so the whole pipeline of QueryUtils runs
+ * against it with QueryUtils.setBaseUrl(server.getBaseUrl()).
+ * <p>
+ * The latency before the response headers, the bandwidth of the response bodies and the rate
+ * of error responses can be set at any time, and apply to the following requests. Every body
+ * is sent with an ETag, and a request whose If-None-Match matches it is answered with a 304.
+ */
+final class FakeTmdbServer {
+
+    private static final String FIXTURES = "/fixtures/";
+
+    private static final String MOVIE_PATH = "/3/movie/";
+
+    private static final String NO_STORE = "no-store";
+
+    /**
+     * Bodies are written in chunks of this size when the bandwidth is limited
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    private final byte[] popular;
+    private final byte[] topRated;
+    private final byte[] videos;
+    private final byte[] reviews;
+    private final String movieDetails;
+
+    private final ServerSocket serverSocket;
+    private final List<Socket> sockets = new ArrayList<>();
+
+    private volatile long latencyMillis;
+    private volatile long bytesPerSecond;
+    private volatile double errorRate;
+    private volatile int errorCode = 503;
+    private volatile String cacheControl = NO_STORE;
+
+    /**
+     * Seeded, so a run with error injection fails the same requests every time
+     */
+    private final Random random = new Random(0);
+    private int failNextCount;
+    private int failNextCode;
+
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger errorCount = new AtomicInteger();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final Map<String, AtomicInteger> pathCounts = new HashMap<>();
+
+    FakeTmdbServer() throws IOException {
+        popular = readFixture("popular.json");
+        topRated = readFixture("top_rated.json");
+        videos = readFixture("videos.json");
+        reviews = readFixture("reviews.json");
+        movieDetails = new String(readFixture("movie_details.json"), "UTF-8");
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+    }
+
+    /**
+     * Start accepting connections on a background thread
+     */
+    void start() {
+        Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        connectionCount.incrementAndGet();
+                        synchronized (sockets) {
+                            sockets.add(socket);
+                        }
+                        Thread connectionThread = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        }, "FakeTmdbServer-connection");
+                        connectionThread.setDaemon(true);
+                        connectionThread.start();
+                    } catch (IOException e) {
+                        /* The server socket was closed by shutdown() */
+                        return;
+                    }
+                }
+            }
+        }, "FakeTmdbServer-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Stop accepting connections and close the open ones
+     */
+    void shutdown() throws IOException {
+        serverSocket.close();
+        synchronized (sockets) {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            sockets.clear();
+        }
+    }
+
+    /**
+     * Returns the base URL of the movie endpoints, the equivalent of
+     * https://api.themoviedb.org/3/movie/
+     */
+    String getBaseUrl() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + MOVIE_PATH;
+    }
+
+    /**
+     * Delay before the response headers of every request, like the round trip and server time
+     * of a real network
+     */
+    void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Rate at which the response bodies are written, 0 for no limit
+     */
+    void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Share of the requests answered with the given error code instead of their fixture
+     */
+    void setErrorRate(double errorRate, int errorCode) {
+        this.errorRate = errorRate;
+        this.errorCode = errorCode;
+    }
+
+    /**
+     * Cache-Control header of the responses, no-store unless a test exercises the cache
+     */
+    void setCacheControl(String cacheControl) {
+        this.cacheControl = cacheControl;
+    }
+
+    /**
+     * Answer the next requests with the given error code, regardless of the error rate
+     */
+    synchronized void failNext(int count, int code) {
+        failNextCount = count;
+        failNextCode = code;
+    }
+
+    /**
+     * Returns the number of connections accepted, which is lower than the number of requests
+     * when the client reuses its keep-alive connections
+     */
+    int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    int getRequestCount() {
+        return requestCount.get();
+    }
+
+    int getErrorCount() {
+        return errorCount.get();
+    }
+
+    long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * Returns the number of requests received for the given path, such as "/3/movie/popular"
+     */
+    int getRequestCount(String path) {
+        synchronized (pathCounts) {
+            AtomicInteger count = pathCounts.get(path);
+            return count == null ? 0 : count.get();
+        }
+    }
+
+    /**
+     * Reset the counters, the latency, the bandwidth, the error injection and the
+     * Cache-Control header
+     */
+    synchronized void reset() {
+        latencyMillis = 0;
+        cacheControl = NO_STORE;
+        bytesPerSecond = 0;
+        errorRate = 0;
+        failNextCount = 0;
+        connectionCount.set(0);
+        requestCount.set(0);
+        errorCount.set(0);
+        bytesSent.set(0);
+        synchronized (pathCounts) {
+            pathCounts.clear();
+        }
+    }
+
+    /**
+     * Answer the requests of a connection until the client closes it
+     */
+    private void serve(Socket socket) {
+        try {
+            InputStream inputStream = socket.getInputStream();
+            OutputStream outputStream = socket.getOutputStream();
+            String requestLine;
+            while ((requestLine = readLine(inputStream)) != null) {
+                boolean close = false;
+                String ifNoneMatch = null;
+                String header;
+                while ((header = readLine(inputStream)) != null && !header.isEmpty()) {
+                    String name = header.toLowerCase(Locale.US);
+                    if (name.startsWith("connection:") && name.contains("close")) {
+                        close = true;
+                    } else if (name.startsWith("if-none-match:")) {
+                        ifNoneMatch = header.substring("if-none-match:".length()).trim();
+                    }
+                }
+                String[] parts = requestLine.split(" ");
+                if (parts.length < 2) {
+                    return;
+                }
+                respond(parts[1], ifNoneMatch, outputStream);
+                if (close) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            /* The client or shutdown() closed the connection */
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                /* Nothing left to release */
+            }
+            synchronized (sockets) {
+                sockets.remove(socket);
+            }
+        }
+    }
+
+    private void respond(String target, String ifNoneMatch, OutputStream outputStream)
+            throws IOException {
+        requestCount.incrementAndGet();
+        int queryStart = target.indexOf('?');
+        String path = queryStart < 0 ? target : target.substring(0, queryStart);
+        String query = queryStart < 0 ? "" : target.substring(queryStart + 1);
+        synchronized (pathCounts) {
+            AtomicInteger count = pathCounts.get(path);
+            if (count == null) {
+                count = new AtomicInteger();
+                pathCounts.put(path, count);
+            }
+            count.incrementAndGet();
+        }
+
+        sleep(latencyMillis);
+
+        int injectedCode = nextErrorCode();
+        byte[] body = injectedCode == 0 ? route(path, query) : null;
+        int code = injectedCode != 0 ? injectedCode : body == null ? 404 : 200;
+        if (code != 200) {
+            errorCount.incrementAndGet();
+            body = ("{\"status_code\":34,\"status_message\":\"Error " + code + "\"}")
+                    .getBytes("UTF-8");
+        }
+
+        String etag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+        if (code == 200 && etag.equals(ifNoneMatch)) {
+            /* The client has this body already */
+            code = 304;
+            body = new byte[0];
+        }
+
+        String headers = "HTTP/1.1 " + code + " " + (code == 200 ? "OK"
+                : code == 304 ? "Not Modified" : "Error") + "\r\n"
+                + "Content-Type: application/json;charset=utf-8\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "Cache-Control: " + cacheControl + "\r\n"
+                + "ETag: " + etag + "\r\n"
+                + "Connection: keep-alive\r\n\r\n";
+        outputStream.write(headers.getBytes("US-ASCII"));
+        writeBody(body, outputStream);
+        outputStream.flush();
+        bytesSent.addAndGet(body.length);
+    }
+
+    /**
+     * Returns the error code the next request is answered with, or 0 to answer normally
+     */
+    private synchronized int nextErrorCode() {
+        if (failNextCount > 0) {
+            failNextCount--;
+            return failNextCode;
+        }
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            return errorCode;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the body of the fixture served on the path, or null if there is none
+     */
+    private byte[] route(String path, String query) throws UnsupportedEncodingException {
+        if (!path.startsWith(MOVIE_PATH)) {
+            return null;
+        }
+        String[] segments = path.substring(MOVIE_PATH.length()).split("/");
+        if (segments.length == 1) {
+            switch (segments[0]) {
+                case "popular":
+                    return popular;
+                case "top_rated":
+                    return topRated;
+                default:
+                    return isMovieId(segments[0]) ? details(query) : null;
+            }
+        }
+        if (segments.length == 2 && isMovieId(segments[0])) {
+            switch (segments[1]) {
+                case "videos":
+                    return videos;
+                case "reviews":
+                    return reviews;
+                default:
+                    return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The details of a movie, with the videos and reviews appended if the query asks for them
+     */
+    private byte[] details(String query) throws UnsupportedEncodingException {
+        StringBuilder body = new StringBuilder(movieDetails);
+        /* Drop the closing brace of the details object to append the sections to it */
+        body.setLength(body.lastIndexOf("}"));
+        String append = "";
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("append_to_response=")) {
+                append = parameter.substring("append_to_response=".length())
+                        .replace("%2C", ",").replace("%2c", ",");
+            }
+        }
+        for (String section : append.split(",")) {
+            if (section.equals("videos")) {
+                body.append(",\"videos\":").append(new String(videos, "UTF-8"));
+            } else if (section.equals("reviews")) {
+                body.append(",\"reviews\":").append(new String(reviews, "UTF-8"));
+            }
+        }
+        return body.append('}').toString().getBytes("UTF-8");
+    }
+
+    /**
+     * Write the body at the configured bandwidth
+     */
+    private void writeBody(byte[] body, OutputStream outputStream) throws IOException {
+        long rate = bytesPerSecond;
+        if (rate <= 0) {
+            outputStream.write(body);
+            return;
+        }
+        long start = System.nanoTime();
+        for (int offset = 0; offset < body.length; offset += CHUNK_SIZE) {
+            int count = Math.min(CHUNK_SIZE, body.length - offset);
+            outputStream.write(body, offset, count);
+            outputStream.flush();
+            /* Wait until the bytes written so far would have taken their time on the link */
+            long dueNanos = (offset + count) * 1000000000L / rate;
+            sleep((dueNanos - (System.nanoTime() - start)) / 1000000);
+        }
+    }
+
+    private static boolean isMovieId(String segment) {
+        if (segment.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read a CRLF terminated line, or return null at the end of the stream
+     */
+    private static String readLine(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = inputStream.read()) != -1) {
+            if (b == '\n') {
+                String text = line.toString("US-ASCII");
+                return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+            }
+            line.write(b);
+        }
+        return null;
+    }
+
+    private static void sleep(long millis) throws IOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SocketException("Interrupted");
+        }
+    }
+
+    private static byte[] readFixture(String name) throws IOException {
+        InputStream inputStream = FakeTmdbServer.class.getResourceAsStream(FIXTURES + name);
+        if (inputStream == null) {
+            throw new IOException("Missing fixture " + name);
+        }
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.android.popularmovies;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests that run the CatalogPrefetcher on demand against a local fake server serving
+ * two lists of movies and their posters.
+ */
+public class CatalogPrefetcherTest {
+
+    private static final int MOVIES_PER_LIST = 5;
+    private static final int POSTER_SIZE = 10 * 1024;
+
+    /**
+     * The fake server sends a list as one "movieId posterPath" line per movie
+     */
+    private static final ResponseParser<MoviePage> LINE_PARSER = new ResponseParser<MoviePage>() {
+        @Override
+        public MoviePage parse(InputStream inputStream) throws IOException {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
+            List<Movie> movies = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(" ");
+                movies.add(new Movie(Integer.parseInt(fields[0]), null, null, fields[1], null,
+                        null));
+            }
+            return new MoviePage(1, 1, movies);
+        }
+    };
+
+    private HttpServer server;
+    private final AtomicInteger listRequests = new AtomicInteger();
+    private final AtomicInteger posterRequests = new AtomicInteger();
+    private File cacheDirectory;
+    private FakeStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/list/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                listRequests.incrementAndGet();
+                String listName = exchange.getRequestURI().getPath().substring("/list/".length());
+                StringBuilder body = new StringBuilder();
+                for (int i = 0; i < MOVIES_PER_LIST; i++) {
+                    body.append(i).append(" /").append(listName).append(i).append(".jpg\n");
+                }
+                send(exchange, body.toString().getBytes("UTF-8"));
+            }
+        });
+        server.createContext("/poster/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                posterRequests.incrementAndGet();
+                send(exchange, new byte[POSTER_SIZE]);
+            }
+        });
+        server.start();
+
+        cacheDirectory = File.createTempFile("posters", "");
+        assertTrue(cacheDirectory.delete() && cacheDirectory.mkdirs());
+        store = new FakeStore();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        File[] files = cacheDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                assertTrue(file.delete());
+            }
+        }
+        assertTrue(cacheDirectory.delete());
+    }
+
+    @Test
+    public void prefetchRefreshesListsAndDownloadsPosters() {
+        PosterCache posterCache = new PosterCache(cacheDirectory, Long.MAX_VALUE);
+        CatalogPrefetcher.Result result = newPrefetcher(posterCache, 100, Long.MAX_VALUE)
+                .run(newHandle());
+
+        assertEquals(2, result.refreshedLists);
+        assertEquals(2 * MOVIES_PER_LIST, result.downloadedPosters);
+        assertEquals(2 + 2 * MOVIES_PER_LIST, result.requestCount);
+        assertTrue(result.byteCount >= 2 * MOVIES_PER_LIST * POSTER_SIZE);
+        assertFalse(result.budgetExhausted);
+        assertEquals(MOVIES_PER_LIST, store.pages.get("popular").movies.size());
+        assertNotNull(posterCache.get(posterUrl("/popular0.jpg")));
+        assertNotNull(posterCache.get(posterUrl("/top_rated4.jpg")));
+    }
+
+    @Test
+    public void secondRunOnlyUsesTheCache() {
+        PosterCache posterCache = new PosterCache(cacheDirectory, Long.MAX_VALUE);
+        newPrefetcher(posterCache, 100, Long.MAX_VALUE).run(newHandle());
+        store.fresh = true;
+        listRequests.set(0);
+        posterRequests.set(0);
+
+        CatalogPrefetcher.Result result = newPrefetcher(posterCache, 100, Long.MAX_VALUE)
+                .run(newHandle());
+
+        assertEquals(0, listRequests.get());
+        assertEquals(0, posterRequests.get());
+        assertEquals(2 * MOVIES_PER_LIST, result.cachedPosters);
+        assertEquals(0, result.requestCount);
+    }
+
+    @Test
+    public void byteBudgetStopsThePosterDownloads() {
+        PosterCache posterCache = new PosterCache(cacheDirectory, Long.MAX_VALUE);
+        long maxBytes = 3 * POSTER_SIZE + POSTER_SIZE / 2;
+        CatalogPrefetcher.Result result = newPrefetcher(posterCache, 100, maxBytes)
+                .run(newHandle());
+
+        assertTrue(result.budgetExhausted);
+        assertTrue("Read " + result.byteCount + " bytes", result.byteCount <= maxBytes);
+        assertEquals(3, result.downloadedPosters);
+        assertEquals(result.downloadedPosters, cacheDirectory.listFiles().length);
+    }
+
+    @Test
+    public void requestBudgetStopsThePrefetch() {
+        PosterCache posterCache = new PosterCache(cacheDirectory, Long.MAX_VALUE);
+        CatalogPrefetcher.Result result = newPrefetcher(posterCache, 4, Long.MAX_VALUE)
+                .run(newHandle());
+
+        assertTrue(result.budgetExhausted);
+        assertEquals(4, result.requestCount);
+        assertEquals(4, listRequests.get() + posterRequests.get());
+    }
+
+    @Test
+    public void cancelledPrefetchStops() {
+        PosterCache posterCache = new PosterCache(cacheDirectory, Long.MAX_VALUE);
+        RequestHandle handle = newHandle();
+        handle.cancel();
+        CatalogPrefetcher.Result result = newPrefetcher(posterCache, 100, Long.MAX_VALUE)
+                .run(handle);
+
+        assertTrue(result.cancelled);
+        assertEquals(0, posterRequests.get());
+    }
+
+    private CatalogPrefetcher newPrefetcher(PosterCache posterCache, int maxRequests,
+                                            long maxBytes) {
+        CatalogPrefetcher.Endpoints endpoints = new CatalogPrefetcher.Endpoints() {
+            @Override
+            public URL listUrl(String listName) {
+                return url("/list/" + listName);
+            }
+
+            @Override
+            public URL posterUrl(Movie movie) {
+                return url("/poster" + movie.getMovieUrlPoster());
+            }
+        };
+        return new CatalogPrefetcher(Arrays.asList("popular", "top_rated"), LINE_PARSER,
+                endpoints, store, posterCache, new CatalogPrefetcher.Budget(maxRequests, maxBytes));
+    }
+
+    private RequestHandle newHandle() {
+        return new RequestHandle(Executors.newSingleThreadExecutor());
+    }
+
+    private String posterUrl(String posterPath) {
+        return url("/poster" + posterPath).toString();
+    }
+
+    private URL url(String path) {
+        try {
+            return new URL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+        } catch (MalformedURLException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void send(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream outputStream = exchange.getResponseBody();
+        outputStream.write(body);
+        exchange.close();
+    }
+
+    /**
+     * In-memory store of the first pages, stale until the test says otherwise
+     */
+    private static final class FakeStore implements CatalogPrefetcher.CatalogStore {
+
+        final Map<String, MoviePage> pages = new HashMap<>();
+        boolean fresh;
+
+        @Override
+        public boolean isStale(String listName, long now) {
+            return !fresh || !pages.containsKey(listName);
+        }
+
+        @Override
+        public List<Movie> getMovies(String listName, int page) {
+            MoviePage moviePage = pages.get(listName);
+            return moviePage == null ? new ArrayList<Movie>() : moviePage.movies;
+        }
+
+        @Override
+        public void savePage(String listName, MoviePage moviePage, long now) {
+            pages.put(listName, moviePage);
+        }
+    }
+}
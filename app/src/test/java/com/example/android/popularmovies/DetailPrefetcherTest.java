@@ -0,0 +1,256 @@
+package com.example.android.popularmovies;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests of the DetailPrefetcher dwell time, queue bound, cancellation and hit rate
+ */
+public class DetailPrefetcherTest {
+
+    private static final long DWELL = 500;
+    private static final long JOIN_TIMEOUT = 5000;
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final List<Integer> loadedIds = Collections.synchronizedList(new ArrayList<Integer>());
+
+    private final DetailPrefetcher.Loader loader = new DetailPrefetcher.Loader() {
+        @Override
+        public MovieDetails load(Movie movie, RequestHandle handle) {
+            loadedIds.add(movie.getMovieId());
+            return new MovieDetails(movie, new ArrayList<Trailer>(), new ArrayList<Review>(),
+                    1);
+        }
+    };
+
+    @Test
+    public void prefetchesOnlyAfterTheDwellTime() {
+        DetailPrefetcher prefetcher = new DetailPrefetcher(loader, DIRECT_EXECUTOR, DWELL, 3, 10,
+                JOIN_TIMEOUT);
+        List<Movie> onScreen = movies(1, 2);
+
+        assertEquals(DWELL, prefetcher.onVisibleMovies(onScreen, 0));
+        assertTrue(loadedIds.isEmpty());
+
+        assertEquals(-1, prefetcher.onVisibleMovies(onScreen, DWELL));
+        assertEquals(Arrays.asList(1, 2), loadedIds);
+
+        assertNotNull(prefetcher.take(1, new RequestHandle(DIRECT_EXECUTOR)));
+        assertNull(prefetcher.take(3, new RequestHandle(DIRECT_EXECUTOR)));
+        DetailPrefetcher.Stats stats = prefetcher.getStats();
+        assertEquals(1, stats.hitCount);
+        assertEquals(1, stats.missCount);
+        assertEquals(0.5, stats.hitRate(), 0.001);
+    }
+
+    @Test
+    public void moviesThatScrollPastAreNotPrefetched() {
+        DetailPrefetcher prefetcher = new DetailPrefetcher(loader, DIRECT_EXECUTOR, DWELL, 3, 10,
+                JOIN_TIMEOUT);
+        prefetcher.onVisibleMovies(movies(1, 2), 0);
+        prefetcher.onVisibleMovies(movies(3, 4), DWELL / 2);
+        prefetcher.onVisibleMovies(movies(3, 4), DWELL);
+
+        assertTrue(loadedIds.isEmpty());
+        prefetcher.onVisibleMovies(movies(3, 4), DWELL / 2 + DWELL);
+        assertEquals(Arrays.asList(3, 4), loadedIds);
+    }
+
+    @Test
+    public void queueIsBoundedAndScrollingAwayCancels() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<RequestHandle> handles = Collections.synchronizedList(
+                new ArrayList<RequestHandle>());
+        DetailPrefetcher.Loader blockingLoader = new DetailPrefetcher.Loader() {
+            @Override
+            public MovieDetails load(Movie movie, RequestHandle handle) throws IOException {
+                handles.add(handle);
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                handle.throwIfCancelled();
+                return new MovieDetails(movie, new ArrayList<Trailer>(), new ArrayList<Review>(),
+                        1);
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        DetailPrefetcher prefetcher = new DetailPrefetcher(blockingLoader, executor, DWELL, 2, 10,
+                JOIN_TIMEOUT);
+
+        prefetcher.onVisibleMovies(movies(1, 2, 3, 4), 0);
+        long nextCheck = prefetcher.onVisibleMovies(movies(1, 2, 3, 4), DWELL);
+        assertEquals(2, prefetcher.getStats().prefetchCount);
+        assertTrue(nextCheck > 0);
+
+        /* Scrolling away cancels both pending prefetches and frees the queue */
+        prefetcher.onVisibleMovies(movies(5), DWELL + 10);
+        assertEquals(2, prefetcher.getStats().cancelledCount);
+        release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        for (RequestHandle handle : handles) {
+            assertTrue(handle.isCancelled());
+        }
+        assertNull(prefetcher.take(1, new RequestHandle(DIRECT_EXECUTOR)));
+        assertEquals(0, prefetcher.getStats().failedCount);
+    }
+
+    @Test
+    public void openedMovieKeepsItsPrefetchThroughThePause() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        DetailPrefetcher.Loader blockingLoader = new DetailPrefetcher.Loader() {
+            @Override
+            public MovieDetails load(Movie movie, RequestHandle handle) throws IOException {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                handle.throwIfCancelled();
+                return new MovieDetails(movie, new ArrayList<Trailer>(), new ArrayList<Review>(),
+                        1);
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final DetailPrefetcher prefetcher = new DetailPrefetcher(blockingLoader, executor, DWELL,
+                3, 10, JOIN_TIMEOUT);
+        prefetcher.onVisibleMovies(movies(1, 2), 0);
+        prefetcher.onVisibleMovies(movies(1, 2), DWELL);
+
+        /* The click on movie 1 comes before the pause of the grid, which reports no movies */
+        prefetcher.onOpened(1);
+        prefetcher.onVisibleMovies(new ArrayList<Movie>(), DWELL + 10);
+        assertEquals(1, prefetcher.getStats().cancelledCount);
+
+        /* The DetailActivity joins the prefetch still in flight */
+        final MovieDetails[] taken = new MovieDetails[1];
+        Thread detailThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                taken[0] = prefetcher.take(1, new RequestHandle(DIRECT_EXECUTOR));
+            }
+        });
+        detailThread.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (detailThread.getState() != Thread.State.TIMED_WAITING
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        detailThread.join(5000);
+        executor.shutdown();
+
+        assertNotNull(taken[0]);
+        assertEquals(1, taken[0].movie.getMovieId());
+        DetailPrefetcher.Stats stats = prefetcher.getStats();
+        assertEquals(1, stats.pendingHitCount);
+        assertEquals(0, stats.missCount);
+    }
+
+    @Test
+    public void joinGivesUpAfterTheTimeout() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        DetailPrefetcher prefetcher = new DetailPrefetcher(blockingLoader(release), executor,
+                DWELL, 3, 10, DWELL);
+        prefetcher.onVisibleMovies(movies(1), 0);
+        prefetcher.onVisibleMovies(movies(1), DWELL);
+        prefetcher.onOpened(1);
+
+        long start = System.currentTimeMillis();
+        assertNull(prefetcher.take(1, new RequestHandle(DIRECT_EXECUTOR)));
+        assertTrue(System.currentTimeMillis() - start >= DWELL);
+        release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        DetailPrefetcher.Stats stats = prefetcher.getStats();
+        assertEquals(0, stats.pendingHitCount);
+        assertEquals(1, stats.missCount);
+    }
+
+    @Test
+    public void cancelledCallerStopsWaiting() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final DetailPrefetcher prefetcher = new DetailPrefetcher(blockingLoader(release), executor,
+                DWELL, 3, 10, JOIN_TIMEOUT);
+        prefetcher.onVisibleMovies(movies(1), 0);
+        prefetcher.onVisibleMovies(movies(1), DWELL);
+        prefetcher.onOpened(1);
+
+        /* The DetailActivity is closed while it waits for the prefetch */
+        final RequestHandle caller = new RequestHandle(DIRECT_EXECUTOR);
+        final MovieDetails[] taken = new MovieDetails[1];
+        Thread detailThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                taken[0] = prefetcher.take(1, caller);
+            }
+        });
+        detailThread.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (detailThread.getState() != Thread.State.TIMED_WAITING
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        caller.cancel();
+        detailThread.join(JOIN_TIMEOUT / 2);
+
+        assertEquals(Thread.State.TERMINATED, detailThread.getState());
+        assertNull(taken[0]);
+        release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Loader that blocks until the latch is released
+     */
+    private static DetailPrefetcher.Loader blockingLoader(final CountDownLatch release) {
+        return new DetailPrefetcher.Loader() {
+            @Override
+            public MovieDetails load(Movie movie, RequestHandle handle) throws IOException {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                handle.throwIfCancelled();
+                return new MovieDetails(movie, new ArrayList<Trailer>(), new ArrayList<Review>(),
+                        1);
+            }
+        };
+    }
+
+    private static List<Movie> movies(int... ids) {
+        List<Movie> movies = new ArrayList<>();
+        for (int id : ids) {
+            movies.add(new Movie(id, "Movie " + id, null, "/" + id + ".jpg", null, null));
+        }
+        return movies;
+    }
+}
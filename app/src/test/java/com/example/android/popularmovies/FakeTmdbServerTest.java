@@ -0,0 +1,128 @@
+package com.example.android.popularmovies;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Local unit tests of the FakeTmdbServer, run through QueryUtils.fetch: the fixtures are served
+ * on the paths of the real API, and the latency, bandwidth and error injection apply.
+ */
+public class FakeTmdbServerTest {
+
+    private static final ResponseParser<String> BODY_PARSER = new ResponseParser<String>() {
+        @Override
+        public String parse(InputStream inputStream) throws IOException {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toString("UTF-8");
+        }
+    };
+
+    private FakeTmdbServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeTmdbServer();
+        server.start();
+        QueryUtils.setRequestScheduler(new RequestScheduler(100, 100, 2, 10, 50, new Random(0)));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        QueryUtils.setRequestScheduler(new RequestScheduler());
+    }
+
+    @Test
+    public void servesTheFixturesOnTheApiPaths() throws IOException {
+        String popular = QueryUtils.fetch(url("popular?page=1"), BODY_PARSER);
+        String videos = QueryUtils.fetch(url("299534/videos"), BODY_PARSER);
+
+        assertNotNull(popular);
+        assertTrue(popular.startsWith("{\"page\":1,\"results\":["));
+        assertNotNull(videos);
+        assertTrue(videos.contains("\"site\":\"YouTube\""));
+        assertEquals(1, server.getRequestCount("/3/movie/popular"));
+        assertNull(QueryUtils.fetch(url("upcoming"), BODY_PARSER));
+    }
+
+    @Test
+    public void appendsTheRequestedSectionsToTheDetails() throws IOException {
+        String details = QueryUtils.fetch(
+                url("299534?append_to_response=videos%2Creviews"), BODY_PARSER);
+        String plainDetails = QueryUtils.fetch(url("299534"), BODY_PARSER);
+
+        assertNotNull(details);
+        assertTrue(details.contains(",\"videos\":{"));
+        assertTrue(details.contains(",\"reviews\":{"));
+        assertTrue(details.endsWith("}}"));
+        assertNotNull(plainDetails);
+        assertTrue(!plainDetails.contains("\"reviews\""));
+    }
+
+    @Test
+    public void latencyDelaysTheResponse() throws IOException {
+        server.setLatencyMillis(200);
+        long start = System.nanoTime();
+        assertNotNull(QueryUtils.fetch(url("top_rated?page=1"), BODY_PARSER));
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertTrue("Took " + elapsedMillis + "ms", elapsedMillis >= 200);
+    }
+
+    @Test
+    public void bandwidthLimitsTheBody() throws IOException {
+        /* The reviews fixture is about 30 KB, which takes about 1.5s at 20 KB/s */
+        server.setBytesPerSecond(20 * 1024);
+        long start = System.nanoTime();
+        String reviews = QueryUtils.fetch(url("299534/reviews"), BODY_PARSER);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertNotNull(reviews);
+        long expectedMillis = reviews.length() * 1000L / (20 * 1024);
+        assertTrue("Took " + elapsedMillis + "ms for " + reviews.length() + " bytes",
+                elapsedMillis >= expectedMillis * 9 / 10);
+    }
+
+    @Test
+    public void injectedErrorsAreRetriedOrReported() throws IOException {
+        server.failNext(1, 503);
+        assertNotNull(QueryUtils.fetch(url("popular?page=2"), BODY_PARSER));
+        assertEquals(2, server.getRequestCount());
+
+        server.failNext(1, 404);
+        assertNull(QueryUtils.fetch(url("popular?page=3"), BODY_PARSER));
+
+        /* Every request fails at an error rate of 1, and is retried twice before giving up */
+        server.reset();
+        server.setErrorRate(1, 500);
+        try {
+            QueryUtils.fetch(url("popular?page=4"), BODY_PARSER);
+            fail("The request was not given up");
+        } catch (RequestScheduler.UnavailableException e) {
+            assertEquals(500, e.responseCode);
+        }
+        assertEquals(3, server.getErrorCount());
+    }
+
+    private URL url(String pathAndQuery) throws IOException {
+        return new URL(server.getBaseUrl() + pathAndQuery);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.android.popularmovies;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests of the number of columns and the width of the cells of the movie grid
+ */
+public class GridSizingTest {
+
+    /**
+     * A target of 160dp at the densities of the devices below
+     */
+    private static final int TARGET_XXHDPI = 480;
+    private static final int TARGET_XHDPI = 320;
+    private static final int MIN_SPAN_COUNT = 2;
+
+    @Test
+    public void phoneInPortraitHasTwoColumns() {
+        assertEquals(2, GridSizing.spanCount(1080, TARGET_XXHDPI, MIN_SPAN_COUNT));
+        assertEquals(540, GridSizing.cellWidth(1080, TARGET_XXHDPI, MIN_SPAN_COUNT));
+    }
+
+    @Test
+    public void landscapeAndTabletsHaveMoreColumnsOfTheTargetWidth() {
+        /* A phone in landscape, a tablet in portrait and in landscape */
+        assertEquals(4, GridSizing.spanCount(1920, TARGET_XXHDPI, MIN_SPAN_COUNT));
+        assertEquals(480, GridSizing.cellWidth(1920, TARGET_XXHDPI, MIN_SPAN_COUNT));
+        assertEquals(5, GridSizing.spanCount(1600, TARGET_XHDPI, MIN_SPAN_COUNT));
+        assertEquals(8, GridSizing.spanCount(2560, TARGET_XHDPI, MIN_SPAN_COUNT));
+        assertEquals(320, GridSizing.cellWidth(2560, TARGET_XHDPI, MIN_SPAN_COUNT));
+    }
+
+    @Test
+    public void columnWidthIsTheClosestToTheTarget() {
+        /* 2.7 columns of the target round up to 3 narrower columns */
+        assertEquals(3, GridSizing.spanCount(1300, TARGET_XXHDPI, MIN_SPAN_COUNT));
+        assertEquals(433, GridSizing.cellWidth(1300, TARGET_XXHDPI, MIN_SPAN_COUNT));
+        /* 3.4 columns of the target round down to 3 wider columns */
+        assertEquals(3, GridSizing.spanCount(1632, TARGET_XXHDPI, MIN_SPAN_COUNT));
+    }
+
+    @Test
+    public void narrowGridKeepsTheLeastNumberOfColumns() {
+        /* A window in split screen, and a grid before its first layout */
+        assertEquals(2, GridSizing.spanCount(500, TARGET_XXHDPI, MIN_SPAN_COUNT));
+        assertEquals(250, GridSizing.cellWidth(500, TARGET_XXHDPI, MIN_SPAN_COUNT));
+        assertEquals(2, GridSizing.spanCount(0, TARGET_XXHDPI, MIN_SPAN_COUNT));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.android.popularmovies;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Local unit tests of the connection reuse of the HttpTransport, measured by the number of
+ * connections the FakeTmdbServer accepts
+ */
+public class HttpTransportTest {
+
+    private static final ResponseParser<Integer> LENGTH_PARSER = new ResponseParser<Integer>() {
+        @Override
+        public Integer parse(InputStream inputStream) throws IOException {
+            return readFully(inputStream);
+        }
+    };
+
+    private FakeTmdbServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeTmdbServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void releasedConnectionsAreReused() throws IOException {
+        HttpTransport transport = HttpTransport.getInstance();
+        for (int i = 0; i < 5; i++) {
+            HttpURLConnection urlConnection = transport.openConnection(url("popular?page=1"));
+            assertEquals(200, urlConnection.getResponseCode());
+            InputStream inputStream = urlConnection.getInputStream();
+            readFully(inputStream);
+            transport.release(urlConnection, inputStream);
+        }
+
+        assertEquals(5, server.getRequestCount());
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void unreadBodyIsDrainedOnRelease() throws IOException {
+        HttpTransport transport = HttpTransport.getInstance();
+        for (int i = 0; i < 3; i++) {
+            HttpURLConnection urlConnection = transport.openConnection(url("299534/reviews"));
+            InputStream inputStream = urlConnection.getInputStream();
+            assertEquals('{', inputStream.read());
+            transport.release(urlConnection, inputStream);
+        }
+
+        assertEquals(3, server.getRequestCount());
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void abortedConnectionIsNotReused() throws IOException {
+        HttpTransport transport = HttpTransport.getInstance();
+        HttpURLConnection urlConnection = transport.openConnection(url("popular?page=1"));
+        urlConnection.getInputStream().read();
+        transport.abort(urlConnection);
+
+        urlConnection = transport.openConnection(url("popular?page=2"));
+        InputStream inputStream = urlConnection.getInputStream();
+        readFully(inputStream);
+        transport.release(urlConnection, inputStream);
+
+        assertEquals(2, server.getConnectionCount());
+    }
+
+    @Test
+    public void fetchesShareOneConnection() throws IOException {
+        for (int page = 1; page <= 4; page++) {
+            assertNotNull(QueryUtils.fetch(url("popular?page=" + page), LENGTH_PARSER));
+        }
+
+        assertEquals(4, server.getRequestCount());
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    private URL url(String pathAndQuery) throws IOException {
+        return new URL(server.getBaseUrl() + pathAndQuery);
+    }
+
+    private static int readFully(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[1024];
+        int length = 0;
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            length += read;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.android.popularmovies;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests of the JsonResponseCache, run through QueryUtils.fetch against a
+ * FakeTmdbServer: the counters of fresh hits, misses and 304 revalidations, and the bodies
+ * written to disk while they are parsed, which are kept once complete and dropped otherwise.
+ */
+public class JsonResponseCacheTest {
+
+    private static final ResponseParser<byte[]> BODY_PARSER = new ResponseParser<byte[]>() {
+        @Override
+        public byte[] parse(InputStream inputStream) throws IOException {
+            return readFully(inputStream);
+        }
+    };
+
+    /**
+     * Reads only the first bytes of the body, as a parser that found what it needed
+     */
+    private static final ResponseParser<Integer> FIRST_BYTE_PARSER = new ResponseParser<Integer>() {
+        @Override
+        public Integer parse(InputStream inputStream) throws IOException {
+            return inputStream.read();
+        }
+    };
+
+    /**
+     * Fails halfway through the body, as a parser of malformed JSON does
+     */
+    private static final ResponseParser<byte[]> FAILING_PARSER = new ResponseParser<byte[]>() {
+        @Override
+        public byte[] parse(InputStream inputStream) throws IOException {
+            inputStream.read(new byte[512]);
+            throw new IOException("Malformed response");
+        }
+    };
+
+    private FakeTmdbServer server;
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeTmdbServer();
+        server.start();
+        cacheDir = File.createTempFile("json-cache", "");
+        assertTrue(cacheDir.delete());
+        JsonResponseCache.uninstall();
+        JsonResponseCache.install(cacheDir);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        JsonResponseCache.uninstall();
+        server.shutdown();
+        deleteRecursively(cacheDir);
+    }
+
+    @Test
+    public void freshResponseIsServedFromDisk() throws IOException {
+        server.setCacheControl("max-age=60");
+        byte[] downloaded = QueryUtils.fetch(url("popular?page=1"), BODY_PARSER);
+        byte[] cached = QueryUtils.fetch(url("popular?page=1"), BODY_PARSER);
+
+        assertNotNull(downloaded);
+        assertArrayEquals(downloaded, cached);
+        assertEquals(1, server.getRequestCount());
+        JsonResponseCache.Stats stats = QueryUtils.getResponseCacheStats();
+        assertEquals(1, stats.missCount);
+        assertEquals(1, stats.hitCount);
+        assertEquals(0, stats.revalidateCount);
+        assertEquals(downloaded.length, stats.savedBytes);
+    }
+
+    @Test
+    public void staleResponseIsRevalidated() throws IOException {
+        server.setCacheControl("no-cache");
+        byte[] downloaded = QueryUtils.fetch(url("top_rated?page=1"), BODY_PARSER);
+        long bytesSent = server.getBytesSent();
+        byte[] revalidated = QueryUtils.fetch(url("top_rated?page=1"), BODY_PARSER);
+
+        assertNotNull(downloaded);
+        assertArrayEquals(downloaded, revalidated);
+        assertEquals(2, server.getRequestCount());
+        /* The 304 carries no body */
+        assertEquals(bytesSent, server.getBytesSent());
+        JsonResponseCache.Stats stats = QueryUtils.getResponseCacheStats();
+        assertEquals(1, stats.missCount);
+        assertEquals(0, stats.hitCount);
+        assertEquals(1, stats.revalidateCount);
+        assertEquals(downloaded.length, stats.savedBytes);
+    }
+
+    @Test
+    public void noStoreResponseIsNotCached() throws IOException {
+        assertNotNull(QueryUtils.fetch(url("popular?page=1"), BODY_PARSER));
+        assertNotNull(QueryUtils.fetch(url("popular?page=1"), BODY_PARSER));
+
+        assertEquals(2, server.getRequestCount());
+        assertEquals(0, cachedFiles().length);
+        JsonResponseCache.Stats stats = QueryUtils.getResponseCacheStats();
+        assertEquals(2, stats.missCount);
+        assertEquals(0, stats.hitCount);
+    }
+
+    @Test
+    public void partlyParsedBodyIsCommittedWhole() throws IOException {
+        server.setCacheControl("max-age=60");
+        assertEquals(Integer.valueOf('{'),
+                QueryUtils.fetch(url("299534/reviews"), FIRST_BYTE_PARSER));
+
+        /* The rest of the body was drained into the cache before the entry was published */
+        File[] files = cachedFiles();
+        assertEquals(2, files.length);
+        byte[] cached = QueryUtils.fetch(url("299534/reviews"), BODY_PARSER);
+        assertEquals(1, server.getRequestCount());
+        assertEquals(server.getBytesSent(), cached.length);
+        for (File file : files) {
+            if (file.getName().endsWith(".body")) {
+                InputStream inputStream = new FileInputStream(file);
+                try {
+                    assertArrayEquals(cached, readFully(inputStream));
+                } finally {
+                    inputStream.close();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void failedParseAbortsTheEntry() throws IOException {
+        server.setCacheControl("max-age=60");
+        assertNull(QueryUtils.fetch(url("299534/reviews"), FAILING_PARSER));
+
+        /* Neither the partial body nor its temporary file is left behind */
+        assertEquals(0, cachedFiles().length);
+        assertEquals(0, QueryUtils.getResponseCacheStats().missCount);
+        assertNotNull(QueryUtils.fetch(url("299534/reviews"), BODY_PARSER));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    private File[] cachedFiles() {
+        File[] directories = cacheDir.listFiles();
+        assertNotNull(directories);
+        assertEquals(1, directories.length);
+        File[] files = directories[0].listFiles();
+        assertNotNull(files);
+        return files;
+    }
+
+    private URL url(String pathAndQuery) throws IOException {
+        return new URL(server.getBaseUrl() + pathAndQuery);
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.android.popularmovies;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests of the byte budget and the least recently used eviction of the PosterCache
+ */
+public class PosterCacheTest {
+
+    private static final int POSTER_SIZE = 10 * 1024;
+
+    private HttpServer server;
+    private File cacheDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = new byte[POSTER_SIZE];
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream outputStream = exchange.getResponseBody();
+                outputStream.write(body);
+                exchange.close();
+            }
+        });
+        server.start();
+
+        cacheDirectory = File.createTempFile("posters", "");
+        assertTrue(cacheDirectory.delete() && cacheDirectory.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        File[] files = cacheDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                assertTrue(file.delete());
+            }
+        }
+        assertTrue(cacheDirectory.delete());
+    }
+
+    @Test
+    public void leastRecentlyUsedPosterIsEvicted() throws Exception {
+        long maxSize = 2 * POSTER_SIZE + POSTER_SIZE / 2;
+        PosterCache posterCache = new PosterCache(cacheDirectory, maxSize);
+        download(posterCache, "/first.jpg");
+        download(posterCache, "/second.jpg");
+        /* Using the first poster makes the second one the least recently used */
+        assertNotNull(posterCache.get(url("/first.jpg")));
+        Thread.sleep(20);
+        download(posterCache, "/third.jpg");
+
+        assertEquals(1, posterCache.getEvictionCount());
+        assertEquals(2 * POSTER_SIZE, posterCache.getSize());
+        assertNotNull(posterCache.get(url("/first.jpg")));
+        assertNull(posterCache.get(url("/second.jpg")));
+        assertNotNull(posterCache.get(url("/third.jpg")));
+    }
+
+    @Test
+    public void sizeIsRestoredFromTheDirectory() throws Exception {
+        PosterCache posterCache = new PosterCache(cacheDirectory, Long.MAX_VALUE);
+        download(posterCache, "/first.jpg");
+        download(posterCache, "/first.jpg");
+        download(posterCache, "/second.jpg");
+
+        assertEquals(2 * POSTER_SIZE, posterCache.getSize());
+        assertEquals(2 * POSTER_SIZE, new PosterCache(cacheDirectory, Long.MAX_VALUE).getSize());
+    }
+
+    private void download(PosterCache posterCache, String path) throws Exception {
+        assertEquals(POSTER_SIZE, posterCache.download(new URL(url(path)), new RequestHandle(),
+                Long.MAX_VALUE));
+        /* Keep the modification times of the posters apart */
+        Thread.sleep(20);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+}
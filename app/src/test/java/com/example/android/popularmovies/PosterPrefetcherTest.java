@@ -0,0 +1,159 @@
+package com.example.android.popularmovies;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests of the PosterPrefetcher direction, adaptive depth and cancellation
+ */
+public class PosterPrefetcherTest {
+
+    private static final int SPAN_COUNT = 2;
+    private static final int ROW_HEIGHT = 300;
+
+    private final List<PosterPrefetcher.Prefetch> loads = new ArrayList<>();
+    private final List<Integer> cancelledIds = new ArrayList<>();
+
+    private final PosterPrefetcher.Loader loader = new PosterPrefetcher.Loader() {
+        @Override
+        public void load(Movie movie, PosterPrefetcher.Prefetch prefetch) {
+            loads.add(prefetch);
+        }
+
+        @Override
+        public void cancel(PosterPrefetcher.Prefetch prefetch) {
+            cancelledIds.add(prefetch.movieId);
+        }
+    };
+
+    @Test
+    public void prefetchesTheRowsAheadOfTheScrollDirection() {
+        PosterPrefetcher prefetcher = new PosterPrefetcher(loader, 1, 8, 250, 100);
+        List<Movie> movies = movies(40);
+
+        /* A first slow scroll down from rows 0-2 loads the next row only */
+        prefetcher.onScroll(movies, 0, 5, 10, SPAN_COUNT, ROW_HEIGHT, 1000);
+        assertEquals(Arrays.asList(6, 7), loadedPositions());
+
+        /* Scrolling back up from rows 5-7 cancels them and loads the row above */
+        loads.clear();
+        prefetcher.onScroll(movies, 10, 15, 5, SPAN_COUNT, ROW_HEIGHT, 2000);
+        assertEquals(Arrays.asList(7, 8), cancelledIds);
+        assertEquals(Arrays.asList(9, 8), loadedPositions());
+    }
+
+    @Test
+    public void depthFollowsTheSpeedAndTheLatency() {
+        PosterPrefetcher prefetcher = new PosterPrefetcher(loader, 1, 8, 250, 100);
+        List<Movie> movies = movies(200);
+
+        /* A fling of 3px/ms scrolls 750px, 2.5 rows, while a poster loads */
+        int scrollY = 0;
+        for (long now = 1000; now <= 1400; now += 16) {
+            scrollY += 48;
+            prefetcher.onScroll(movies, 0, 5, scrollY, SPAN_COUNT, ROW_HEIGHT, now);
+        }
+        PosterPrefetcher.Stats stats = prefetcher.getStats();
+        assertEquals(4, stats.depthRows);
+        assertEquals(8, loads.size());
+
+        /* On a network twice as slow the same fling scrolls 5 rows while a poster loads */
+        PosterPrefetcher slowPrefetcher = new PosterPrefetcher(loader, 1, 8, 500, 100);
+        scrollY = 0;
+        for (long now = 1000; now <= 1400; now += 16) {
+            scrollY += 48;
+            slowPrefetcher.onScroll(movies, 0, 5, scrollY, SPAN_COUNT, ROW_HEIGHT, now);
+        }
+        assertEquals(6, slowPrefetcher.getStats().depthRows);
+
+        /* A pause ends the fling, the depth falls back to the minimum */
+        slowPrefetcher.onScroll(movies, 0, 5, scrollY + 1, SPAN_COUNT, ROW_HEIGHT, 5000);
+        assertEquals(1, slowPrefetcher.getStats().depthRows);
+    }
+
+    @Test
+    public void measuredLatencyMovesTheEstimate() {
+        PosterPrefetcher prefetcher = new PosterPrefetcher(loader, 1, 8, 250, 100);
+        List<Movie> movies = movies(40);
+        prefetcher.onScroll(movies, 0, 5, 10, SPAN_COUNT, ROW_HEIGHT, 1000);
+
+        for (PosterPrefetcher.Prefetch prefetch : new ArrayList<>(loads)) {
+            prefetcher.onLoaded(prefetch, true, prefetch.startedAt + 1250);
+        }
+        PosterPrefetcher.Stats stats = prefetcher.getStats();
+        assertEquals(2, stats.loadedCount);
+        assertTrue(stats.latencyMillis > 600);
+    }
+
+    @Test
+    public void memoryCacheHitsDoNotLowerTheLatency() {
+        final PosterPrefetcher[] prefetcher = new PosterPrefetcher[1];
+        PosterPrefetcher.Loader cachedLoader = new PosterPrefetcher.Loader() {
+            @Override
+            public void load(Movie movie, PosterPrefetcher.Prefetch prefetch) {
+                /* The poster is in memory, the outcome is reported right away */
+                prefetcher[0].onLoaded(prefetch, true, prefetch.startedAt);
+            }
+
+            @Override
+            public void cancel(PosterPrefetcher.Prefetch prefetch) {
+            }
+        };
+        prefetcher[0] = new PosterPrefetcher(cachedLoader, 1, 8, 250, 100);
+        prefetcher[0].onScroll(movies(40), 0, 5, 10, SPAN_COUNT, ROW_HEIGHT, 1000);
+
+        PosterPrefetcher.Stats stats = prefetcher[0].getStats();
+        assertEquals(2, stats.loadedCount);
+        assertEquals(250, stats.latencyMillis);
+    }
+
+    @Test
+    public void skipsPrefetchedPostersAndIgnoresCancelledOutcomes() {
+        PosterPrefetcher prefetcher = new PosterPrefetcher(loader, 1, 8, 250, 100);
+        List<Movie> movies = movies(40);
+        prefetcher.onScroll(movies, 0, 5, 10, SPAN_COUNT, ROW_HEIGHT, 1000);
+        PosterPrefetcher.Prefetch loaded = loads.get(0);
+        PosterPrefetcher.Prefetch cancelled = loads.get(1);
+        prefetcher.onLoaded(loaded, true, 1100);
+
+        /* Scrolling up cancels the pending prefetch, a late outcome is dropped */
+        prefetcher.onScroll(movies, 0, 5, 5, SPAN_COUNT, ROW_HEIGHT, 2000);
+        assertEquals(Arrays.asList(cancelled.movieId), cancelledIds);
+        prefetcher.onLoaded(cancelled, true, 2100);
+
+        /* Scrolling down again reloads the cancelled poster but not the prefetched one */
+        loads.clear();
+        prefetcher.onScroll(movies, 0, 5, 10, SPAN_COUNT, ROW_HEIGHT, 3000);
+        assertEquals(Arrays.asList(7), loadedPositions());
+
+        PosterPrefetcher.Stats stats = prefetcher.getStats();
+        assertEquals(3, stats.startedCount);
+        assertEquals(1, stats.loadedCount);
+        assertEquals(1, stats.cancelledCount);
+
+        prefetcher.cancelAll();
+        assertEquals(Arrays.asList(cancelled.movieId, cancelled.movieId), cancelledIds);
+    }
+
+    private List<Integer> loadedPositions() {
+        List<Integer> positions = new ArrayList<>();
+        for (PosterPrefetcher.Prefetch prefetch : loads) {
+            positions.add(prefetch.position);
+        }
+        return positions;
+    }
+
+    private static List<Movie> movies(int count) {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            movies.add(new Movie(i + 1, "Movie " + i, null, "/" + i + ".jpg", null, null));
+        }
+        return movies;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.android.popularmovies;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests of the choice of the poster size for the width of a cell
+ */
+public class PosterSizesTest {
+
+    @Test
+    public void smallestSizeThatCoversTheWidthIsChosen() {
+        PosterSizes sizes = PosterSizes.DEFAULT;
+
+        assertEquals("w92", sizes.sizeFor(80));
+        assertEquals("w185", sizes.sizeFor(185));
+        assertEquals("w342", sizes.sizeFor(186));
+        /* A phone with 2 columns of 540 pixels, a tablet with 2 columns of 800 pixels */
+        assertEquals("w780", sizes.sizeFor(540));
+        assertEquals(PosterSizes.ORIGINAL, sizes.sizeFor(800));
+    }
+
+    @Test
+    public void smallestSizeIsThePreview() {
+        assertEquals("w92", PosterSizes.DEFAULT.sizeFor(PosterSizes.SMALLEST));
+        PosterSizes sizes = new PosterSizes("https://images.example/",
+                Arrays.asList("original", "w342", "w154"));
+        assertEquals("https://images.example/w154/poster.jpg",
+                sizes.urlFor("/poster.jpg", PosterSizes.SMALLEST));
+    }
+
+    @Test
+    public void unorderedAndUnknownSizesAreHandled() {
+        PosterSizes sizes = new PosterSizes("https://images.example/",
+                Arrays.asList("h632", "w500", "w92", "original", "w342"));
+
+        assertEquals("w342", sizes.sizeFor(300));
+        assertEquals("https://images.example/w500/poster.jpg", sizes.urlFor("/poster.jpg", 400));
+        assertEquals(PosterSizes.ORIGINAL, sizes.sizeFor(501));
+    }
+
+    @Test
+    public void widestSizeIsUsedWithoutOriginal() {
+        PosterSizes sizes = new PosterSizes("https://images.example/",
+                Arrays.asList("w154", "w342"));
+
+        assertEquals("w342", sizes.sizeFor(1000));
+    }
+}
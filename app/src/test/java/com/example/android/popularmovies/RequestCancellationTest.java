@@ -0,0 +1,123 @@
+package com.example.android.popularmovies;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test showing that cancelling a superseded request aborts its socket read, so the
+ * server stops sending the rest of the response.
+ */
+public class RequestCancellationTest {
+
+    /**
+     * Size of the slow response body, far more than the test lets the client read
+     */
+    private static final long BODY_SIZE = 20 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private static final ResponseParser<Long> DRAINING_PARSER = new ResponseParser<Long>() {
+        @Override
+        public Long parse(InputStream inputStream) throws IOException {
+            long total = 0;
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                total += read;
+            }
+            return total;
+        }
+    };
+
+    private HttpServer server;
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                /* Stream the body slowly, until the client goes away */
+                exchange.sendResponseHeaders(200, BODY_SIZE);
+                OutputStream outputStream = exchange.getResponseBody();
+                byte[] chunk = new byte[CHUNK_SIZE];
+                try {
+                    for (long sent = 0; sent < BODY_SIZE; sent += CHUNK_SIZE) {
+                        outputStream.write(chunk);
+                        outputStream.flush();
+                        bytesSent.addAndGet(CHUNK_SIZE);
+                        Thread.sleep(2);
+                    }
+                } catch (IOException | InterruptedException e) {
+                    /* The client disconnected */
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        server.stop(0);
+    }
+
+    @Test
+    public void cancelledRequestStopsConsumingBytes() throws Exception {
+        final URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort()
+                + "/movie/popular?page=1");
+        final RequestHandle handle = new RequestHandle(Executors.newSingleThreadExecutor());
+
+        Future<Long> request = executor.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws IOException {
+                return QueryUtils.fetch(url, DRAINING_PARSER, handle);
+            }
+        });
+
+        /* Let the download get going, then supersede it */
+        while (bytesSent.get() < 256 * 1024) {
+            Thread.sleep(5);
+        }
+        handle.cancel();
+
+        try {
+            request.get(5, TimeUnit.SECONDS);
+            throw new AssertionError("The cancelled request completed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof InterruptedIOException);
+        }
+
+        /* Once the socket is closed the server can not send anything more */
+        Thread.sleep(200);
+        long sentAfterCancel = bytesSent.get();
+        Thread.sleep(300);
+        assertEquals(sentAfterCancel, bytesSent.get());
+        assertTrue("Sent " + sentAfterCancel + " bytes", sentAfterCancel < BODY_SIZE / 4);
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.android.popularmovies;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Local unit tests of the RequestCoalescer against a FakeTmdbServer that delays its responses,
+ * so the callers ask for the same URL while the first request is still in flight
+ */
+public class RequestCoalescerTest {
+
+    private static final long LATENCY_MILLIS = 500;
+
+    private static final ResponseParser<String> BODY_PARSER = new ResponseParser<String>() {
+        @Override
+        public String parse(InputStream inputStream) throws IOException {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toString("UTF-8");
+        }
+    };
+
+    private FakeTmdbServer server;
+    private RequestCoalescer coalescer;
+    private ExecutorService executor;
+
+    /**
+     * Handle of the network request of the last call, shared by all its callers
+     */
+    private volatile RequestHandle networkHandle;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new FakeTmdbServer();
+        server.start();
+        server.setLatencyMillis(LATENCY_MILLIS);
+        coalescer = new RequestCoalescer();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void concurrentCallersShareOneRequest() throws Exception {
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(submit(url("popular?page=1"), null));
+        }
+
+        String body = results.get(0).get(5, TimeUnit.SECONDS);
+        assertNotNull(body);
+        for (Future<String> result : results) {
+            assertSame(body, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, server.getRequestCount());
+        RequestCoalescer.Stats stats = coalescer.getStats();
+        assertEquals(1, stats.executedCount);
+        assertEquals(3, stats.deduplicatedCount);
+    }
+
+    @Test
+    public void cancelledJoinerLeavesTheLeaderRunning() throws Exception {
+        Future<String> leader = submit(url("popular?page=1"), new RequestHandle());
+        awaitRequestCount(1);
+        RequestHandle joinerHandle = new RequestHandle();
+        Future<String> joiner = submit(url("popular?page=1"), joinerHandle);
+        while (coalescer.getStats().deduplicatedCount < 1) {
+            Thread.sleep(1);
+        }
+
+        joinerHandle.cancel();
+        try {
+            joiner.get(LATENCY_MILLIS / 2, TimeUnit.MILLISECONDS);
+            fail("The cancelled joiner kept waiting");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof InterruptedIOException);
+        }
+
+        assertFalse(leader.isDone());
+        assertNotNull(leader.get(5, TimeUnit.SECONDS));
+        assertFalse(networkHandle.isCancelled());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void leaderFailureIsSharedWithTheJoiners() throws Exception {
+        server.failNext(1, 404);
+        Future<String> leader = submit(url("popular?page=1"), null);
+        awaitRequestCount(1);
+        Future<String> joiner = submit(url("popular?page=1"), null);
+
+        Throwable leaderFailure = failureOf(leader);
+        assertTrue(leaderFailure instanceof IOException);
+        assertSame(leaderFailure, failureOf(joiner));
+        assertEquals(1, server.getRequestCount());
+
+        /* The failed request is not joined by the next caller */
+        assertNotNull(submit(url("popular?page=1"), null).get(5, TimeUnit.SECONDS));
+        assertEquals(2, server.getRequestCount());
+        assertEquals(2, coalescer.getStats().executedCount);
+    }
+
+    /**
+     * Call the coalescer on another thread, with a call that downloads the body of the URL
+     */
+    private Future<String> submit(final URL url, final RequestHandle handle) {
+        return executor.submit(new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                return coalescer.execute(url, BODY_PARSER, handle,
+                        new RequestCoalescer.Call<String>() {
+                            @Override
+                            public String execute(RequestHandle handle) throws IOException {
+                                networkHandle = handle;
+                                return download(url);
+                            }
+                        });
+            }
+        });
+    }
+
+    private static String download(URL url) throws IOException {
+        HttpTransport transport = HttpTransport.getInstance();
+        HttpURLConnection urlConnection = transport.openConnection(url);
+        int responseCode = urlConnection.getResponseCode();
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            transport.abort(urlConnection);
+            throw new IOException("Error response code: " + responseCode);
+        }
+        InputStream inputStream = urlConnection.getInputStream();
+        String body = BODY_PARSER.parse(inputStream);
+        transport.release(urlConnection, inputStream);
+        return body;
+    }
+
+    private static Throwable failureOf(Future<String> result) throws Exception {
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            throw new AssertionError("The request did not fail");
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+    private void awaitRequestCount(int count) throws InterruptedException {
+        while (server.getRequestCount() < count) {
+            Thread.sleep(1);
+        }
+    }
+
+    private URL url(String pathAndQuery) throws IOException {
+        return new URL(server.getBaseUrl() + pathAndQuery);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.android.popularmovies;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests of the request timings recorded by QueryUtils and of the Histogram
+ */
+public class RequestMetricsTest {
+
+    private static final int BODY_SIZE = 3000;
+
+    private static final ResponseParser<Integer> COUNTING_PARSER = new ResponseParser<Integer>() {
+        @Override
+        public Integer parse(InputStream inputStream) throws IOException {
+            int total = 0;
+            byte[] buffer = new byte[512];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                total += read;
+            }
+            return total;
+        }
+    };
+
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = new byte[BODY_SIZE];
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream outputStream = exchange.getResponseBody();
+                outputStream.write(body);
+                exchange.close();
+            }
+        });
+        server.start();
+        QueryUtils.getRequestMetrics().reset();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void endpointIsTheLastPathSegment() throws IOException {
+        assertEquals("popular", RequestMetrics.endpointOf(
+                new URL("https://api.themoviedb.org/3/movie/popular?page=2")));
+        assertEquals("reviews", RequestMetrics.endpointOf(
+                new URL("https://api.themoviedb.org/3/movie/550/reviews")));
+        assertEquals("details", RequestMetrics.endpointOf(
+                new URL("https://api.themoviedb.org/3/movie/550?append_to_response=videos")));
+    }
+
+    @Test
+    public void requestsAreRecordedPerEndpoint() throws IOException {
+        String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/3/movie/";
+        assertEquals(Integer.valueOf(BODY_SIZE),
+                QueryUtils.fetch(new URL(base + "popular?page=1"), COUNTING_PARSER));
+        QueryUtils.fetch(new URL(base + "popular?page=2"), COUNTING_PARSER);
+        QueryUtils.fetch(new URL(base + "top_rated?page=1"), COUNTING_PARSER);
+
+        String report = QueryUtils.getRequestMetrics().dump();
+        assertTrue(report, report.contains("popular network=2 cache=0 revalidated=0 failed=0"));
+        assertTrue(report, report.contains("top_rated network=1"));
+        assertTrue(report, report.contains("bytes n=2 mean=3000.0"));
+    }
+
+    @Test
+    public void percentilesAreBucketUpperBounds() {
+        Histogram histogram = new Histogram(new long[]{10, 100, 1000});
+        for (int i = 1; i <= 90; i++) {
+            histogram.record(5);
+        }
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(500);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(10, histogram.percentile(0.5));
+        assertEquals(10, histogram.percentile(0.9));
+        assertEquals(500, histogram.percentile(0.99));
+        histogram.record(5000);
+        assertEquals(5000, histogram.percentile(1));
+    }
+}
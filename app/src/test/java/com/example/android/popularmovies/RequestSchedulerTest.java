@@ -0,0 +1,178 @@
+package com.example.android.popularmovies;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Local unit tests of the RequestScheduler, run through QueryUtils.fetch against a local server
+ * that injects 429 and 503 responses.
+ */
+public class RequestSchedulerTest {
+
+    private static final ResponseParser<String> BODY_PARSER = new ResponseParser<String>() {
+        @Override
+        public String parse(InputStream inputStream) throws IOException {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toString("UTF-8");
+        }
+    };
+
+    private HttpServer server;
+    private final AtomicInteger hits = new AtomicInteger();
+
+    /**
+     * Number of error responses sent before the server answers 200
+     */
+    private int failuresBeforeSuccess;
+    private int failureCode;
+    private String retryAfter;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                int hit = hits.incrementAndGet();
+                byte[] body = "{\"results\":[]}".getBytes("UTF-8");
+                if (hit <= failuresBeforeSuccess) {
+                    if (retryAfter != null) {
+                        exchange.getResponseHeaders().set("Retry-After", retryAfter);
+                    }
+                    exchange.sendResponseHeaders(failureCode, -1);
+                } else {
+                    exchange.sendResponseHeaders(200, body.length);
+                    OutputStream outputStream = exchange.getResponseBody();
+                    outputStream.write(body);
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        QueryUtils.setRequestScheduler(new RequestScheduler());
+    }
+
+    @Test
+    public void retriesTooManyRequestsHonouringRetryAfter() throws IOException {
+        RequestScheduler scheduler = newScheduler(100, 20, 3);
+        failuresBeforeSuccess = 2;
+        failureCode = 429;
+        retryAfter = "0";
+
+        String body = QueryUtils.fetch(url("/movie/popular"), BODY_PARSER);
+
+        assertEquals("{\"results\":[]}", body);
+        assertEquals(3, hits.get());
+        RequestScheduler.Stats stats = scheduler.getStats();
+        assertEquals(2, stats.retryCount);
+        assertEquals(2, stats.rateLimitedCount);
+        assertEquals(0, stats.failureCount);
+    }
+
+    @Test
+    public void givesUpAfterMaxRetriesOnServerErrors() throws IOException {
+        RequestScheduler scheduler = newScheduler(100, 20, 2);
+        failuresBeforeSuccess = Integer.MAX_VALUE;
+        failureCode = 503;
+
+        try {
+            QueryUtils.fetch(url("/movie/top_rated"), BODY_PARSER);
+            fail("The request was not given up");
+        } catch (RequestScheduler.UnavailableException e) {
+            assertEquals(503, e.responseCode);
+        }
+
+        assertEquals(3, hits.get());
+        RequestScheduler.Stats stats = scheduler.getStats();
+        assertEquals(3, stats.serverErrorCount);
+        assertEquals(1, stats.failureCount);
+    }
+
+    @Test
+    public void givesUpOnRetryAfterLongerThanTheMaximumBackoff() throws IOException {
+        RequestScheduler scheduler = newScheduler(100, 20, 3);
+        failuresBeforeSuccess = 1;
+        failureCode = 429;
+        retryAfter = "3600";
+
+        long start = System.nanoTime();
+        try {
+            QueryUtils.fetch(url("/movie/popular"), BODY_PARSER);
+            fail("The request waited for the Retry-After");
+        } catch (RequestScheduler.UnavailableException e) {
+            assertEquals(429, e.responseCode);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertTrue("Took " + elapsedMillis + "ms", elapsedMillis < 1000);
+        assertEquals(1, hits.get());
+        RequestScheduler.Stats stats = scheduler.getStats();
+        assertEquals(0, stats.retryCount);
+        assertEquals(1, stats.failureCount);
+    }
+
+    @Test
+    public void throttlesBurstsAboveTheBucketCapacity() throws IOException {
+        RequestScheduler scheduler = newScheduler(2, 5, 0);
+
+        for (int page = 1; page <= 4; page++) {
+            QueryUtils.fetch(url("/movie/popular?page=" + page), BODY_PARSER);
+        }
+
+        RequestScheduler.Stats stats = scheduler.getStats();
+        assertEquals(4, stats.requestCount);
+        assertEquals(2, stats.throttledCount);
+        assertTrue(stats.throttledMillis > 0);
+    }
+
+    @Test
+    public void parsesRetryAfterInSecondsAndAsHttpDate() {
+        assertEquals(2000, RequestScheduler.parseRetryAfter("2", 0));
+        assertEquals(5000, RequestScheduler.parseRetryAfter("Thu, 01 Jan 1970 00:00:05 GMT", 0));
+        assertEquals(-1, RequestScheduler.parseRetryAfter("soon", 0));
+        assertEquals(-1, RequestScheduler.parseRetryAfter(null, 0));
+    }
+
+    /**
+     * Install a scheduler with the given token bucket and a backoff of at most 20ms
+     */
+    private RequestScheduler newScheduler(int bucketCapacity, double refillPerSecond,
+                                          int maxRetries) {
+        RequestScheduler scheduler = new RequestScheduler(bucketCapacity, refillPerSecond,
+                maxRetries, 5, 20, new Random(42));
+        QueryUtils.setRequestScheduler(scheduler);
+        return scheduler;
+    }
+
+    private URL url(String path) throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+}
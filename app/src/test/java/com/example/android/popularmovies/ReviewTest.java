@@ -0,0 +1,62 @@
+package com.example.android.popularmovies;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests of the preview of the review text, shown until the review is expanded
+ */
+public class ReviewTest {
+
+    @Test
+    public void shortTextIsItsOwnPreview() {
+        Review review = new Review("Author", "A short review.", null);
+
+        assertEquals("A short review.", review.getReviewPreview());
+        assertTrue(review.isPreviewComplete());
+    }
+
+    @Test
+    public void longTextIsCutAtTheEndOfAWord() {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 20000) {
+            text.append("word ");
+        }
+        Review review = new Review("Author", text.toString(), null);
+        String preview = review.getReviewPreview();
+
+        assertTrue(preview.length() <= Review.PREVIEW_LENGTH + 1);
+        assertTrue(preview.endsWith("word\u2026"));
+        assertFalse(review.isPreviewComplete());
+    }
+
+    @Test
+    public void manyLinesAreCutAfterTheLastPreviewLine() {
+        String text = "one\ntwo\nthree\nfour\nfive\nsix";
+
+        assertEquals("one\ntwo\nthree\nfour\u2026", Review.previewOf(text));
+    }
+
+    @Test
+    public void wordLongerThanThePreviewIsCutAtTheLength() {
+        StringBuilder text = new StringBuilder("Intro ");
+        for (int i = 0; i < Review.PREVIEW_LENGTH; i++) {
+            text.append('a');
+        }
+        String preview = Review.previewOf(text.toString());
+
+        assertEquals(Review.PREVIEW_LENGTH + 1, preview.length());
+    }
+
+    @Test
+    public void missingTextHasNoPreview() {
+        Review review = new Review("Author", null, null);
+
+        assertNull(review.getReviewPreview());
+        assertTrue(review.isPreviewComplete());
+    }
+}
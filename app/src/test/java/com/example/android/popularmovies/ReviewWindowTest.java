@@ -0,0 +1,165 @@
+package com.example.android.popularmovies;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Local unit tests of the pages of reviews kept in memory as the reviews are scrolled
+ */
+public class ReviewWindowTest {
+
+    private static final int MAX_PAGES = 3;
+    private static final int PREFETCH_REVIEWS = 5;
+    private static final int PAGE_SIZE = 20;
+    private static final int TOTAL_PAGES = 10;
+
+    @Test
+    public void nextPageIsLoadedNearTheEnd() {
+        ReviewWindow window = createWindow();
+        window.onPageLoaded(createPage(1));
+
+        assertEquals(0, window.pageToLoad(0, 10));
+        assertEquals(2, window.pageToLoad(10, 15));
+        /* The page is not requested twice while it is loading */
+        assertEquals(0, window.pageToLoad(10, 16));
+
+        ReviewWindow.Change change = window.onPageLoaded(createPage(2));
+        assertEquals(0, change.removeCount);
+        assertEquals(PAGE_SIZE, change.insertStart);
+        assertEquals(PAGE_SIZE, change.insertCount);
+        assertEquals(2 * PAGE_SIZE, window.getReviews().size());
+    }
+
+    @Test
+    public void firstPageIsDroppedWhenTheWindowIsFull() {
+        ReviewWindow window = createWindow();
+        window.onPageLoaded(createPage(1));
+        loadNextPage(window);
+        loadNextPage(window);
+
+        assertEquals(4, window.pageToLoad(50, 59));
+        ReviewWindow.Change change = window.onPageLoaded(createPage(4));
+        assertEquals(0, change.removeStart);
+        assertEquals(PAGE_SIZE, change.removeCount);
+        assertEquals(2 * PAGE_SIZE, change.insertStart);
+        assertEquals(MAX_PAGES * PAGE_SIZE, window.getReviews().size());
+        assertEquals("Review 2.0", window.getReviews().get(0).getReviewText());
+        assertEquals(2, window.getFirstPage());
+        assertEquals(4, window.getLastPage());
+    }
+
+    @Test
+    public void droppedPageIsLoadedAgainNearTheStart() {
+        ReviewWindow window = createWindow();
+        window.onPageLoaded(createPage(1));
+        loadNextPage(window);
+        loadNextPage(window);
+        loadNextPage(window);
+
+        assertEquals(1, window.pageToLoad(2, 12));
+        ReviewWindow.Change change = window.onPageLoaded(createPage(1));
+        assertEquals(2 * PAGE_SIZE, change.removeStart);
+        assertEquals(PAGE_SIZE, change.removeCount);
+        assertEquals(0, change.insertStart);
+        assertEquals(PAGE_SIZE, change.insertCount);
+        assertEquals("Review 1.0", window.getReviews().get(0).getReviewText());
+        assertEquals(3, window.getLastPage());
+    }
+
+    @Test
+    public void lastPageIsNotExceeded() {
+        ReviewWindow window = createWindow();
+        window.onPageLoaded(new ReviewPage(1, 1, createReviews(1, 3)));
+
+        assertEquals(0, window.pageToLoad(0, 2));
+    }
+
+    @Test
+    public void noPageIsLoadedWhileTheReviewsAreOffScreen() {
+        ReviewWindow window = createWindow();
+        window.onPageLoaded(new ReviewPage(1, TOTAL_PAGES, createReviews(1, 3)));
+
+        assertEquals(0, window.pageToLoad(-1, -1));
+    }
+
+    @Test
+    public void restoredPagesAreLoadedAgainInOrder() {
+        ReviewWindow window = createWindow();
+        window.restore(4, 6, TOTAL_PAGES);
+
+        /* The first page of the details is not the one of the window */
+        assertNull(window.onPageLoaded(createPage(1)));
+        assertEquals(4, window.pageToLoad(-1, -1));
+        window.onPageLoaded(createPage(4));
+        assertEquals(5, window.pageToLoad(-1, -1));
+        window.onPageLoaded(createPage(5));
+        assertEquals(6, window.pageToLoad(-1, -1));
+        window.onPageLoaded(createPage(6));
+        assertEquals(0, window.pageToLoad(-1, -1));
+
+        assertEquals(4, window.getFirstPage());
+        assertEquals(6, window.getLastPage());
+        assertEquals("Review 4.0", window.getReviews().get(0).getReviewText());
+    }
+
+    @Test
+    public void pageIsSavedBeforeItIsLoadedAgain() {
+        ReviewWindow window = createWindow();
+        window.restore(4, 6, TOTAL_PAGES);
+
+        assertEquals(4, window.getFirstPage());
+        assertEquals(6, window.getLastPage());
+        assertEquals(TOTAL_PAGES, window.getTotalPages());
+    }
+
+    @Test
+    public void failedPageIsRequestedAgain() {
+        ReviewWindow window = createWindow();
+        window.onPageLoaded(createPage(1));
+        assertEquals(2, window.pageToLoad(10, 19));
+
+        window.onPageFailed(2);
+        assertEquals(2, window.pageToLoad(10, 19));
+    }
+
+    @Test
+    public void unexpectedPageIsIgnored() {
+        ReviewWindow window = createWindow();
+        window.onPageLoaded(createPage(1));
+        assertEquals(2, window.pageToLoad(10, 19));
+
+        assertNull(window.onPageLoaded(createPage(5)));
+        assertEquals(PAGE_SIZE, window.getReviews().size());
+    }
+
+    private static ReviewWindow createWindow() {
+        return new ReviewWindow(MAX_PAGES, PREFETCH_REVIEWS);
+    }
+
+    /**
+     * Scroll to the end of the window and load the page it asks for
+     */
+    private static void loadNextPage(ReviewWindow window) {
+        int size = window.getReviews().size();
+        int page = window.pageToLoad(size - 10, size - 1);
+        window.onPageLoaded(createPage(page));
+    }
+
+    private static ReviewPage createPage(int page) {
+        return new ReviewPage(page, TOTAL_PAGES, createReviews(page, PAGE_SIZE));
+    }
+
+    private static List<Review> createReviews(int page, int count) {
+        List<Review> reviews = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            reviews.add(new Review("Author " + page + "." + i, "Review " + page + "." + i,
+                    "https://www.themoviedb.org/review/" + page + "." + i));
+        }
+        return reviews;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.android.popularmovies;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The parsing path the JsonParsers replaced, kept as the baseline of the benchmarks: the whole
+ * response is read into a String line by line, then parsed into an org.json.JSONObject tree
+ * from which the movies and reviews are copied.
+ */
+final class JsonObjectBaseline {
+
+    private JsonObjectBaseline() {
+    }
+
+    /**
+     * Parse a /movie/popular or /movie/top_rated response as MainActivity used to
+     */
+    static List<Movie> parseMovies(InputStream inputStream) throws IOException, JSONException {
+        List<Movie> movies = new ArrayList<>();
+        JSONObject baseJsonResponse = new JSONObject(readFromStream(inputStream));
+        JSONArray movieArray = baseJsonResponse.getJSONArray("results");
+        for (int i = 0; i < movieArray.length(); i++) {
+            JSONObject movieObject = movieArray.getJSONObject(i);
+            String title = getString(movieObject, "title");
+            String releaseDate = getString(movieObject, "release_date");
+            String posterUrl = getString(movieObject, "poster_path");
+            String userRating = getString(movieObject, "vote_average");
+            String plotSynopsis = getString(movieObject, "overview");
+            int id = movieObject.getInt("id");
+            movies.add(new Movie(id, title, releaseDate, posterUrl, userRating, plotSynopsis));
+        }
+        return movies;
+    }
+
+    /**
+     * Parse a /movie/{id}/reviews response as DetailActivity used to
+     */
+    static List<Review> parseReviews(InputStream inputStream) throws IOException, JSONException {
+        List<Review> reviews = new ArrayList<>();
+        JSONObject baseJsonResponse = new JSONObject(readFromStream(inputStream));
+        JSONArray reviewArray = baseJsonResponse.getJSONArray("results");
+        for (int i = 0; i < reviewArray.length(); i++) {
+            JSONObject reviewObject = reviewArray.getJSONObject(i);
+            String reviewAuthor = getString(reviewObject, "author");
+            String reviewText = getString(reviewObject, "content");
+            String reviewUrl = getString(reviewObject, "url");
+            reviews.add(new Review(reviewAuthor, reviewText, reviewUrl));
+        }
+        return reviews;
+    }
+
+    /**
+     * Returns the value of the key as a String, converting numbers as the platform
+     * JSONObject.getString does, where the org.json of the JVM throws
+     */
+    private static String getString(JSONObject object, String key) throws JSONException {
+        return String.valueOf(object.get(key));
+    }
+
+    /**
+     * Convert the InputStream into a String which contains the whole JSON response
+     */
+    private static String readFromStream(InputStream inputStream) throws IOException {
+        StringBuilder output = new StringBuilder();
+        InputStreamReader inputStreamReader = new InputStreamReader(inputStream,
+                Charset.forName("UTF-8"));
+        BufferedReader reader = new BufferedReader(inputStreamReader);
+        String line = reader.readLine();
+        while (line != null) {
+            output.append(line);
+            line = reader.readLine();
+        }
+        reader.close();
+        return output.toString();
+    }
+}
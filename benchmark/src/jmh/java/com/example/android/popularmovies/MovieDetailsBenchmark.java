@@ -0,0 +1,67 @@
+package com.example.android.popularmovies;
+
+import android.os.Parcel;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Throughput of the movie details paths: parsing the details response with its trailers and
+ * long reviews appended, parsing a page of a reviews response alone, next to the String and
+ * JSONObject parse it replaced, and the Parcelable round-trip of the movie, trailers and review
+ * page numbers that DetailActivity saves in its instance state, in place of the reviews
+ * themselves.
+ */
+@State(Scope.Benchmark)
+public class MovieDetailsBenchmark {
+
+    private byte[] detailsResponse;
+    private byte[] reviewsResponse;
+    private MovieDetails movieDetails;
+
+    @Setup
+    public void setUp() throws IOException {
+        detailsResponse = Payloads.movieDetails();
+        reviewsResponse = Payloads.reviews();
+        movieDetails = parseMovieDetails();
+    }
+
+    @Benchmark
+    public MovieDetails parseMovieDetails() throws IOException {
+        return JsonParsers.MOVIE_DETAILS.parse(new ByteArrayInputStream(detailsResponse));
+    }
+
+    @Benchmark
+    public ReviewPage parseReviewPage() throws IOException {
+        return JsonParsers.REVIEW_PAGE.parse(new ByteArrayInputStream(reviewsResponse));
+    }
+
+    @Benchmark
+    public List<Review> parseReviewPageBaseline() throws IOException, JSONException {
+        return JsonObjectBaseline.parseReviews(new ByteArrayInputStream(reviewsResponse));
+    }
+
+    @Benchmark
+    public void detailStateRoundTrip(Blackhole blackhole) {
+        Parcel parcel = Parcel.obtain();
+        Payloads.writeParcelable(parcel, movieDetails.movie);
+        Payloads.writeList(parcel, movieDetails.trailers);
+        /* The first and last page in memory, and the total number of pages */
+        parcel.writeInt(1);
+        parcel.writeInt(1);
+        parcel.writeInt(movieDetails.reviewTotalPages);
+        parcel.setDataPosition(0);
+        blackhole.consume(Payloads.<Movie>readParcelable(parcel));
+        blackhole.consume(Payloads.<Trailer>readList(parcel));
+        blackhole.consume(parcel.readInt() + parcel.readInt() + parcel.readInt());
+        parcel.recycle();
+    }
+}
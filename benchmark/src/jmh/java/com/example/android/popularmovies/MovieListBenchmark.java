@@ -0,0 +1,57 @@
+package com.example.android.popularmovies;
+
+import android.os.Parcel;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Throughput of the movie list paths, for pages of 20 movies up to the 1000 movies of 50
+ * loaded pages: parsing a /movie/popular response, next to the String and JSONObject parse it
+ * replaced, and the Parcelable round-trip of the movie list, which MainActivity used to save
+ * in its instance state. It now saves only the selected list and its pages, and shows the
+ * movies again from the cached catalog.
+ */
+@State(Scope.Benchmark)
+public class MovieListBenchmark {
+
+    @Param({"20", "100", "1000"})
+    public int movieCount;
+
+    private byte[] response;
+    private List<Movie> movies;
+
+    @Setup
+    public void setUp() throws IOException {
+        response = Payloads.moviePage(movieCount);
+        movies = parseMoviePage().movies;
+    }
+
+    @Benchmark
+    public MoviePage parseMoviePage() throws IOException {
+        return JsonParsers.MOVIE_PAGE.parse(new ByteArrayInputStream(response));
+    }
+
+    @Benchmark
+    public List<Movie> parseMoviePageBaseline() throws IOException, JSONException {
+        return JsonObjectBaseline.parseMovies(new ByteArrayInputStream(response));
+    }
+
+    @Benchmark
+    public List<Movie> movieListRoundTrip() {
+        Parcel parcel = Parcel.obtain();
+        Payloads.writeList(parcel, movies);
+        parcel.setDataPosition(0);
+        List<Movie> copy = Payloads.readList(parcel);
+        parcel.recycle();
+        return copy;
+    }
+}
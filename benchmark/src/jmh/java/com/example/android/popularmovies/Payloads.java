@@ -0,0 +1,138 @@
+package com.example.android.popularmovies;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Payloads of the benchmarks, built from the fixtures of the FakeTmdbServer, and the
+ * Parcelable list encoding used by Bundle.putParcelableArrayList.
+ */
+final class Payloads {
+
+    /**
+     * Type tag Parcel.writeValue writes before a Parcelable
+     */
+    private static final int VAL_PARCELABLE = 4;
+
+    private static final String RESULTS = "\"results\":[";
+
+    /**
+     * Creators by class name, cached like the platform does
+     */
+    private static final Map<String, Parcelable.Creator<?>> CREATORS = new HashMap<>();
+
+    static {
+        CREATORS.put(Movie.class.getName(), Movie.CREATOR);
+        CREATORS.put(Review.class.getName(), Review.CREATOR);
+        CREATORS.put(Trailer.class.getName(), Trailer.CREATOR);
+    }
+
+    private Payloads() {
+    }
+
+    /**
+     * Returns a /movie/popular response with the given number of movies, made of the movies
+     * of the popular and top rated fixtures
+     */
+    static byte[] moviePage(int movieCount) throws IOException {
+        List<String> movies = new ArrayList<>();
+        for (String fixture : new String[]{"popular.json", "top_rated.json"}) {
+            String json = fixture(fixture);
+            String results = json.substring(json.indexOf(RESULTS) + RESULTS.length(),
+                    json.lastIndexOf("],\"total_pages\""));
+            /* The movie objects do not nest objects, so they are split on their separators */
+            for (String movie : results.substring(1, results.length() - 1).split("\\},\\{")) {
+                movies.add("{" + movie + "}");
+            }
+        }
+        StringBuilder page = new StringBuilder("{\"page\":1,\"results\":[");
+        for (int i = 0; i < movieCount; i++) {
+            if (i > 0) {
+                page.append(',');
+            }
+            page.append(movies.get(i % movies.size()));
+        }
+        page.append("],\"total_pages\":500,\"total_results\":10000}");
+        return page.toString().getBytes("UTF-8");
+    }
+
+    /**
+     * Returns a /movie/{id}?append_to_response=videos,reviews response, whose reviews have
+     * long bodies
+     */
+    static byte[] movieDetails() throws IOException {
+        String details = fixture("movie_details.json");
+        return (details.substring(0, details.lastIndexOf('}'))
+                + ",\"videos\":" + fixture("videos.json")
+                + ",\"reviews\":" + fixture("reviews.json") + "}").getBytes("UTF-8");
+    }
+
+    /**
+     * Returns a /movie/{id}/reviews response
+     */
+    static byte[] reviews() throws IOException {
+        return fixture("reviews.json").getBytes("UTF-8");
+    }
+
+    /**
+     * Write the list as Bundle.putParcelableArrayList does: its size, then the type tag, the
+     * class name and the fields of every item
+     */
+    static void writeList(Parcel parcel, List<? extends Parcelable> list) {
+        parcel.writeInt(list.size());
+        for (Parcelable item : list) {
+            writeParcelable(parcel, item);
+        }
+    }
+
+    static void writeParcelable(Parcel parcel, Parcelable item) {
+        parcel.writeInt(VAL_PARCELABLE);
+        parcel.writeString(item.getClass().getName());
+        item.writeToParcel(parcel, 0);
+    }
+
+    /**
+     * Read a list written by writeList, looking the creator of every item up by class name
+     */
+    static <T> ArrayList<T> readList(Parcel parcel) {
+        int size = parcel.readInt();
+        ArrayList<T> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(Payloads.<T>readParcelable(parcel));
+        }
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T readParcelable(Parcel parcel) {
+        parcel.readInt();
+        Parcelable.Creator<?> creator = CREATORS.get(parcel.readString());
+        return (T) creator.createFromParcel(parcel);
+    }
+
+    private static String fixture(String name) throws IOException {
+        InputStream inputStream = Payloads.class.getResourceAsStream("/fixtures/" + name);
+        if (inputStream == null) {
+            throw new IOException("Missing fixture " + name);
+        }
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toString("UTF-8");
+        } finally {
+            inputStream.close();
+        }
+    }
+}
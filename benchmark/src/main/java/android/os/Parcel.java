@@ -0,0 +1,115 @@
+package android.os;
+
+import java.util.Arrays;
+
+/**
+ * JVM stand-in for the Parcel of the platform, for the Parcelable round-trip benchmarks.
+ * The platform Parcel is native, so this one keeps its wire format in a growable byte array:
+ * ints take 4 bytes, and strings are written as their length, their UTF-16 chars and a null
+ * char, padded to 4 bytes. Writes and reads therefore copy and allocate what the native
+ * Parcel does, but the absolute timings are those of the JVM.
+ */
+public final class Parcel {
+
+    private byte[] data = new byte[256];
+    private int dataSize;
+    private int dataPosition;
+
+    private Parcel() {
+    }
+
+    public static Parcel obtain() {
+        return new Parcel();
+    }
+
+    public void recycle() {
+        dataSize = 0;
+        dataPosition = 0;
+    }
+
+    public int dataSize() {
+        return dataSize;
+    }
+
+    public int dataPosition() {
+        return dataPosition;
+    }
+
+    public void setDataPosition(int position) {
+        dataPosition = position;
+    }
+
+    public byte[] marshall() {
+        return Arrays.copyOf(data, dataSize);
+    }
+
+    public void writeInt(int value) {
+        ensureCapacity(4);
+        putInt(value);
+        grow();
+    }
+
+    public int readInt() {
+        int value = (data[dataPosition] & 0xff) | (data[dataPosition + 1] & 0xff) << 8
+                | (data[dataPosition + 2] & 0xff) << 16 | (data[dataPosition + 3] & 0xff) << 24;
+        dataPosition += 4;
+        return value;
+    }
+
+    public void writeString(String value) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        int length = value.length();
+        ensureCapacity(4 + padded((length + 1) * 2));
+        putInt(length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            data[dataPosition++] = (byte) c;
+            data[dataPosition++] = (byte) (c >> 8);
+        }
+        /* Null terminator and padding */
+        int end = dataPosition - (length * 2) + padded((length + 1) * 2);
+        while (dataPosition < end) {
+            data[dataPosition++] = 0;
+        }
+        grow();
+    }
+
+    public String readString() {
+        int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        int position = dataPosition;
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ((data[position] & 0xff) | (data[position + 1] & 0xff) << 8);
+            position += 2;
+        }
+        dataPosition += padded((length + 1) * 2);
+        return new String(chars);
+    }
+
+    private void putInt(int value) {
+        data[dataPosition++] = (byte) value;
+        data[dataPosition++] = (byte) (value >> 8);
+        data[dataPosition++] = (byte) (value >> 16);
+        data[dataPosition++] = (byte) (value >> 24);
+    }
+
+    private void ensureCapacity(int count) {
+        if (dataPosition + count > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, dataPosition + count));
+        }
+    }
+
+    private void grow() {
+        dataSize = Math.max(dataSize, dataPosition);
+    }
+
+    private static int padded(int size) {
+        return (size + 3) & ~3;
+    }
+}
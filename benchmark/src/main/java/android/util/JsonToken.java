@@ -0,0 +1,18 @@
+package android.util;
+
+/**
+ * JVM stand-in for the JsonToken of the platform. The constants are declared in the order of
+ * the Gson tokens the JsonReader stand-in maps them from.
+ */
+public enum JsonToken {
+    BEGIN_ARRAY,
+    END_ARRAY,
+    BEGIN_OBJECT,
+    END_OBJECT,
+    NAME,
+    STRING,
+    NUMBER,
+    BOOLEAN,
+    NULL,
+    END_DOCUMENT
+}